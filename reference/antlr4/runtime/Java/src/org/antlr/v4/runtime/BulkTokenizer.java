@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNSimulator;
+import org.antlr.v4.runtime.atn.LexerAction;
+import org.antlr.v4.runtime.atn.LexerActionExecutor;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.runtime.misc.NotNull;
+
+/**
+ * Tokenizes a whole {@code char[]} into a {@link TokenBuffer} without creating
+ * {@link Token} objects.
+ *
+ * <p>Each token is matched by walking the lexer's cached DFA directly over the
+ * array. This skips the {@link CharStream} calls, the line and column
+ * tracking, and the mark/release bookkeeping of the regular
+ * {@link Lexer#nextToken} path. The following tokens are handed to the
+ * wrapped lexer instead:</p>
+ *
+ * <ul>
+ * <li>a DFA edge has not been computed yet, which includes non-ASCII
+ * characters;</li>
+ * <li>the match reaches the end of the input;</li>
+ * <li>no rule matches;</li>
+ * <li>the accepted rule runs a {@code more} command or an embedded
+ * action.</li>
+ * </ul>
+ *
+ * <p>The {@code skip}, {@code channel}, {@code type}, {@code mode},
+ * {@code pushMode} and {@code popMode} commands run on the fast path through
+ * the wrapped lexer. The lexer's DFA is shared, so the fallback path fills in
+ * missing edges for later tokens.</p>
+ *
+ * <p>The keyword table of the lexer's mode, if any, is applied to the tokens
+ * matched on the fast path, as it is by {@link Lexer#nextToken}.</p>
+ *
+ * <p>Only the tokens returned by {@link Lexer#nextToken} are recorded. A lexer
+ * which emits several tokens from one call to {@code nextToken} is not
+ * supported.</p>
+ */
+public class BulkTokenizer {
+	@NotNull
+	private final Lexer lexer;
+
+	private int dfaTokenCount;
+	private int fallbackTokenCount;
+
+	// line tracking for the fallback path, advanced monotonically
+	private int lineScanIndex;
+	private int lineScanLine;
+	private int lineScanLineStart;
+
+	public BulkTokenizer(@NotNull Lexer lexer) {
+		this.lexer = lexer;
+	}
+
+	/**
+	 * @sharpen.property Lexer
+	 */
+	@NotNull
+	public Lexer getLexer() {
+		return lexer;
+	}
+
+	/**
+	 * Gets the number of tokens matched entirely from the DFA since this
+	 * instance was created.
+	 *
+	 * @sharpen.property DfaTokenCount
+	 */
+	public int getDfaTokenCount() {
+		return dfaTokenCount;
+	}
+
+	/**
+	 * Gets the number of tokens matched by the wrapped lexer since this
+	 * instance was created.
+	 *
+	 * @sharpen.property FallbackTokenCount
+	 */
+	public int getFallbackTokenCount() {
+		return fallbackTokenCount;
+	}
+
+	public void tokenize(@NotNull CharSequence input, @NotNull TokenBuffer tokens) {
+		char[] data = input.toString().toCharArray();
+		tokenize(data, data.length, tokens);
+	}
+
+	/**
+	 * Tokenizes {@code data[0..length-1]} into {@code tokens}, which is reset
+	 * first. The last token in the buffer is {@link Token#EOF}. The wrapped
+	 * lexer is reset to the start of the input.
+	 */
+	public void tokenize(@NotNull char[] data, int length, @NotNull TokenBuffer tokens) {
+		tokens.reset(data, length);
+		ANTLRInputStream input = new ANTLRInputStream(data, length);
+		lexer.setInputStream(input);
+		lineScanIndex = 0;
+		lineScanLine = 1;
+		lineScanLineStart = 0;
+
+		ATN atn = lexer.getATN();
+		KeywordTable[] keywordTables = lexer.getKeywordTables();
+		int p = 0;
+		while (p < length) {
+			int mode = lexer._mode;
+			DFAState s = atn.modeToDFA[mode].s0.get();
+			DFAState accept = null;
+			int acceptIndex = -1;
+			if (s != null && !s.isAcceptState()) {
+				int i = p;
+				while (i < length) {
+					DFAState target = s.getTarget(data[i]);
+					if (target == null) {
+						// not cached yet
+						accept = null;
+						break;
+					}
+
+					if (target == ATNSimulator.ERROR) {
+						break;
+					}
+
+					i++;
+					if (target.isAcceptState()) {
+						accept = target;
+						acceptIndex = i;
+					}
+
+					s = target;
+				}
+
+				if (i == length) {
+					// the lexer may have a transition on EOF
+					accept = null;
+				}
+			}
+
+			if (accept != null) {
+				LexerActionExecutor executor = accept.getLexerActionExecutor();
+				if (executor == null) {
+					int type = classifyKeyword(keywordTables, mode, accept.getPrediction(), data, p, acceptIndex);
+					tokens.add(type, Token.DEFAULT_CHANNEL, p, acceptIndex - 1);
+					dfaTokenCount++;
+					p = acceptIndex;
+					continue;
+				}
+
+				if (isSimple(executor)) {
+					lexer._type = Token.INVALID_TYPE;
+					lexer._channel = Token.DEFAULT_CHANNEL;
+					for (LexerAction action : executor.getLexerActions()) {
+						action.execute(lexer);
+					}
+
+					int type = lexer._type != Token.INVALID_TYPE ? lexer._type : accept.getPrediction();
+					type = classifyKeyword(keywordTables, mode, type, data, p, acceptIndex);
+					if (type != Lexer.SKIP) {
+						tokens.add(type, lexer._channel, p, acceptIndex - 1);
+					}
+
+					dfaTokenCount++;
+					p = acceptIndex;
+					continue;
+				}
+			}
+
+			// fall back to the lexer for this token
+			input.seek(p);
+			advanceLine(data, p);
+			lexer.setLine(lineScanLine);
+			lexer.setCharPositionInLine(p - lineScanLineStart);
+			lexer._hitEOF = false;
+			Token token = lexer.nextToken();
+			fallbackTokenCount++;
+			if (token.getType() == Token.EOF) {
+				break;
+			}
+
+			tokens.add(token.getType(), token.getChannel(), token.getStartIndex(), token.getStopIndex());
+			p = input.index();
+		}
+
+		tokens.add(Token.EOF, Token.DEFAULT_CHANNEL, length, length - 1);
+	}
+
+	/**
+	 * Determines whether the actions of {@code executor} can run without
+	 * positioning an input stream and without continuing the token.
+	 */
+	protected boolean isSimple(@NotNull LexerActionExecutor executor) {
+		for (LexerAction action : executor.getLexerActions()) {
+			if (action.isPositionDependent()) {
+				return false;
+			}
+
+			switch (action.getActionType()) {
+			case SKIP:
+			case CHANNEL:
+			case TYPE:
+			case MODE:
+			case PUSH_MODE:
+			case POP_MODE:
+				break;
+
+			default:
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Applies the keyword table of {@code mode} to a token matched in
+	 * {@code data[start..stop-1]}, as {@link Lexer#nextToken} does.
+	 */
+	private static int classifyKeyword(KeywordTable[] keywordTables, int mode, int type, @NotNull char[] data, int start, int stop) {
+		if (keywordTables == null || mode >= keywordTables.length) {
+			return type;
+		}
+
+		KeywordTable keywordTable = keywordTables[mode];
+		if (keywordTable == null || type != keywordTable.getIdentifierType()) {
+			return type;
+		}
+
+		return keywordTable.getType(data, start, stop - start);
+	}
+
+	private void advanceLine(@NotNull char[] data, int index) {
+		for (int i = lineScanIndex; i < index; i++) {
+			if (data[i] == '\n') {
+				lineScanLine++;
+				lineScanLineStart = i + 1;
+			}
+		}
+
+		lineScanIndex = index;
+	}
+}
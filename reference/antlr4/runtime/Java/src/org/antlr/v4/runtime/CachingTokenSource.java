@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * A {@link TokenSource} which replays the tokens of a {@link Lexer} from a
+ * {@link TokenCache} when the same input was tokenized before.
+ *
+ * <p>The cache key is a SHA-256 digest of the lexer grammar and of the whole
+ * content of the input, computed on the first call to {@link #nextToken}. If
+ * the cache has an entry for the key, the tokens are created from it with the
+ * lexer's token factory, and the lexer does not run. Otherwise, the tokens
+ * are produced by the lexer and recorded, and stored in the cache once the
+ * {@link Token#EOF} token is returned.</p>
+ *
+ * <p>For each token, the type, channel, start and stop indexes, line and
+ * position in line are stored. Token text is read from the input, so the
+ * input is not cached, and tokens whose text was set by the lexer are not
+ * supported. If such a token is produced, if the lexer reports a syntax error,
+ * or if the size of the input is not known, the tokens are not recorded, so
+ * the errors of malformed input are reported each time it is tokenized. A
+ * cache entry which is not a complete recording for the input is ignored.
+ * The lexer should not depend on state
+ * other than its input and its grammar, since that state is not part of the
+ * key.</p>
+ */
+public class CachingTokenSource implements TokenSource {
+	private static final int FORMAT_VERSION = 1;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@NotNull
+	private final Lexer lexer;
+	@NotNull
+	private final TokenCache cache;
+
+	private boolean initialized;
+
+	/** The cached tokens being replayed, or {@code null} if the lexer runs. */
+	@Nullable
+	private ByteBuffer replay;
+
+	/** The tokens being recorded, or {@code null} if they are not recorded. */
+	@Nullable
+	private VarIntEncoder recording;
+
+	@Nullable
+	private String key;
+
+	@Nullable
+	private Token lastToken;
+
+	/**
+	 * Stops recording when the lexer reports a syntax error, since the error
+	 * would not be reported when the tokens are replayed.
+	 */
+	@NotNull
+	private final ANTLRErrorListener<Integer> recordingErrorListener = new ANTLRErrorListener<Integer>() {
+		@Override
+		public <T extends Integer> void syntaxError(Recognizer<T, ?> recognizer, T offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+			stopRecording();
+		}
+	};
+
+	public CachingTokenSource(@NotNull Lexer lexer, @NotNull TokenCache cache) {
+		this.lexer = lexer;
+		this.cache = cache;
+	}
+
+	/**
+	 * @sharpen.property Lexer
+	 */
+	@NotNull
+	public Lexer getLexer() {
+		return lexer;
+	}
+
+	/**
+	 * Gets whether the tokens are replayed from the cache. This value is only
+	 * meaningful after the first call to {@link #nextToken}.
+	 *
+	 * @sharpen.property IsReplaying
+	 */
+	public boolean isReplaying() {
+		return replay != null;
+	}
+
+	@Override
+	public Token nextToken() {
+		if (!initialized) {
+			initialize();
+		}
+
+		if (replay != null) {
+			if (lastToken == null || lastToken.getType() != Token.EOF) {
+				lastToken = decode(replay);
+			}
+
+			return lastToken;
+		}
+
+		Token token = lexer.nextToken();
+		if (recording != null) {
+			record(token);
+		}
+
+		lastToken = token;
+		return token;
+	}
+
+	protected void initialize() {
+		initialized = true;
+		CharStream input = lexer.getInputStream();
+		if (input == null) {
+			return;
+		}
+
+		String text;
+		try {
+			text = input.getText(Interval.of(0, input.size() - 1));
+		}
+		catch (UnsupportedOperationException ex) {
+			// the size of the input is not known
+			return;
+		}
+
+		key = computeKey(text);
+		ByteBuffer data = cache.get(key);
+		if (data != null && data.remaining() > 0 && (data.get(data.position()) & 0xFF) == FORMAT_VERSION) {
+			data.get();
+			if (isComplete(data, text.length())) {
+				replay = data;
+				return;
+			}
+		}
+
+		recording = new VarIntEncoder();
+		recording.writeByte(FORMAT_VERSION);
+		lexer.addErrorListener(recordingErrorListener);
+	}
+
+	/**
+	 * Determines whether {@code data}, positioned after the format version, is
+	 * a complete recording of the tokens of an input of {@code length}
+	 * characters. The position of {@code data} is not changed.
+	 */
+	protected boolean isComplete(@NotNull ByteBuffer data, int length) {
+		ByteBuffer buffer = data.duplicate();
+		int previousStop = -1;
+		int previousLine = 1;
+		try {
+			while (true) {
+				int type = VarIntEncoder.readSigned(buffer);
+				VarIntEncoder.readSigned(buffer);
+				int start = previousStop + 1 + VarIntEncoder.readSigned(buffer);
+				int stop = start + VarIntEncoder.readSigned(buffer) - 1;
+				int line = previousLine + VarIntEncoder.readSigned(buffer);
+				int charPositionInLine = VarIntEncoder.readSigned(buffer);
+				if (start < 0 || stop < start - 1 || stop >= length || line < 1 || charPositionInLine < 0) {
+					return false;
+				}
+
+				if (type == Token.EOF) {
+					return !buffer.hasRemaining();
+				}
+
+				previousStop = stop;
+				previousLine = line;
+			}
+		}
+		catch (RuntimeException ex) {
+			// truncated or corrupt data
+			return false;
+		}
+	}
+
+	private void stopRecording() {
+		recording = null;
+		lexer.removeErrorListener(recordingErrorListener);
+	}
+
+	/**
+	 * Computes the cache key of {@code text} for the lexer's grammar.
+	 */
+	@NotNull
+	protected String computeKey(@NotNull String text) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+
+		update(digest, lexer.getClass().getName());
+		update(digest, lexer.getGrammarFileName());
+		update(digest, Arrays.toString(lexer.getRuleNames()));
+		update(digest, Arrays.toString(lexer.getModeNames()));
+		try {
+			update(digest, lexer.getSerializedATN());
+		}
+		catch (UnsupportedOperationException ex) {
+			// interpreted lexers are identified by their names only
+		}
+
+		update(digest, text);
+
+		StringBuilder result = new StringBuilder();
+		for (byte b : digest.digest()) {
+			result.append(Character.forDigit((b >> 4) & 0xF, 16));
+			result.append(Character.forDigit(b & 0xF, 16));
+		}
+
+		return result.toString();
+	}
+
+	private static void update(@NotNull MessageDigest digest, @Nullable String value) {
+		if (value != null) {
+			digest.update(value.getBytes(UTF_8));
+		}
+
+		digest.update((byte)0);
+	}
+
+	protected void record(@NotNull Token token) {
+		if (token.getType() != Token.EOF && !hasInputText(token)) {
+			stopRecording();
+			return;
+		}
+
+		VarIntEncoder encoder = recording;
+		int previousStop = lastToken != null ? lastToken.getStopIndex() : -1;
+		int previousLine = lastToken != null ? lastToken.getLine() : 1;
+		encoder.writeSigned(token.getType());
+		encoder.writeSigned(token.getChannel());
+		encoder.writeSigned(token.getStartIndex() - previousStop - 1);
+		encoder.writeSigned(token.getStopIndex() - token.getStartIndex() + 1);
+		encoder.writeSigned(token.getLine() - previousLine);
+		encoder.writeSigned(token.getCharPositionInLine());
+
+		if (token.getType() == Token.EOF) {
+			cache.put(key, encoder.toByteArray());
+			stopRecording();
+		}
+	}
+
+	/**
+	 * Determines whether the text of {@code token} is the input text between
+	 * its start and stop indexes.
+	 */
+	protected boolean hasInputText(@NotNull Token token) {
+		if (token instanceof CommonToken && ((CommonToken)token).text == null) {
+			return true;
+		}
+
+		CharStream input = lexer.getInputStream();
+		String text = input.getText(Interval.of(token.getStartIndex(), token.getStopIndex()));
+		return text.equals(token.getText());
+	}
+
+	@NotNull
+	protected Token decode(@NotNull ByteBuffer data) {
+		int previousStop = lastToken != null ? lastToken.getStopIndex() : -1;
+		int previousLine = lastToken != null ? lastToken.getLine() : 1;
+		int type = VarIntEncoder.readSigned(data);
+		int channel = VarIntEncoder.readSigned(data);
+		int start = previousStop + 1 + VarIntEncoder.readSigned(data);
+		int stop = start + VarIntEncoder.readSigned(data) - 1;
+		int line = previousLine + VarIntEncoder.readSigned(data);
+		int charPositionInLine = VarIntEncoder.readSigned(data);
+		return lexer.getTokenFactory().create(lexer._tokenFactorySourcePair, type, null, channel, start, stop, line, charPositionInLine);
+	}
+
+	@Override
+	public int getLine() {
+		if (replay != null) {
+			return lastToken != null ? lastToken.getLine() : 1;
+		}
+
+		return lexer.getLine();
+	}
+
+	@Override
+	public int getCharPositionInLine() {
+		if (replay != null) {
+			return lastToken != null ? lastToken.getCharPositionInLine() : 0;
+		}
+
+		return lexer.getCharPositionInLine();
+	}
+
+	@Override
+	public CharStream getInputStream() {
+		return lexer.getInputStream();
+	}
+
+	@Override
+	public String getSourceName() {
+		return lexer.getSourceName();
+	}
+
+	@Override
+	public void setTokenFactory(@NotNull TokenFactory factory) {
+		lexer.setTokenFactory(factory);
+	}
+
+	@Override
+	public TokenFactory getTokenFactory() {
+		return lexer.getTokenFactory();
+	}
+}
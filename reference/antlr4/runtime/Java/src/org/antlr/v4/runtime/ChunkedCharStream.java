@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * A character stream whose data is appended in chunks by the caller instead of
+ * being pulled from a {@link java.io.Reader}. Reading beyond the available
+ * data never blocks: {@link #LA} returns {@link IntStream#EOF}, and if the
+ * stream has not been {@link #close closed} the stream records that the
+ * reader ran out of data (see {@link #hasLookedPastEnd}). {@link PushLexer}
+ * uses that flag to tell a complete token from one which is cut off at the end
+ * of a chunk.
+ *
+ * <p>Consumed data is kept until {@link #discard} is called, so any index at or
+ * after the last discarded index can be passed to {@link #seek}.</p>
+ */
+public class ChunkedCharStream implements CharStream {
+	public static final int INITIAL_BUFFER_SIZE = 1024;
+
+	/** The buffered data; {@code data[0]} is at absolute index {@link #bufferStartIndex}. */
+	protected char[] data;
+
+	/** The number of characters currently in {@link #data data}. */
+	protected int n;
+
+	/** 0..n index into {@link #data data} of the next character. */
+	protected int p;
+
+	/** The absolute index of {@code data[0]}. */
+	protected int bufferStartIndex;
+
+	/** Set by {@link #close}; no more data will be appended. */
+	protected boolean closed;
+
+	/** Set when {@link #LA} is asked for a character which has not arrived yet. */
+	protected boolean lookedPastEnd;
+
+	/** The name or source of this char stream. */
+	public String name;
+
+	public ChunkedCharStream() {
+		this(INITIAL_BUFFER_SIZE);
+	}
+
+	public ChunkedCharStream(int bufferSize) {
+		data = new char[Math.max(bufferSize, 1)];
+	}
+
+	public void append(@NotNull char[] chars, int offset, int length) {
+		ensureAppendable(length);
+		System.arraycopy(chars, offset, data, n, length);
+		n += length;
+	}
+
+	public void append(@NotNull CharBuffer chars) {
+		int length = chars.remaining();
+		ensureAppendable(length);
+		chars.get(data, n, length);
+		n += length;
+	}
+
+	public void append(@NotNull CharSequence chars) {
+		int length = chars.length();
+		ensureAppendable(length);
+		for (int i = 0; i < length; i++) {
+			data[n + i] = chars.charAt(i);
+		}
+
+		n += length;
+	}
+
+	/** Marks the end of the input. After this, {@link IntStream#EOF} is final. */
+	public void close() {
+		closed = true;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Gets whether {@link #LA} returned {@link IntStream#EOF} for data which
+	 * has not arrived yet since the last call to {@link #clearLookedPastEnd}.
+	 * This is never set once the stream is closed.
+	 */
+	public boolean hasLookedPastEnd() {
+		return lookedPastEnd;
+	}
+
+	public void clearLookedPastEnd() {
+		lookedPastEnd = false;
+	}
+
+	/**
+	 * Releases the buffered data before absolute index {@code index}. The text
+	 * of that range is no longer available from {@link #getText}.
+	 */
+	public void discard(int index) {
+		int count = Math.min(index - bufferStartIndex, p);
+		if (count <= 0) {
+			return;
+		}
+
+		System.arraycopy(data, count, data, 0, n - count);
+		n -= count;
+		p -= count;
+		bufferStartIndex += count;
+	}
+
+	protected void ensureAppendable(int length) {
+		if (closed) {
+			throw new IllegalStateException("cannot append to a closed stream");
+		}
+
+		if (n + length > data.length) {
+			data = Arrays.copyOf(data, Math.max(data.length * 2, n + length));
+		}
+	}
+
+	@Override
+	public void consume() {
+		if (p >= n) {
+			if (closed) {
+				throw new IllegalStateException("cannot consume EOF");
+			}
+
+			throw new IllegalStateException("cannot consume data which has not arrived");
+		}
+
+		p++;
+	}
+
+	@Override
+	public int LA(int i) {
+		if (i == 0) {
+			return 0; // undefined
+		}
+
+		int index = i > 0 ? p + i - 1 : p + i;
+		if (index < 0) {
+			return IntStream.EOF;
+		}
+
+		if (index >= n) {
+			if (!closed) {
+				lookedPastEnd = true;
+			}
+
+			return IntStream.EOF;
+		}
+
+		return data[index];
+	}
+
+	/** mark/release do nothing; data is kept until {@link #discard} */
+	@Override
+	public int mark() {
+		return -1;
+	}
+
+	@Override
+	public void release(int marker) {
+	}
+
+	@Override
+	public int index() {
+		return bufferStartIndex + p;
+	}
+
+	@Override
+	public void seek(int index) {
+		if (index < bufferStartIndex) {
+			throw new IllegalArgumentException("cannot seek to discarded index " + index);
+		}
+
+		p = Math.min(index - bufferStartIndex, n);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws UnsupportedOperationException if the stream is not closed
+	 */
+	@Override
+	public int size() {
+		if (!closed) {
+			throw new UnsupportedOperationException("Open chunked stream cannot know its size");
+		}
+
+		return bufferStartIndex + n;
+	}
+
+	@Override
+	public String getText(Interval interval) {
+		if (interval.a < bufferStartIndex) {
+			throw new UnsupportedOperationException("interval "+interval+" outside buffer: "+
+							    bufferStartIndex+".."+(bufferStartIndex+n-1));
+		}
+
+		int start = interval.a - bufferStartIndex;
+		int stop = Math.min(interval.b - bufferStartIndex, n - 1);
+		if (start > stop) {
+			return "";
+		}
+
+		return new String(data, start, stop - start + 1);
+	}
+
+	@Override
+	public String getSourceName() {
+		if (name == null || name.isEmpty()) {
+			return UNKNOWN_SOURCE_NAME;
+		}
+
+		return name;
+	}
+}
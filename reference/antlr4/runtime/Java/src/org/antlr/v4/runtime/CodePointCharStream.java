@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * A {@link CharStream} over the Unicode code points of its input, rather than
+ * the UTF-16 code units used by {@link ANTLRInputStream}. Symbols returned by
+ * {@link #LA} are code points in the range {@code 0..0x10FFFF}, and indexes
+ * count code points, so supplementary characters occupy a single position.
+ *
+ * <p>The input is stored in the narrowest array able to hold every code point
+ * it contains: a {@code byte[]} when all code points are at most
+ * {@code U+00FF}, a {@code char[]} when they are all in the Basic
+ * Multilingual Plane, and an {@code int[]} otherwise. UTF-8 input is decoded
+ * in a single pass directly into that storage; malformed sequences are
+ * replaced with {@code U+FFFD}.</p>
+ *
+ * <p>Instances are created through the static {@code from*} methods.</p>
+ */
+public abstract class CodePointCharStream implements CharStream {
+	private static final int REPLACEMENT_CHARACTER = 0xFFFD;
+	private static final int READ_BUFFER_SIZE = 4096;
+
+	/** The number of code points in the stream. */
+	protected final int n;
+
+	/** 0..n-1 index of the next code point. */
+	protected int p;
+
+	@Nullable
+	protected final String name;
+
+	protected CodePointCharStream(int n, @Nullable String name) {
+		this.n = n;
+		this.name = name;
+	}
+
+	/**
+	 * Creates a stream over the code points of {@code s}. Unpaired surrogates
+	 * are kept as individual code points.
+	 */
+	@NotNull
+	public static CodePointCharStream fromString(@NotNull String s) {
+		return fromString(s, null);
+	}
+
+	@NotNull
+	public static CodePointCharStream fromString(@NotNull String s, @Nullable String sourceName) {
+		Builder builder = new Builder(s.length());
+		for (int i = 0; i < s.length(); ) {
+			int c = s.codePointAt(i);
+			builder.append(c);
+			i += Character.charCount(c);
+		}
+
+		return builder.build(sourceName);
+	}
+
+	@NotNull
+	public static CodePointCharStream fromUTF8(@NotNull byte[] bytes, @Nullable String sourceName) {
+		return fromUTF8(bytes, 0, bytes.length, sourceName);
+	}
+
+	/**
+	 * Decodes UTF-8 from {@code bytes[offset..offset+length-1]}. A leading byte
+	 * order mark is not removed.
+	 */
+	@NotNull
+	public static CodePointCharStream fromUTF8(@NotNull byte[] bytes, int offset, int length, @Nullable String sourceName) {
+		if (offset < 0 || length < 0 || offset + length > bytes.length) {
+			throw new IndexOutOfBoundsException();
+		}
+
+		// every code point takes at least one byte
+		Builder builder = new Builder(length);
+		int end = offset + length;
+		int i = offset;
+		while (i < end) {
+			int b0 = bytes[i] & 0xFF;
+			if (b0 < 0x80) {
+				builder.append(b0);
+				i++;
+				continue;
+			}
+
+			int count;
+			int c;
+			int min2 = 0x80;
+			int max2 = 0xBF;
+			if (b0 >= 0xC2 && b0 <= 0xDF) {
+				count = 1;
+				c = b0 & 0x1F;
+			}
+			else if (b0 >= 0xE0 && b0 <= 0xEF) {
+				count = 2;
+				c = b0 & 0x0F;
+				if (b0 == 0xE0) {
+					// overlong
+					min2 = 0xA0;
+				}
+				else if (b0 == 0xED) {
+					// surrogates
+					max2 = 0x9F;
+				}
+			}
+			else if (b0 >= 0xF0 && b0 <= 0xF4) {
+				count = 3;
+				c = b0 & 0x07;
+				if (b0 == 0xF0) {
+					// overlong
+					min2 = 0x90;
+				}
+				else if (b0 == 0xF4) {
+					// above U+10FFFF
+					max2 = 0x8F;
+				}
+			}
+			else {
+				builder.append(REPLACEMENT_CHARACTER);
+				i++;
+				continue;
+			}
+
+			// on error, the maximal valid prefix is replaced by one U+FFFD
+			i++;
+			boolean valid = true;
+			for (int j = 0; j < count; j++, i++) {
+				int b = i < end ? bytes[i] & 0xFF : -1;
+				int min = j == 0 ? min2 : 0x80;
+				int max = j == 0 ? max2 : 0xBF;
+				if (b < min || b > max) {
+					valid = false;
+					break;
+				}
+
+				c = (c << 6) | (b & 0x3F);
+			}
+
+			builder.append(valid ? c : REPLACEMENT_CHARACTER);
+		}
+
+		return builder.build(sourceName);
+	}
+
+	/**
+	 * Reads all remaining bytes from {@code input} and decodes them as UTF-8.
+	 * The stream is not closed.
+	 */
+	@NotNull
+	public static CodePointCharStream fromUTF8(@NotNull InputStream input, @Nullable String sourceName) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		byte[] chunk = new byte[READ_BUFFER_SIZE];
+		int numRead;
+		while ((numRead = input.read(chunk)) != -1) {
+			buffer.write(chunk, 0, numRead);
+		}
+
+		return fromUTF8(buffer.toByteArray(), sourceName);
+	}
+
+	/** Gets the code point at index {@code i}, where {@code 0 <= i < n}. */
+	protected abstract int getCodePoint(int i);
+
+	/** Appends the code points at {@code start..start+count-1} to {@code builder}. */
+	protected abstract void appendText(@NotNull StringBuilder builder, int start, int count);
+
+	@Override
+	public void consume() {
+		if (p >= n) {
+			assert LA(1) == IntStream.EOF;
+			throw new IllegalStateException("cannot consume EOF");
+		}
+
+		p++;
+	}
+
+	@Override
+	public int LA(int i) {
+		if (i == 0) {
+			return 0; // undefined
+		}
+
+		int index = i > 0 ? p + i - 1 : p + i;
+		if (index < 0 || index >= n) {
+			return IntStream.EOF;
+		}
+
+		return getCodePoint(index);
+	}
+
+	@Override
+	public int index() {
+		return p;
+	}
+
+	@Override
+	public int size() {
+		return n;
+	}
+
+	/** mark/release do nothing; we have entire buffer */
+	@Override
+	public int mark() {
+		return -1;
+	}
+
+	@Override
+	public void release(int marker) {
+	}
+
+	/** This stream keeps no line or column state, so seeking only moves the
+	 *  index, which is clamped to {@code 0..n}.
+	 */
+	@Override
+	public void seek(int index) {
+		p = Math.max(0, Math.min(index, n));
+	}
+
+	@Override
+	public String getText(Interval interval) {
+		int start = Math.max(interval.a, 0);
+		int stop = Math.min(interval.b, n - 1);
+		if (start > stop) {
+			return "";
+		}
+
+		StringBuilder builder = new StringBuilder(stop - start + 1);
+		appendText(builder, start, stop - start + 1);
+		return builder.toString();
+	}
+
+	@Override
+	public String getSourceName() {
+		if (name == null || name.isEmpty()) {
+			return UNKNOWN_SOURCE_NAME;
+		}
+
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return getText(Interval.of(0, n - 1));
+	}
+
+	/** Code points in {@code U+0000..U+00FF}, one byte each. */
+	private static final class Latin1CharStream extends CodePointCharStream {
+		private final byte[] data;
+
+		Latin1CharStream(byte[] data, int n, String name) {
+			super(n, name);
+			this.data = data;
+		}
+
+		@Override
+		protected int getCodePoint(int i) {
+			return data[i] & 0xFF;
+		}
+
+		@Override
+		protected void appendText(StringBuilder builder, int start, int count) {
+			for (int i = start; i < start + count; i++) {
+				builder.append((char)(data[i] & 0xFF));
+			}
+		}
+	}
+
+	/** Code points in the Basic Multilingual Plane, one {@code char} each. */
+	private static final class BMPCharStream extends CodePointCharStream {
+		private final char[] data;
+
+		BMPCharStream(char[] data, int n, String name) {
+			super(n, name);
+			this.data = data;
+		}
+
+		@Override
+		protected int getCodePoint(int i) {
+			return data[i];
+		}
+
+		@Override
+		protected void appendText(StringBuilder builder, int start, int count) {
+			builder.append(data, start, count);
+		}
+	}
+
+	/** Any code points, one {@code int} each. */
+	private static final class SupplementaryCharStream extends CodePointCharStream {
+		private final int[] data;
+
+		SupplementaryCharStream(int[] data, int n, String name) {
+			super(n, name);
+			this.data = data;
+		}
+
+		@Override
+		protected int getCodePoint(int i) {
+			return data[i];
+		}
+
+		@Override
+		protected void appendText(StringBuilder builder, int start, int count) {
+			for (int i = start; i < start + count; i++) {
+				builder.appendCodePoint(data[i]);
+			}
+		}
+	}
+
+	/**
+	 * Accumulates code points in the narrowest storage seen so far, widening
+	 * the array (once per tier) when a larger code point is appended.
+	 */
+	private static final class Builder {
+		private final int capacity;
+		private byte[] bytes;
+		private char[] chars;
+		private int[] ints;
+		private int n;
+
+		Builder(int capacity) {
+			this.capacity = capacity;
+			this.bytes = new byte[capacity];
+		}
+
+		void append(int c) {
+			if (bytes != null) {
+				if (c <= 0xFF) {
+					bytes[n++] = (byte)c;
+					return;
+				}
+
+				chars = new char[capacity];
+				for (int i = 0; i < n; i++) {
+					chars[i] = (char)(bytes[i] & 0xFF);
+				}
+
+				bytes = null;
+			}
+
+			if (chars != null) {
+				if (c <= Character.MAX_VALUE) {
+					chars[n++] = (char)c;
+					return;
+				}
+
+				ints = new int[capacity];
+				for (int i = 0; i < n; i++) {
+					ints[i] = chars[i];
+				}
+
+				chars = null;
+			}
+
+			ints[n++] = c;
+		}
+
+		/** Builds the stream, trimming the storage if multi-byte sequences or
+		 *  surrogate pairs left it only partially used.
+		 */
+		CodePointCharStream build(String name) {
+			if (bytes != null) {
+				return new Latin1CharStream(n < capacity ? Arrays.copyOf(bytes, n) : bytes, n, name);
+			}
+			else if (chars != null) {
+				return new BMPCharStream(n < capacity ? Arrays.copyOf(chars, n) : chars, n, name);
+			}
+			else {
+				return new SupplementaryCharStream(n < capacity ? Arrays.copyOf(ints, n) : ints, n, name);
+			}
+		}
+	}
+}
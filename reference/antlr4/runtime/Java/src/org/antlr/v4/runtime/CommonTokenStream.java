@@ -8,6 +8,8 @@ package org.antlr.v4.runtime;
 
 import org.antlr.v4.runtime.misc.NotNull;
 
+import java.util.Arrays;
+
 /**
  * This class extends {@link BufferedTokenStream} with functionality to filter
  * token streams to tokens on a particular channel (tokens where
@@ -31,6 +33,12 @@ import org.antlr.v4.runtime.misc.NotNull;
  * {@link Lexer#skip} do not produce tokens at all, so input text matched by
  * such a rule will not be available as part of the token stream, regardless of
  * channel.</p>
+ *
+ * <p>
+ * The positions of the tokens on the channel are recorded as tokens are
+ * fetched, so the lookahead methods and {@link #seek} do not need to step over
+ * off-channel tokens. The channel of a token is read once, when it is fetched
+ * from the token source.</p>
  */
 public class CommonTokenStream extends BufferedTokenStream {
 	/**
@@ -42,6 +50,25 @@ public class CommonTokenStream extends BufferedTokenStream {
 	 */
     protected int channel = Token.DEFAULT_CHANNEL;
 
+	/**
+	 * The indexes in {@link #tokens} of the fetched tokens which are on
+	 * {@link #channel}, in increasing order. The {@link Token#EOF} token is
+	 * included regardless of its channel.
+	 */
+	protected int[] onChannelTokens = new int[100];
+
+	/** The number of elements in {@link #onChannelTokens} which are in use. */
+	protected int onChannelTokenCount;
+
+	/** The number of tokens examined by {@link #indexOnChannelTokens}. */
+	protected int indexedTokenCount;
+
+	/**
+	 * The position in {@link #onChannelTokens} of the last token found by
+	 * {@link #onChannelRank}, which is usually the current token.
+	 */
+	private int rankHint;
+
 	/**
 	 * Constructs a new {@link CommonTokenStream} using the specified token
 	 * source and the default token channel ({@link Token#DEFAULT_CHANNEL}).
@@ -69,23 +96,31 @@ public class CommonTokenStream extends BufferedTokenStream {
 
 	@Override
 	protected int adjustSeekIndex(int i) {
-		return nextTokenOnChannel(i, channel);
+		sync(i);
+		if (i >= size()) {
+			return size() - 1;
+		}
+
+		int rank = onChannelRank(i);
+		while (rank == onChannelTokenCount && fetch(1) > 0) {
+			// the next token on channel has not been fetched yet
+		}
+
+		if (rank == onChannelTokenCount) {
+			return size() - 1;
+		}
+
+		rankHint = rank;
+		return onChannelTokens[rank];
 	}
 
     @Override
     protected Token LB(int k) {
         if ( k==0 || (p-k)<0 ) return null;
 
-        int i = p;
-        int n = 1;
-        // find k good tokens looking backwards
-        while ( n<=k && i>0 ) {
-            // skip off-channel tokens
-            i = previousTokenOnChannel(i - 1, channel);
-            n++;
-        }
-        if ( i<0 ) return null;
-        return tokens.get(i);
+		int rank = onChannelRank(p) - k;
+		if ( rank<0 ) return null;
+		return tokens.get(onChannelTokens[rank]);
     }
 
     @Override
@@ -94,20 +129,99 @@ public class CommonTokenStream extends BufferedTokenStream {
         lazyInit();
         if ( k == 0 ) return null;
         if ( k < 0 ) return LB(-k);
-        int i = p;
-        int n = 1; // we know tokens[p] is a good one
-        // find k good tokens
-        while ( n<k ) {
-            // skip off-channel tokens, but make sure to not look past EOF
-			if (sync(i + 1)) {
-				i = nextTokenOnChannel(i + 1, channel);
+
+		int rank = onChannelRank(p);
+		if (rank == onChannelTokenCount || onChannelTokens[rank] != p) {
+			// tokens[p] is off channel, which only happens if a subclass
+			// moved p directly; it still counts as LT(1)
+			if (k == 1) {
+				return tokens.get(p);
 			}
-            n++;
-        }
-//		if ( i>range ) range = i;
-        return tokens.get(i);
+
+			k--;
+		}
+
+		int target = rank + k - 1;
+		while (target >= onChannelTokenCount && fetch(1) > 0) {
+			// make sure to not look past EOF
+		}
+
+		if (target >= onChannelTokenCount) {
+			// EOF must be last token
+			return tokens.get(tokens.size() - 1);
+		}
+
+        return tokens.get(onChannelTokens[target]);
     }
 
+	@Override
+	protected int fetch(int n) {
+		int fetched = super.fetch(n);
+		indexOnChannelTokens();
+		return fetched;
+	}
+
+	@Override
+	public void setTokenSource(TokenSource tokenSource) {
+		super.setTokenSource(tokenSource);
+		onChannelTokenCount = 0;
+		indexedTokenCount = 0;
+		rankHint = 0;
+	}
+
+	/**
+	 * Adds the tokens fetched since the last call to
+	 * {@link #onChannelTokens}. {@link #sync sync(i)} is called for each token
+	 * before its channel is read, so subclasses which reassign channels in
+	 * {@code sync} are still supported.
+	 */
+	protected void indexOnChannelTokens() {
+		for (int i = indexedTokenCount; i < tokens.size(); i++) {
+			sync(i);
+			Token token = tokens.get(i);
+			if (token.getChannel() == channel || token.getType() == Token.EOF) {
+				if (onChannelTokenCount == onChannelTokens.length) {
+					onChannelTokens = Arrays.copyOf(onChannelTokens, onChannelTokenCount * 2);
+				}
+
+				onChannelTokens[onChannelTokenCount++] = i;
+			}
+		}
+
+		indexedTokenCount = tokens.size();
+	}
+
+	/**
+	 * Gets the number of fetched tokens on channel with an index less than
+	 * {@code i}, which is also the position in {@link #onChannelTokens} of the
+	 * first such token at or after {@code i}. Moving forward by one token, or
+	 * returning to the last token found, takes constant time.
+	 */
+	protected int onChannelRank(int i) {
+		int hint = rankHint;
+		if (hint < onChannelTokenCount && onChannelTokens[hint] >= i
+			&& (hint == 0 || onChannelTokens[hint - 1] < i))
+		{
+			return hint;
+		}
+
+		hint++;
+		if (hint <= onChannelTokenCount && onChannelTokens[hint - 1] < i
+			&& (hint == onChannelTokenCount || onChannelTokens[hint] >= i))
+		{
+			rankHint = hint;
+			return hint;
+		}
+
+		int rank = Arrays.binarySearch(onChannelTokens, 0, onChannelTokenCount, i);
+		if (rank < 0) {
+			rank = -rank - 1;
+		}
+
+		rankHint = rank;
+		return rank;
+	}
+
 	/** Count EOF just once. */
 	public int getNumberOfOnChannelTokens() {
 		int n = 0;
@@ -9,10 +9,10 @@ package org.antlr.v4.runtime;
 import org.antlr.v4.runtime.atn.ATN;
 import org.antlr.v4.runtime.atn.ATNState;
 import org.antlr.v4.runtime.atn.PredictionContext;
-import org.antlr.v4.runtime.atn.RuleTransition;
 import org.antlr.v4.runtime.misc.IntervalSet;
 import org.antlr.v4.runtime.misc.NotNull;
 import org.antlr.v4.runtime.misc.Nullable;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.misc.Tuple;
 
 /**
@@ -39,15 +39,96 @@ public class DefaultErrorStrategy implements ANTLRErrorStrategy {
 
 	protected IntervalSet lastErrorStates;
 
+	/**
+	 * The maximum number of recoveries allowed between two calls to
+	 * {@link #reset}, or a negative value if the number is not limited.
+	 *
+	 * @see #getMaxRecoveries
+	 */
+	private int maxRecoveries = -1;
+
+	/**
+	 * The number of recoveries since the last call to {@link #reset}.
+	 */
+	protected int recoveryCount;
+
+	/**
+	 * Gets the maximum number of recoveries allowed for each parse. When a
+	 * parse exceeds this number, the parse is canceled by a
+	 * {@link ParseCancellationException} holding the
+	 * {@link RecognitionException}, as with {@link BailErrorStrategy}. This
+	 * bounds the time spent recovering on garbage input. A negative value,
+	 * the default, does not limit recovery.
+	 *
+	 * <p>A recovery is counted for each syntax error reported by
+	 * {@link #reportError}, {@link #reportUnwantedToken} or
+	 * {@link #reportMissingToken}. Errors which are not reported because the
+	 * handler is already in error recovery mode are not counted, so an error
+	 * recovered by {@link #recoverInline} and then by {@link #recover} is
+	 * counted once. The count is reset by {@link #reset}, which is called
+	 * when the input of the parser is set.</p>
+	 *
+	 * @sharpen.property MaxRecoveries
+	 */
+	public final int getMaxRecoveries() {
+		return maxRecoveries;
+	}
+
+	/**
+	 * @sharpen.property MaxRecoveries
+	 */
+	public final void setMaxRecoveries(int maxRecoveries) {
+		this.maxRecoveries = maxRecoveries;
+	}
+
+	/**
+	 * Gets the number of recoveries since the last call to {@link #reset}.
+	 *
+	 * @sharpen.property RecoveryCount
+	 */
+	public final int getRecoveryCount() {
+		return recoveryCount;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 *
-	 * <p>The default implementation simply calls {@link #endErrorCondition} to
-	 * ensure that the handler is not in error recovery mode.</p>
+	 * <p>The default implementation calls {@link #endErrorCondition} to
+	 * ensure that the handler is not in error recovery mode, and resets the
+	 * number of recoveries.</p>
 	 */
 	@Override
 	public void reset(Parser recognizer) {
 		endErrorCondition(recognizer);
+		recoveryCount = 0;
+	}
+
+	/**
+	 * This method is called for each reported syntax error, before it is
+	 * sent to the error listeners, to enforce the limit set by
+	 * {@link #setMaxRecoveries}.
+	 *
+	 * @param recognizer the parser instance
+	 * @param e the recognition exception being recovered from, or {@code null}
+	 * to create an {@link InputMismatchException} if the parse is canceled
+	 * @exception ParseCancellationException if the number of recoveries
+	 * exceeds the limit
+	 */
+	protected void countRecovery(@NotNull Parser recognizer, @Nullable RecognitionException e) {
+		recoveryCount++;
+		if (maxRecoveries < 0 || recoveryCount <= maxRecoveries) {
+			return;
+		}
+
+		if (e == null) {
+			e = new InputMismatchException(recognizer);
+		}
+
+		for (ParserRuleContext context = recognizer.getContext(); context != null; context = context.getParent()) {
+			context.exception = e;
+		}
+
+		throw new ParseCancellationException("too many syntax errors", e);
 	}
 
 	/**
@@ -120,6 +201,7 @@ public class DefaultErrorStrategy implements ANTLRErrorStrategy {
 			return; // don't report spurious errors
 		}
 		beginErrorCondition(recognizer);
+		countRecovery(recognizer, e);
 		if ( e instanceof NoViableAltException ) {
 			reportNoViableAlternative(recognizer, (NoViableAltException) e);
 		}
@@ -347,6 +429,7 @@ public class DefaultErrorStrategy implements ANTLRErrorStrategy {
 		}
 
 		beginErrorCondition(recognizer);
+		countRecovery(recognizer, null);
 
 		Token t = recognizer.getCurrentToken();
 		String tokenName = getTokenErrorDisplay(t);
@@ -379,6 +462,7 @@ public class DefaultErrorStrategy implements ANTLRErrorStrategy {
 		}
 
 		beginErrorCondition(recognizer);
+		countRecovery(recognizer, null);
 
 		Token t = recognizer.getCurrentToken();
 		IntervalSet expecting = getExpectedTokens(recognizer);
@@ -623,7 +707,7 @@ public class DefaultErrorStrategy implements ANTLRErrorStrategy {
 		return "'"+s+"'";
 	}
 
-	/*  Compute the error recovery set for the current rule.  During
+	/** Compute the error recovery set for the current rule.  During
 	 *  rule invocation, the parser pushes the set of tokens that can
 	 *  follow that rule reference on the stack; this amounts to
 	 *  computing FIRST of what follows the rule reference in the
@@ -714,21 +798,19 @@ public class DefaultErrorStrategy implements ANTLRErrorStrategy {
 	 *
 	 *  Like Grosch I implement context-sensitive FOLLOW sets that are combined
 	 *  at run-time upon error to avoid overhead during parsing.
+	 *
+	 *  The default implementation returns the set computed by
+	 *  {@link ATN#getErrorRecoverySet}. That set is cached and shared by every
+	 *  parser using the same ATN, so it is read-only: callers which need to
+	 *  modify it must make a copy, for example with
+	 *  {@link IntervalSet#IntervalSet(IntervalSet)}.
+	 *
+	 *  @return a read-only set of token types
 	 */
 	@NotNull
 	protected IntervalSet getErrorRecoverySet(@NotNull Parser recognizer) {
 		ATN atn = recognizer.getInterpreter().atn;
-		RuleContext ctx = recognizer._ctx;
-		IntervalSet recoverSet = new IntervalSet();
-		while ( ctx!=null && ctx.invokingState>=0 ) {
-			// compute what follows who invoked us
-			ATNState invokingState = atn.states.get(ctx.invokingState);
-			RuleTransition rt = (RuleTransition)invokingState.transition(0);
-			IntervalSet follow = atn.nextTokens(rt.followState);
-			recoverSet.addAll(follow);
-			ctx = ctx.parent;
-		}
-        recoverSet.remove(Token.EPSILON);
+		IntervalSet recoverSet = atn.getErrorRecoverySet(recognizer._ctx);
 //		System.out.println("recover set "+recoverSet.toString(recognizer.getTokenNames()));
 		return recoverSet;
 	}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A perfect hash table which maps the keywords of a lexer mode to their token
+ * types.
+ *
+ * <p>When a lexer grammar is generated with the {@code keywordTable} option,
+ * keyword rules made of a single string literal which are also matched by an
+ * identifier rule are not reachable from the start state of the mode. The
+ * lexer matches keywords with the identifier rule, and {@link Lexer#nextToken}
+ * uses this table to replace the identifier type with the type of the
+ * keyword.</p>
+ *
+ * <p>The table size is a power of two, and the hash seed is chosen so that no
+ * two keywords share a slot. A lookup reads the characters of the token from
+ * the input without creating a string, and compares them with at most one
+ * keyword.</p>
+ */
+public class KeywordTable {
+	private static final int MAX_SEEDS_PER_SIZE = 256;
+
+	private final int identifierType;
+	@NotNull
+	private final String[] keywords;
+	@NotNull
+	private final int[] types;
+
+	private final int seed;
+	private final int mask;
+	@NotNull
+	private final String[] slotKeywords;
+	@NotNull
+	private final int[] slotTypes;
+
+	private final int minLength;
+	private final int maxLength;
+
+	/**
+	 * @param identifierType the token type of the identifier rule
+	 * @param keywords the keywords matched by the identifier rule
+	 * @param types the token type of each keyword
+	 */
+	public KeywordTable(int identifierType, @NotNull String[] keywords, @NotNull int[] types) {
+		if (keywords.length != types.length) {
+			throw new IllegalArgumentException("keywords and types must have the same length");
+		}
+
+		this.identifierType = identifierType;
+		this.keywords = keywords.clone();
+		this.types = types.clone();
+
+		int min = Integer.MAX_VALUE;
+		int max = 0;
+		for (String keyword : keywords) {
+			if (keyword.isEmpty()) {
+				throw new IllegalArgumentException("keywords must not be empty");
+			}
+
+			min = Math.min(min, keyword.length());
+			max = Math.max(max, keyword.length());
+		}
+
+		this.minLength = keywords.length > 0 ? min : 1;
+		this.maxLength = max;
+
+		int size = 2;
+		while (size < 2 * keywords.length) {
+			size <<= 1;
+		}
+
+		int candidate = 0;
+		String[] slots = null;
+		while (slots == null) {
+			if (candidate == MAX_SEEDS_PER_SIZE) {
+				size <<= 1;
+				candidate = 0;
+			}
+
+			candidate++;
+			slots = place(candidate, size);
+		}
+
+		this.seed = candidate;
+		this.mask = size - 1;
+		this.slotKeywords = slots;
+		this.slotTypes = new int[size];
+		Arrays.fill(slotTypes, identifierType);
+		for (int i = 0; i < keywords.length; i++) {
+			slotTypes[hash(seed, keywords[i]) & mask] = types[i];
+		}
+	}
+
+	/**
+	 * Gets the token type of the identifier rule whose tokens are looked up in
+	 * this table.
+	 *
+	 * @sharpen.property IdentifierType
+	 */
+	public final int getIdentifierType() {
+		return identifierType;
+	}
+
+	/**
+	 * @sharpen.property Keywords
+	 */
+	@NotNull
+	public String[] getKeywords() {
+		return keywords.clone();
+	}
+
+	/**
+	 * @sharpen.property Types
+	 */
+	@NotNull
+	public int[] getTypes() {
+		return types.clone();
+	}
+
+	/**
+	 * Gets the token type for the {@code length} characters which precede the
+	 * current position of {@code input}. Returns the type of the keyword with
+	 * the same text, or {@link #getIdentifierType} if there is no such
+	 * keyword.
+	 */
+	public int getType(@NotNull CharStream input, int length) {
+		if (length < minLength || length > maxLength) {
+			return identifierType;
+		}
+
+		int h = seed;
+		for (int i = -length; i < 0; i++) {
+			h = step(h, input.LA(i));
+		}
+
+		int slot = finish(h, length) & mask;
+		String keyword = slotKeywords[slot];
+		if (keyword == null || keyword.length() != length) {
+			return identifierType;
+		}
+
+		for (int i = 0; i < length; i++) {
+			if (input.LA(i - length) != keyword.charAt(i)) {
+				return identifierType;
+			}
+		}
+
+		return slotTypes[slot];
+	}
+
+	/**
+	 * Gets the token type for the {@code length} characters of {@code data}
+	 * starting at {@code offset}. Returns the type of the keyword with the same
+	 * text, or {@link #getIdentifierType} if there is no such keyword.
+	 */
+	public int getType(@NotNull char[] data, int offset, int length) {
+		if (length < minLength || length > maxLength) {
+			return identifierType;
+		}
+
+		int h = seed;
+		for (int i = 0; i < length; i++) {
+			h = step(h, data[offset + i]);
+		}
+
+		int slot = finish(h, length) & mask;
+		String keyword = slotKeywords[slot];
+		if (keyword == null || keyword.length() != length) {
+			return identifierType;
+		}
+
+		for (int i = 0; i < length; i++) {
+			if (data[offset + i] != keyword.charAt(i)) {
+				return identifierType;
+			}
+		}
+
+		return slotTypes[slot];
+	}
+
+	/**
+	 * Gets the token type for {@code text}. Returns the type of the keyword
+	 * with the same text, or {@link #getIdentifierType} if there is no such
+	 * keyword.
+	 */
+	public int getType(@NotNull String text) {
+		if (text.length() < minLength || text.length() > maxLength) {
+			return identifierType;
+		}
+
+		int slot = hash(seed, text) & mask;
+		if (text.equals(slotKeywords[slot])) {
+			return slotTypes[slot];
+		}
+
+		return identifierType;
+	}
+
+	private String[] place(int seed, int size) {
+		String[] slots = new String[size];
+		for (String keyword : keywords) {
+			int slot = hash(seed, keyword) & (size - 1);
+			if (slots[slot] != null) {
+				if (slots[slot].equals(keyword)) {
+					throw new IllegalArgumentException("duplicate keyword: " + keyword);
+				}
+
+				return null;
+			}
+
+			slots[slot] = keyword;
+		}
+
+		return slots;
+	}
+
+	private static int hash(int seed, @NotNull String text) {
+		int h = seed;
+		for (int i = 0; i < text.length(); i++) {
+			h = step(h, text.charAt(i));
+		}
+
+		return finish(h, text.length());
+	}
+
+	private static int step(int h, int c) {
+		return (h ^ c) * 0x01000193;
+	}
+
+	private static int finish(int h, int length) {
+		h ^= length;
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		return h;
+	}
+}
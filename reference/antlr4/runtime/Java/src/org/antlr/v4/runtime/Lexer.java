@@ -8,6 +8,7 @@ package org.antlr.v4.runtime;
 import org.antlr.v4.runtime.atn.LexerATNSimulator;
 import org.antlr.v4.runtime.misc.IntegerStack;
 import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Nullable;
 import org.antlr.v4.runtime.misc.Tuple;
 import org.antlr.v4.runtime.misc.Tuple2;
 
@@ -135,6 +136,8 @@ public abstract class Lexer extends Recognizer<Integer, LexerATNSimulator>
 //				System.out.println("nextToken line "+tokenStartLine+" at "+((char)input.LA(1))+
 //								   " in mode "+mode+
 //								   " at index "+input.index());
+					int matchStartIndex = _input.index();
+					int matchMode = _mode;
 					int ttype;
 					try {
 						ttype = getInterpreter().match(_input, _mode);
@@ -148,6 +151,7 @@ public abstract class Lexer extends Recognizer<Integer, LexerATNSimulator>
 						_hitEOF = true;
 					}
 					if ( _type == Token.INVALID_TYPE ) _type = ttype;
+					_type = classifyKeyword(matchMode, _type, _input.index() - matchStartIndex);
 					if ( _type ==SKIP ) {
 						continue outer;
 					}
@@ -163,6 +167,38 @@ public abstract class Lexer extends Recognizer<Integer, LexerATNSimulator>
 		}
 	}
 
+	/**
+	 * Gets the keyword table of each mode, or {@code null} if the grammar was
+	 * not generated with keyword tables. An element is {@code null} if its
+	 * mode has no keyword table.
+	 *
+	 * @see KeywordTable
+	 */
+	@Nullable
+	public KeywordTable[] getKeywordTables() {
+		return null;
+	}
+
+	/**
+	 * Gets the token type for a match of {@code length} characters ending at
+	 * the current position of the input. If {@code type} is the identifier type
+	 * of the keyword table of {@code mode}, the matched text is looked up in the
+	 * table; otherwise {@code type} is returned.
+	 */
+	protected int classifyKeyword(int mode, int type, int length) {
+		KeywordTable[] keywordTables = getKeywordTables();
+		if (keywordTables == null || mode < 0 || mode >= keywordTables.length) {
+			return type;
+		}
+
+		KeywordTable keywordTable = keywordTables[mode];
+		if (keywordTable == null || type != keywordTable.getIdentifierType()) {
+			return type;
+		}
+
+		return keywordTable.getType(_input, length);
+	}
+
 	/** Instruct the lexer to skip creating a token for current lexer rule
 	 *  and look for another token.  nextToken() knows to keep looking when
 	 *  a lexer rule finishes with token set to SKIP_TOKEN.  Recall that
@@ -407,7 +443,7 @@ public abstract class Lexer extends Recognizer<Integer, LexerATNSimulator>
 	}
 
 	public String getErrorDisplay(int c) {
-		String s = String.valueOf((char)c);
+		String s = Character.isValidCodePoint(c) ? new String(Character.toChars(c)) : String.valueOf((char)c);
 		switch ( c ) {
 			case Token.EOF :
 				s = "<EOF>";
@@ -10,6 +10,7 @@ import org.antlr.v4.runtime.atn.ATN;
 import org.antlr.v4.runtime.atn.ATNType;
 import org.antlr.v4.runtime.atn.LexerATNSimulator;
 import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
 
 import java.util.Collection;
 
@@ -23,6 +24,8 @@ public class LexerInterpreter extends Lexer {
 	protected final String[] modeNames;
 	@NotNull
 	private final Vocabulary vocabulary;
+	@Nullable
+	private final KeywordTable[] keywordTables;
 
 
 	@Deprecated
@@ -31,6 +34,10 @@ public class LexerInterpreter extends Lexer {
 	}
 
 	public LexerInterpreter(String grammarFileName, @NotNull Vocabulary vocabulary, Collection<String> ruleNames, Collection<String> modeNames, ATN atn, CharStream input) {
+		this(grammarFileName, vocabulary, ruleNames, modeNames, atn, null, input);
+	}
+
+	public LexerInterpreter(String grammarFileName, @NotNull Vocabulary vocabulary, Collection<String> ruleNames, Collection<String> modeNames, ATN atn, @Nullable KeywordTable[] keywordTables, CharStream input) {
 		super(input);
 
 		if (atn.grammarType != ATNType.LEXER) {
@@ -47,6 +54,7 @@ public class LexerInterpreter extends Lexer {
 		this.ruleNames = ruleNames.toArray(new String[ruleNames.size()]);
 		this.modeNames = modeNames.toArray(new String[modeNames.size()]);
 		this.vocabulary = vocabulary;
+		this.keywordTables = keywordTables;
 		this._interp = new LexerATNSimulator(this,atn);
 	}
 
@@ -84,4 +92,9 @@ public class LexerInterpreter extends Lexer {
 
 		return super.getVocabulary();
 	}
+
+	@Override
+	public KeywordTable[] getKeywordTables() {
+		return keywordTables;
+	}
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An in-memory {@link TokenCache} which discards the least recently used
+ * entries when the total size of the stored data exceeds a bound.
+ */
+public class LruTokenCache implements TokenCache {
+	private final long maxBytes;
+	private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+	private long size;
+
+	public LruTokenCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Gets the total size in bytes of the stored data.
+	 *
+	 * @sharpen.property Size
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	@Nullable
+	@Override
+	public synchronized ByteBuffer get(@NotNull String key) {
+		byte[] data = entries.get(key);
+		if (data == null) {
+			return null;
+		}
+
+		return ByteBuffer.wrap(data).asReadOnlyBuffer();
+	}
+
+	@Override
+	public synchronized void put(@NotNull String key, @NotNull byte[] data) {
+		if (data.length > maxBytes) {
+			return;
+		}
+
+		byte[] previous = entries.put(key, data);
+		if (previous != null) {
+			size -= previous.length;
+		}
+
+		size += data.length;
+		Iterator<Map.Entry<String, byte[]>> iterator = entries.entrySet().iterator();
+		while (size > maxBytes) {
+			size -= iterator.next().getValue().length;
+			iterator.remove();
+		}
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A {@link TokenCache} which stores each entry in a file of a directory, and
+ * reads entries by mapping the file into memory. When the total size of the
+ * files exceeds a bound, the least recently read or written files are
+ * deleted.
+ *
+ * <p>Entries are written to a temporary file which is then renamed, so a
+ * reader never sees a partially written entry. Several processes may share
+ * the directory. The size bound is enforced by the process which writes an
+ * entry.</p>
+ *
+ * <p>Each file starts with a header holding the length of the entry. Errors
+ * reading or writing the directory are not reported. An entry which cannot be
+ * read, or whose file does not match its header, is treated as missing, and
+ * an entry which cannot be written is discarded.</p>
+ */
+public class MappedFileTokenCache implements TokenCache {
+	private static final String SUFFIX = ".tokens";
+	private static final int MAGIC = 0x544B4331;
+	private static final int HEADER_SIZE = 8;
+
+	@NotNull
+	private final File directory;
+	private final long maxBytes;
+
+	public MappedFileTokenCache(@NotNull File directory, long maxBytes) {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @sharpen.property Directory
+	 */
+	@NotNull
+	public File getDirectory() {
+		return directory;
+	}
+
+	@Nullable
+	@Override
+	public ByteBuffer get(@NotNull String key) {
+		File file = new File(directory, key + SUFFIX);
+		try {
+			RandomAccessFile input = new RandomAccessFile(file, "r");
+			try {
+				FileChannel channel = input.getChannel();
+				long size = channel.size();
+				if (size < HEADER_SIZE) {
+					return null;
+				}
+
+				ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				if (data.getInt() != MAGIC || data.getInt() != size - HEADER_SIZE) {
+					return null;
+				}
+
+				file.setLastModified(System.currentTimeMillis());
+				return data.slice();
+			}
+			finally {
+				input.close();
+			}
+		}
+		catch (IOException ex) {
+			return null;
+		}
+	}
+
+	@Override
+	public synchronized void put(@NotNull String key, @NotNull byte[] data) {
+		if (data.length > maxBytes) {
+			return;
+		}
+
+		File file = new File(directory, key + SUFFIX);
+		File temp = null;
+		try {
+			directory.mkdirs();
+			temp = File.createTempFile(key, ".tmp", directory);
+			DataOutputStream output = new DataOutputStream(new FileOutputStream(temp));
+			try {
+				output.writeInt(MAGIC);
+				output.writeInt(data.length);
+				output.write(data);
+			}
+			finally {
+				output.close();
+			}
+
+			if (temp.renameTo(file)) {
+				temp = null;
+			}
+		}
+		catch (IOException ex) {
+			// the entry is discarded
+		}
+		finally {
+			if (temp != null) {
+				temp.delete();
+			}
+		}
+
+		evict(file);
+	}
+
+	/**
+	 * Deletes the least recently used entries until the total size is within
+	 * the bound, keeping {@code keep}.
+	 */
+	protected void evict(@NotNull File keep) {
+		File[] files = directory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File pathname) {
+				return pathname.getName().endsWith(SUFFIX);
+			}
+		});
+
+		if (files == null) {
+			return;
+		}
+
+		long total = 0;
+		final long[] lastModified = new long[files.length];
+		for (int i = 0; i < files.length; i++) {
+			total += files[i].length();
+			lastModified[i] = files[i].lastModified();
+		}
+
+		if (total <= maxBytes) {
+			return;
+		}
+
+		Integer[] order = new Integer[files.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return lastModified[o1] < lastModified[o2] ? -1 : (lastModified[o1] == lastModified[o2] ? 0 : 1);
+			}
+		});
+
+		for (int i = 0; i < order.length && total > maxBytes; i++) {
+			File file = files[order[i]];
+			if (file.equals(keep)) {
+				continue;
+			}
+
+			long length = file.length();
+			if (file.delete()) {
+				total -= length;
+			}
+		}
+	}
+}
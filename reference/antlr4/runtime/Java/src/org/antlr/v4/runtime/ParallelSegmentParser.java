@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Func1;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Parses an input made of many independent top-level constructs, such as the
+ * statements of a script, on several threads.
+ *
+ * <p>The token stream is filled and split into segments after boundary
+ * tokens, such as the {@code ';'} ending a statement. A boundary token must
+ * not be able to appear inside a top-level construct. Each segment holds at
+ * least {@link #getMinSegmentSize} tokens on channel, so that each task
+ * parses many constructs. Every segment is parsed by its own parser, created
+ * by the parser factory over a {@link SegmentTokenStream}. The top-level rule
+ * is invoked repeatedly until the end of the segment.</p>
+ *
+ * <p>Parsers of the same grammar share the {@code ATN} and DFA. The results
+ * are added, in input order, as children of one root context. Their tokens
+ * keep the indexes of the original token stream.</p>
+ *
+ * <p>Syntax errors are reported by each parser to the listeners added by the
+ * parser factory, so errors from different segments may be reported out of
+ * order and from different threads. A syntax error at the end of a segment
+ * is reported at an {@link Token#EOF} token placed at the start of the next
+ * segment.</p>
+ *
+ * @param <P> the type of parser
+ */
+public class ParallelSegmentParser<P extends Parser> {
+	public static final int DEFAULT_MIN_SEGMENT_SIZE = 1024;
+
+	@NotNull
+	private final Func1<? super TokenStream, ? extends P> parserFactory;
+	@NotNull
+	private final Func1<? super P, ? extends ParserRuleContext> rule;
+	@NotNull
+	private final IntervalSet boundaryTypes;
+
+	private int minSegmentSize = DEFAULT_MIN_SEGMENT_SIZE;
+
+	/**
+	 * @param parserFactory creates a parser reading from the token stream
+	 * passed to it
+	 * @param rule invokes the top-level rule on a parser, typically a call to
+	 * a generated rule method
+	 * @param boundaryTypes the types of the tokens after which the input may
+	 * be split
+	 */
+	public ParallelSegmentParser(@NotNull Func1<? super TokenStream, ? extends P> parserFactory,
+								 @NotNull Func1<? super P, ? extends ParserRuleContext> rule,
+								 @NotNull IntervalSet boundaryTypes)
+	{
+		this.parserFactory = parserFactory;
+		this.rule = rule;
+		this.boundaryTypes = boundaryTypes;
+	}
+
+	/**
+	 * Gets the minimum number of tokens on channel in each segment, except
+	 * the last. The default value is {@link #DEFAULT_MIN_SEGMENT_SIZE}.
+	 *
+	 * @sharpen.property MinSegmentSize
+	 */
+	public int getMinSegmentSize() {
+		return minSegmentSize;
+	}
+
+	/**
+	 * @sharpen.property MinSegmentSize
+	 */
+	public void setMinSegmentSize(int minSegmentSize) {
+		if (minSegmentSize < 1) {
+			throw new IllegalArgumentException("minSegmentSize must be at least 1");
+		}
+
+		this.minSegmentSize = minSegmentSize;
+	}
+
+	/**
+	 * Fills {@code tokens} and returns the token ranges of the segments. The
+	 * last segment ends with the {@link Token#EOF} token.
+	 */
+	@NotNull
+	public List<Interval> findSegments(@NotNull CommonTokenStream tokens) {
+		tokens.fill();
+		List<Interval> segments = new ArrayList<Interval>();
+		int start = 0;
+		int count = 0;
+		for (int i = 0; i < tokens.size(); i++) {
+			Token token = tokens.get(i);
+			if (token.getChannel() != tokens.channel || token.getType() == Token.EOF) {
+				continue;
+			}
+
+			count++;
+			if (count >= minSegmentSize && boundaryTypes.contains(token.getType())) {
+				segments.add(Interval.of(start, i));
+				start = i + 1;
+				count = 0;
+			}
+		}
+
+		segments.add(Interval.of(start, tokens.size() - 1));
+		return segments;
+	}
+
+	/**
+	 * Parses {@code tokens} using {@code executor} and returns a new root
+	 * context holding the result of each invocation of the top-level rule.
+	 */
+	@NotNull
+	public ParserRuleContext parse(@NotNull CommonTokenStream tokens, @NotNull ExecutorService executor) throws InterruptedException {
+		ParserRuleContext root = new ParserRuleContext();
+		parse(tokens, root, executor);
+		return root;
+	}
+
+	/**
+	 * Parses {@code tokens} using {@code executor}, adding the result of each
+	 * invocation of the top-level rule as a child of {@code root}. If parsing
+	 * a segment throws an exception, the remaining segments are cancelled and
+	 * the exception is thrown from this method.
+	 */
+	public void parse(@NotNull final CommonTokenStream tokens, @NotNull ParserRuleContext root, @NotNull ExecutorService executor) throws InterruptedException {
+		List<Future<List<ParserRuleContext>>> results = new ArrayList<Future<List<ParserRuleContext>>>();
+		for (final Interval segment : findSegments(tokens)) {
+			results.add(executor.submit(new Callable<List<ParserRuleContext>>() {
+				@Override
+				public List<ParserRuleContext> call() {
+					return parseSegment(new SegmentTokenStream(tokens, segment.a, segment.b, tokens.channel));
+				}
+			}));
+		}
+
+		try {
+			for (Future<List<ParserRuleContext>> result : results) {
+				for (ParserRuleContext ctx : result.get()) {
+					ctx.parent = root;
+					root.addChild(ctx);
+				}
+			}
+		}
+		catch (ExecutionException ex) {
+			cancel(results);
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+
+			throw new RuntimeException(cause);
+		}
+		catch (InterruptedException ex) {
+			cancel(results);
+			throw ex;
+		}
+
+		if (root.getChildCount() > 0) {
+			root.start = ((ParserRuleContext)root.getChild(0)).getStart();
+			root.stop = ((ParserRuleContext)root.getChild(root.getChildCount() - 1)).getStop();
+		}
+	}
+
+	/**
+	 * Invokes the top-level rule until the end of {@code input}, and returns
+	 * the results.
+	 */
+	@NotNull
+	protected List<ParserRuleContext> parseSegment(@NotNull SegmentTokenStream input) {
+		P parser = parserFactory.eval(input);
+		List<ParserRuleContext> result = new ArrayList<ParserRuleContext>();
+		while (input.LA(1) != Token.EOF) {
+			int index = input.index();
+			result.add(rule.eval(parser));
+			if (input.index() == index) {
+				// the rule reported an error without consuming anything
+				input.consume();
+			}
+		}
+
+		return result;
+	}
+
+	private static void cancel(@NotNull List<? extends Future<?>> results) {
+		for (Future<?> result : results) {
+			result.cancel(true);
+		}
+	}
+}
@@ -0,0 +1,489 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.IntegerStack;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+import org.antlr.v4.runtime.misc.Tuple;
+import org.antlr.v4.runtime.misc.Tuple2;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ErrorNodeImpl;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.antlr.v4.runtime.tree.TerminalNodeImpl;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts a parse tree and its tokens to a compact binary form, and back.
+ * This allows a cache keyed by the content of an input to skip both lexing
+ * and parsing when the input did not change.
+ *
+ * <p>Each token is stored with its type, channel, start and stop indexes,
+ * line and position in line. The text of a token is only stored if it is not
+ * the text of the input between its start and stop indexes, so the input must
+ * be passed to {@link #deserialize} to restore the text of the other tokens.
+ * For each context, the class, invoking state, rule index, alternative
+ * number, start and stop tokens are stored. Terminal and error nodes refer to
+ * their tokens by index; tokens which are not part of the token stream, such
+ * as the tokens conjured up by error recovery, are stored in the node.</p>
+ *
+ * <p>The deserializer creates instances of the same context classes, so the
+ * accessor methods of generated contexts work on the restored tree. A context
+ * class is created with its {@code (ParserRuleContext, int)} constructor;
+ * the context of a labeled alternative is created from an instance of its
+ * rule's context, as done by the generated parser. The fields of contexts,
+ * such as labels, arguments, return values and locals, and
+ * {@link ParserRuleContext#exception}, are not restored.</p>
+ *
+ * <p>The serialized form records a fingerprint of the parser's grammar.
+ * {@link #deserialize} returns {@code null} if it does not match, so that
+ * entries written for an older version of the grammar are ignored.</p>
+ */
+public class ParseTreeSerializer {
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int TERMINAL = -1;
+	private static final int ERROR = -2;
+	private static final int DETACHED_TERMINAL = -3;
+	private static final int DETACHED_ERROR = -4;
+
+	@NotNull
+	private final Parser parser;
+
+	private final int fingerprint;
+
+	@NotNull
+	private TokenFactory tokenFactory = CommonTokenFactory.DEFAULT;
+
+	private final Map<String, ContextConstructor> constructors = new HashMap<String, ContextConstructor>();
+
+	public ParseTreeSerializer(@NotNull Parser parser) {
+		this.parser = parser;
+		this.fingerprint = computeFingerprint(parser);
+	}
+
+	/**
+	 * @sharpen.property Parser
+	 */
+	@NotNull
+	public Parser getParser() {
+		return parser;
+	}
+
+	/**
+	 * Gets the factory which creates the deserialized tokens. The default value
+	 * is {@link CommonTokenFactory#DEFAULT}.
+	 *
+	 * @sharpen.property TokenFactory
+	 */
+	@NotNull
+	public TokenFactory getTokenFactory() {
+		return tokenFactory;
+	}
+
+	/**
+	 * @sharpen.property TokenFactory
+	 */
+	public void setTokenFactory(@NotNull TokenFactory tokenFactory) {
+		this.tokenFactory = tokenFactory;
+	}
+
+	/**
+	 * Serializes {@code tree} and {@code tokens}. The token indexes of
+	 * {@code tokens} must be their positions in the list, as for the tokens of
+	 * a {@link BufferedTokenStream}.
+	 */
+	@NotNull
+	public byte[] serialize(@NotNull ParserRuleContext tree, @NotNull List<? extends Token> tokens) {
+		VarIntEncoder encoder = new VarIntEncoder();
+		encoder.writeByte(FORMAT_VERSION);
+		encoder.writeSigned(fingerprint);
+
+		encoder.writeSigned(tokens.size());
+		Token previous = null;
+		for (Token token : tokens) {
+			writeToken(encoder, token, previous, hasInputText(token) ? null : token.getText());
+			previous = token;
+		}
+
+		Map<Class<?>, Integer> classes = new HashMap<Class<?>, Integer>();
+		VarIntEncoder nodes = new VarIntEncoder();
+		Deque<ParseTree> stack = new ArrayDeque<ParseTree>();
+		stack.push(tree);
+		while (!stack.isEmpty()) {
+			ParseTree node = stack.pop();
+			if (node instanceof TerminalNode) {
+				Token symbol = ((TerminalNode)node).getSymbol();
+				boolean error = node instanceof ErrorNode;
+				if (isStreamToken(symbol, tokens)) {
+					nodes.writeSigned(error ? ERROR : TERMINAL);
+					nodes.writeSigned(symbol.getTokenIndex());
+				}
+				else {
+					nodes.writeSigned(error ? DETACHED_ERROR : DETACHED_TERMINAL);
+					writeToken(nodes, symbol, null, symbol.getText());
+				}
+
+				continue;
+			}
+
+			ParserRuleContext ctx = (ParserRuleContext)node;
+			Integer classIndex = classes.get(ctx.getClass());
+			if (classIndex == null) {
+				classIndex = classes.size();
+				classes.put(ctx.getClass(), classIndex);
+			}
+
+			nodes.writeSigned(classIndex);
+			nodes.writeSigned(ctx.invokingState);
+			nodes.writeSigned(ctx.getRuleIndex());
+			nodes.writeSigned(ctx.getAltNumber());
+			nodes.writeSigned(isStreamToken(ctx.getStart(), tokens) ? ctx.getStart().getTokenIndex() + 1 : 0);
+			nodes.writeSigned(isStreamToken(ctx.getStop(), tokens) ? ctx.getStop().getTokenIndex() + 1 : 0);
+			nodes.writeSigned(ctx.getChildCount());
+			for (int i = ctx.getChildCount() - 1; i >= 0; i--) {
+				stack.push(ctx.getChild(i));
+			}
+		}
+
+		String[] classNames = new String[classes.size()];
+		for (Map.Entry<Class<?>, Integer> entry : classes.entrySet()) {
+			classNames[entry.getValue()] = entry.getKey().getName();
+		}
+
+		encoder.writeSigned(classNames.length);
+		for (String className : classNames) {
+			encoder.writeString(className);
+		}
+
+		byte[] header = encoder.toByteArray();
+		byte[] body = nodes.toByteArray();
+		byte[] result = Arrays.copyOf(header, header.length + body.length);
+		System.arraycopy(body, 0, result, header.length, body.length);
+		return result;
+	}
+
+	/**
+	 * Deserializes a tree and its tokens.
+	 *
+	 * @param data the serialized form
+	 * @param input the input the tokens were created from, which provides the
+	 * text of the tokens
+	 * @return the tree and its tokens, or {@code null} if {@code data} was
+	 * serialized in another format or for another grammar
+	 */
+	@Nullable
+	public Result deserialize(@NotNull ByteBuffer data, @Nullable CharStream input) {
+		if (!data.hasRemaining() || (data.get() & 0xFF) != FORMAT_VERSION || VarIntEncoder.readSigned(data) != fingerprint) {
+			return null;
+		}
+
+		TokenFactory factory = tokenFactory;
+		Tuple2<? extends TokenSource, CharStream> source = Tuple.create((TokenSource)null, input);
+		int tokenCount = VarIntEncoder.readSigned(data);
+		List<Token> tokens = new ArrayList<Token>(tokenCount);
+		Token previous = null;
+		for (int i = 0; i < tokenCount; i++) {
+			Token token = readToken(data, factory, source, previous);
+			if (token instanceof WritableToken) {
+				((WritableToken)token).setTokenIndex(i);
+			}
+
+			tokens.add(token);
+			previous = token;
+		}
+
+		ContextConstructor[] classes = new ContextConstructor[VarIntEncoder.readSigned(data)];
+		for (int i = 0; i < classes.length; i++) {
+			classes[i] = getConstructor(VarIntEncoder.readString(data));
+		}
+
+		ParserRuleContext root = null;
+		Deque<ParserRuleContext> parents = new ArrayDeque<ParserRuleContext>();
+		IntegerStack remaining = new IntegerStack();
+		do {
+			ParserRuleContext parent = parents.peek();
+			int kind = VarIntEncoder.readSigned(data);
+			if (kind < 0) {
+				Token symbol;
+				if (kind == TERMINAL || kind == ERROR) {
+					symbol = tokens.get(VarIntEncoder.readSigned(data));
+				}
+				else {
+					symbol = readToken(data, factory, source, null);
+				}
+
+				TerminalNodeImpl node = kind == ERROR || kind == DETACHED_ERROR ? new ErrorNodeImpl(symbol) : new TerminalNodeImpl(symbol);
+				if (parent == null) {
+					throw new IllegalArgumentException("The root of a parse tree must be a context.");
+				}
+
+				node.parent = parent;
+				parent.addChild(node);
+			}
+			else {
+				int invokingState = VarIntEncoder.readSigned(data);
+				int ruleIndex = VarIntEncoder.readSigned(data);
+				ParserRuleContext ctx = classes[kind].create(parent, invokingState, ruleIndex);
+				ctx.setAltNumber(VarIntEncoder.readSigned(data));
+				int start = VarIntEncoder.readSigned(data) - 1;
+				int stop = VarIntEncoder.readSigned(data) - 1;
+				ctx.start = start >= 0 ? tokens.get(start) : null;
+				ctx.stop = stop >= 0 ? tokens.get(stop) : null;
+				if (parent != null) {
+					parent.addChild(ctx);
+				}
+				else {
+					root = ctx;
+				}
+
+				int childCount = VarIntEncoder.readSigned(data);
+				if (childCount > 0) {
+					if (parent != null) {
+						remaining.push(remaining.pop() - 1);
+					}
+
+					parents.push(ctx);
+					remaining.push(childCount);
+					continue;
+				}
+			}
+
+			if (parent != null) {
+				remaining.push(remaining.pop() - 1);
+			}
+
+			while (!parents.isEmpty() && remaining.peek() == 0) {
+				parents.pop();
+				remaining.pop();
+			}
+		} while (!parents.isEmpty());
+
+		return new Result(root, tokens);
+	}
+
+	private static boolean isStreamToken(@Nullable Token token, @NotNull List<? extends Token> tokens) {
+		if (token == null) {
+			return false;
+		}
+
+		int index = token.getTokenIndex();
+		return index >= 0 && index < tokens.size() && tokens.get(index) == token;
+	}
+
+	private static void writeToken(@NotNull VarIntEncoder encoder, @NotNull Token token, @Nullable Token previous, @Nullable String text) {
+		int previousStop = previous != null ? previous.getStopIndex() : -1;
+		int previousLine = previous != null ? previous.getLine() : 1;
+		encoder.writeSigned(token.getType());
+		encoder.writeSigned(token.getChannel());
+		encoder.writeSigned(token.getStartIndex() - previousStop - 1);
+		encoder.writeSigned(token.getStopIndex() - token.getStartIndex() + 1);
+		encoder.writeSigned(token.getLine() - previousLine);
+		encoder.writeSigned(token.getCharPositionInLine());
+		encoder.writeString(text);
+	}
+
+	@NotNull
+	private static Token readToken(@NotNull ByteBuffer data,
+								   @NotNull TokenFactory factory,
+								   @NotNull Tuple2<? extends TokenSource, CharStream> source,
+								   @Nullable Token previous)
+	{
+		int previousStop = previous != null ? previous.getStopIndex() : -1;
+		int previousLine = previous != null ? previous.getLine() : 1;
+		int type = VarIntEncoder.readSigned(data);
+		int channel = VarIntEncoder.readSigned(data);
+		int start = previousStop + 1 + VarIntEncoder.readSigned(data);
+		int stop = start + VarIntEncoder.readSigned(data) - 1;
+		int line = previousLine + VarIntEncoder.readSigned(data);
+		int charPositionInLine = VarIntEncoder.readSigned(data);
+		String text = VarIntEncoder.readString(data);
+		return factory.create(source, type, text, channel, start, stop, line, charPositionInLine);
+	}
+
+	/**
+	 * Determines whether the text of {@code token} is the text of its input
+	 * between its start and stop indexes.
+	 */
+	private static boolean hasInputText(@NotNull Token token) {
+		if (token.getType() == Token.EOF) {
+			return true;
+		}
+
+		CharStream input = token.getInputStream();
+		if (input == null || token.getStartIndex() < 0 || token.getStopIndex() >= input.size()) {
+			return false;
+		}
+
+		if (token instanceof CommonToken && ((CommonToken)token).text == null) {
+			return true;
+		}
+
+		String text = input.getText(Interval.of(token.getStartIndex(), token.getStopIndex()));
+		return text.equals(token.getText());
+	}
+
+	private static int computeFingerprint(@NotNull Parser parser) {
+		int hash = parser.getClass().getName().hashCode();
+		hash = 31 * hash + Arrays.hashCode(parser.getRuleNames());
+		try {
+			hash = 31 * hash + parser.getSerializedATN().hashCode();
+		}
+		catch (UnsupportedOperationException ex) {
+			// interpreted parsers are identified by their rule names only
+		}
+
+		return hash;
+	}
+
+	@NotNull
+	private ContextConstructor getConstructor(@NotNull String className) {
+		ContextConstructor constructor = constructors.get(className);
+		if (constructor == null) {
+			Class<?> contextClass;
+			try {
+				contextClass = Class.forName(className, false, parser.getClass().getClassLoader());
+			}
+			catch (ClassNotFoundException ex) {
+				throw new IllegalStateException("Context class " + className + " was not found.", ex);
+			}
+
+			constructor = createConstructor(contextClass.asSubclass(ParserRuleContext.class));
+			constructors.put(className, constructor);
+		}
+
+		return constructor;
+	}
+
+	@NotNull
+	private static ContextConstructor createConstructor(@NotNull Class<? extends ParserRuleContext> contextClass) {
+		if (contextClass == ParserRuleContext.class) {
+			return new ContextConstructor(null, null);
+		}
+
+		try {
+			if (InterpreterRuleContext.class.isAssignableFrom(contextClass)) {
+				return new ContextConstructor(contextClass.getConstructor(ParserRuleContext.class, int.class, int.class), null);
+			}
+
+			return new ContextConstructor(contextClass.getConstructor(ParserRuleContext.class, int.class), null);
+		}
+		catch (NoSuchMethodException ex) {
+			// the context of a labeled alternative
+		}
+
+		Class<? extends ParserRuleContext> ruleContextClass = contextClass.getSuperclass().asSubclass(ParserRuleContext.class);
+		try {
+			ContextConstructor ruleConstructor = createConstructor(ruleContextClass);
+			return new ContextConstructor(contextClass.getConstructor(ruleContextClass), ruleConstructor);
+		}
+		catch (NoSuchMethodException ex) {
+			throw new IllegalStateException("Context class " + contextClass.getName() + " has no supported constructor.", ex);
+		}
+	}
+
+	/** Creates the instances of a context class. */
+	private static final class ContextConstructor {
+		/**
+		 * The constructor, or {@code null} to create a
+		 * {@link ParserRuleContext}.
+		 */
+		@Nullable
+		private final Constructor<? extends ParserRuleContext> constructor;
+		/**
+		 * Creates the rule context passed to {@link #constructor} for a labeled
+		 * alternative, or {@code null}.
+		 */
+		@Nullable
+		private final ContextConstructor ruleConstructor;
+
+		public ContextConstructor(@Nullable Constructor<? extends ParserRuleContext> constructor, @Nullable ContextConstructor ruleConstructor) {
+			this.constructor = constructor;
+			this.ruleConstructor = ruleConstructor;
+		}
+
+		@NotNull
+		public ParserRuleContext create(@Nullable ParserRuleContext parent, int invokingState, int ruleIndex) {
+			if (constructor == null) {
+				return new ParserRuleContext(parent, invokingState);
+			}
+
+			try {
+				if (ruleConstructor != null) {
+					return constructor.newInstance(ruleConstructor.create(parent, invokingState, ruleIndex));
+				}
+
+				if (InterpreterRuleContext.class.isAssignableFrom(constructor.getDeclaringClass())) {
+					return constructor.newInstance(parent, invokingState, ruleIndex);
+				}
+
+				return constructor.newInstance(parent, invokingState);
+			}
+			catch (InstantiationException ex) {
+				throw new IllegalStateException(ex);
+			}
+			catch (IllegalAccessException ex) {
+				throw new IllegalStateException(ex);
+			}
+			catch (InvocationTargetException ex) {
+				throw new IllegalStateException(ex.getCause());
+			}
+		}
+	}
+
+	/** A deserialized parse tree and its tokens. */
+	public static final class Result {
+		@NotNull
+		private final ParserRuleContext tree;
+		@NotNull
+		private final List<Token> tokens;
+
+		public Result(@NotNull ParserRuleContext tree, @NotNull List<Token> tokens) {
+			this.tree = tree;
+			this.tokens = tokens;
+		}
+
+		/**
+		 * @sharpen.property Tree
+		 */
+		@NotNull
+		public ParserRuleContext getTree() {
+			return tree;
+		}
+
+		/**
+		 * @sharpen.property Tokens
+		 */
+		@NotNull
+		public List<Token> getTokens() {
+			return tokens;
+		}
+
+		/**
+		 * Creates a filled token stream holding the tokens, for example to get
+		 * the text of a context with {@link TokenStream#getText(RuleContext)}.
+		 */
+		@NotNull
+		public CommonTokenStream createTokenStream() {
+			CommonTokenStream stream = new CommonTokenStream(new ListTokenSource(tokens));
+			stream.fill();
+			return stream;
+		}
+	}
+}
@@ -16,10 +16,12 @@ import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.atn.ProfilingATNSimulator;
 import org.antlr.v4.runtime.atn.RuleTransition;
 import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.misc.Func1;
 import org.antlr.v4.runtime.misc.IntegerStack;
 import org.antlr.v4.runtime.misc.IntervalSet;
 import org.antlr.v4.runtime.misc.NotNull;
 import org.antlr.v4.runtime.misc.Nullable;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ErrorNode;
 import org.antlr.v4.runtime.tree.ParseTreeListener;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
@@ -84,6 +86,32 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		}
 	}
 
+	/**
+	 * The error strategy used for the first (SLL) stage of
+	 * {@link #parseTwoStage}. Syntax errors are not reported to the error
+	 * listeners; instead, the first one cancels the current stage so the rule
+	 * invocation can be retried with full LL prediction.
+	 */
+	private static class FirstStageErrorStrategy extends DefaultErrorStrategy {
+		@Override
+		public void reportError(Parser recognizer, RecognitionException e) {
+		}
+
+		@Override
+		public void recover(Parser recognizer, RecognitionException e) {
+			throw new ParseCancellationException(e);
+		}
+
+		@Override
+		public Token recoverInline(Parser recognizer) throws RecognitionException {
+			throw new ParseCancellationException(new InputMismatchException(recognizer));
+		}
+
+		@Override
+		public void sync(Parser recognizer) {
+		}
+	}
+
 	/**
 	 * This field maps from the serialized ATN string to the deserialized {@link ATN} with
 	 * bypass alternatives.
@@ -159,6 +187,18 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 	/** Indicates parser has match()ed EOF token. See {@link #exitRule()}. */
 	protected boolean matchedEOF;
 
+	/**
+	 * The number of rule invocations made through {@link #parseTwoStage} which
+	 * completed in the first (SLL) stage.
+	 */
+	private int _twoStageSllCount;
+
+	/**
+	 * The number of rule invocations made through {@link #parseTwoStage} which
+	 * required the second (full LL) stage.
+	 */
+	private int _twoStageFallbackCount;
+
 	public Parser(TokenStream input) {
 		setInputStream(input);
 	}
@@ -626,6 +666,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 	 */
 	public void enterRule(@NotNull ParserRuleContext localctx, int state, int ruleIndex) {
 		setState(state);
+		_interp.checkPredictionDeadline();
 		_ctx = localctx;
 		_ctx.start = _input.LT(1);
 		if (_buildParseTrees) addContextToParseTree();
@@ -634,6 +675,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 
 	public void enterLeftFactoredRule(ParserRuleContext localctx, int state, int ruleIndex) {
 		setState(state);
+		_interp.checkPredictionDeadline();
 		if (_buildParseTrees) {
 			ParserRuleContext factoredContext = (ParserRuleContext)_ctx.getChild(_ctx.getChildCount() - 1);
 			_ctx.removeLastChild();
@@ -707,6 +749,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 
 	public void enterRecursionRule(ParserRuleContext localctx, int state, int ruleIndex, int precedence) {
 		setState(state);
+		_interp.checkPredictionDeadline();
 		_precedenceStack.push(precedence);
 		_ctx = localctx;
 		_ctx.start = _input.LT(1);
@@ -959,6 +1002,132 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 			setInterpreter(new ParserATNSimulator(this, getATN()));
 		}
 		getInterpreter().setPredictionMode(interp.getPredictionMode());
+		getInterpreter().setPredictionPolicy(interp.getPredictionPolicy());
+		getInterpreter().setMetrics(interp.getMetrics());
+	}
+
+	/**
+	 * Invokes a rule using two-stage parsing. The rule is first parsed using
+	 * {@link PredictionMode#SLL} and an error strategy which cancels the
+	 * stage on the first syntax error. If the first stage fails, the input is
+	 * rewound to the start of the invocation, the partial result is removed
+	 * from the parse tree, and the rule is invoked again using the prediction
+	 * mode and error strategy configured for this parser (or
+	 * {@link PredictionMode#LL} if the configured mode is
+	 * {@link PredictionMode#SLL}).
+	 *
+	 * <p>Only the current invocation is retried. When the rule is invoked
+	 * repeatedly for the elements of a larger construct, for example once for
+	 * each statement of a file, subtrees produced by earlier invocations and
+	 * tokens already fetched by the token stream are kept, and a failure in
+	 * one element does not force the remaining elements to be parsed with full
+	 * LL prediction. If {@link #getContext} is not {@code null} when this
+	 * method is called, the resulting context is added as a child of that
+	 * context in the same manner as a rule invoked from a generated rule
+	 * method.</p>
+	 *
+	 * <p>Parse listeners receive the events of both stages, so listeners which
+	 * need to observe a single pass over the input should be attached to the
+	 * resulting tree with {@link ParseTreeWalker} instead.</p>
+	 *
+	 * <pre>
+	 * List&lt;StatContext&gt; stats = new ArrayList&lt;StatContext&gt;();
+	 * while (parser.getInputStream().LA(1) != Token.EOF) {
+	 *     stats.add(parser.parseTwoStage(new Func1&lt;Parser, StatContext&gt;() {
+	 *         public StatContext eval(Parser p) {
+	 *             return ((MyParser)p).stat();
+	 *         }
+	 *     }));
+	 * }
+	 * </pre>
+	 *
+	 * @param rule the rule invocation, typically a call to a generated rule
+	 * method on the parser passed as the argument
+	 * @return the result of the rule invocation
+	 *
+	 * @see #getTwoStageSllCount
+	 * @see #getTwoStageFallbackCount
+	 */
+	public <T extends ParserRuleContext> T parseTwoStage(@NotNull Func1<? super Parser, ? extends T> rule) {
+		ParserATNSimulator interpreter = getInterpreter();
+		PredictionMode predictionMode = interpreter.getPredictionMode();
+		ANTLRErrorStrategy errorHandler = _errHandler;
+
+		ParserRuleContext parent = _ctx;
+		int childCount = parent != null ? parent.getChildCount() : 0;
+		int state = getState();
+		int precedenceDepth = _precedenceStack.size();
+		boolean previousMatchedEOF = matchedEOF;
+
+		int marker = _input.mark();
+		int index = _input.index();
+		try {
+			try {
+				interpreter.setPredictionMode(PredictionMode.SLL);
+				_errHandler = new FirstStageErrorStrategy();
+				T result = rule.eval(this);
+				_twoStageSllCount++;
+				return result;
+			}
+			catch (ParseCancellationException ex) {
+				// fall through to the second stage
+			}
+			finally {
+				interpreter.setPredictionMode(predictionMode);
+				_errHandler = errorHandler;
+			}
+
+			_twoStageFallbackCount++;
+			_input.seek(index);
+			_ctx = parent;
+			if (parent != null) {
+				while (parent.getChildCount() > childCount) {
+					parent.removeLastChild();
+				}
+			}
+
+			setState(state);
+			while (_precedenceStack.size() > precedenceDepth) {
+				_precedenceStack.pop();
+			}
+
+			matchedEOF = previousMatchedEOF;
+			_errHandler.reset(this);
+			if (predictionMode == PredictionMode.SLL) {
+				interpreter.setPredictionMode(PredictionMode.LL);
+			}
+
+			try {
+				return rule.eval(this);
+			}
+			finally {
+				interpreter.setPredictionMode(predictionMode);
+			}
+		}
+		finally {
+			_input.release(marker);
+		}
+	}
+
+	/**
+	 * Gets the number of rule invocations made through {@link #parseTwoStage}
+	 * which completed without requiring full LL prediction.
+	 *
+	 * @sharpen.property TwoStageSllCount
+	 */
+	public int getTwoStageSllCount() {
+		return _twoStageSllCount;
+	}
+
+	/**
+	 * Gets the number of rule invocations made through {@link #parseTwoStage}
+	 * which failed in the first stage and were parsed again using full LL
+	 * prediction.
+	 *
+	 * @sharpen.property TwoStageFallbackCount
+	 */
+	public int getTwoStageFallbackCount() {
+		return _twoStageFallbackCount;
 	}
 
 	/**
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Func1;
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread-safe pool of lexer, token stream and parser instances, for
+ * services which parse a separate input for each request.
+ *
+ * <p>Constructing a recognizer allocates its ATN simulator, error strategy,
+ * listener lists and stacks. {@link #borrow} reuses the instances returned by
+ * an earlier {@link #release} instead, after connecting them to the new
+ * input and resetting them. {@link #release} disconnects the instances from
+ * the input and clears the token buffer, so the pool holds no reference to
+ * the input, its tokens or the parse tree.</p>
+ *
+ * <p>The configuration of the lexer and parser, such as error listeners,
+ * parse listeners, the error strategy and the prediction mode, is kept from
+ * one borrow to the next. Configuration which refers to the input or to a
+ * parse tree should be set up by the factories, or removed by the caller
+ * before calling {@link #release}.</p>
+ *
+ * @param <L> the type of lexer
+ * @param <P> the type of parser
+ */
+public class ParserPool<L extends Lexer, P extends Parser> {
+	public static final int DEFAULT_MAX_IDLE = 16;
+
+	@NotNull
+	private final Func1<? super CharStream, ? extends L> lexerFactory;
+	@NotNull
+	private final Func1<? super TokenStream, ? extends P> parserFactory;
+	private final int maxIdle;
+
+	private final Queue<Entry<L, P>> idle = new ConcurrentLinkedQueue<Entry<L, P>>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+	private final AtomicInteger createdCount = new AtomicInteger();
+
+	public ParserPool(@NotNull Func1<? super CharStream, ? extends L> lexerFactory,
+					  @NotNull Func1<? super TokenStream, ? extends P> parserFactory)
+	{
+		this(lexerFactory, parserFactory, DEFAULT_MAX_IDLE);
+	}
+
+	/**
+	 * @param lexerFactory creates a lexer reading from the char stream passed
+	 * to it
+	 * @param parserFactory creates a parser reading from the token stream
+	 * passed to it
+	 * @param maxIdle the maximum number of released instances kept for reuse
+	 */
+	public ParserPool(@NotNull Func1<? super CharStream, ? extends L> lexerFactory,
+					  @NotNull Func1<? super TokenStream, ? extends P> parserFactory,
+					  int maxIdle)
+	{
+		this.lexerFactory = lexerFactory;
+		this.parserFactory = parserFactory;
+		this.maxIdle = maxIdle;
+	}
+
+	/**
+	 * Gets the number of instances created by the factories since this pool
+	 * was created.
+	 *
+	 * @sharpen.property CreatedCount
+	 */
+	public int getCreatedCount() {
+		return createdCount.get();
+	}
+
+	/**
+	 * Gets the number of released instances currently kept for reuse.
+	 *
+	 * @sharpen.property IdleCount
+	 */
+	public int getIdleCount() {
+		return idleCount.get();
+	}
+
+	/**
+	 * Gets a lexer, token stream and parser reading from {@code input}. The
+	 * instances are used by a single thread until they are passed to
+	 * {@link #release}.
+	 */
+	@NotNull
+	public Entry<L, P> borrow(@NotNull CharStream input) {
+		Entry<L, P> entry = idle.poll();
+		if (entry == null) {
+			L lexer = lexerFactory.eval(input);
+			CommonTokenStream tokens = new CommonTokenStream(lexer);
+			P parser = parserFactory.eval(tokens);
+			createdCount.incrementAndGet();
+			entry = new Entry<L, P>(this, lexer, tokens, parser);
+		}
+		else {
+			idleCount.decrementAndGet();
+			entry.lexer.setInputStream(input);
+			entry.tokens.setTokenSource(entry.lexer);
+			entry.parser.setInputStream(entry.tokens);
+		}
+
+		entry.borrowed = true;
+		return entry;
+	}
+
+	/**
+	 * Returns {@code entry} to the pool. The instances must not be used after
+	 * this method is called, and tokens and parse trees obtained from them
+	 * no longer refer to them.
+	 *
+	 * @exception IllegalStateException if {@code entry} was not borrowed from
+	 * this pool, or has already been released
+	 */
+	public void release(@NotNull Entry<L, P> entry) {
+		if (entry.pool != this || !entry.borrowed) {
+			throw new IllegalStateException("the entry is not borrowed from this pool");
+		}
+
+		entry.borrowed = false;
+		entry.parser.setInputStream(null);
+		entry.lexer.setInputStream(null);
+		entry.tokens.setTokenSource(entry.lexer);
+
+		if (idleCount.incrementAndGet() <= maxIdle) {
+			idle.add(entry);
+		}
+		else {
+			idleCount.decrementAndGet();
+		}
+	}
+
+	/**
+	 * A lexer, token stream and parser borrowed from a {@link ParserPool}.
+	 */
+	public static final class Entry<L extends Lexer, P extends Parser> {
+		@NotNull
+		private final ParserPool<L, P> pool;
+		@NotNull
+		private final L lexer;
+		@NotNull
+		private final CommonTokenStream tokens;
+		@NotNull
+		private final P parser;
+		private boolean borrowed;
+
+		private Entry(@NotNull ParserPool<L, P> pool, @NotNull L lexer, @NotNull CommonTokenStream tokens, @NotNull P parser) {
+			this.pool = pool;
+			this.lexer = lexer;
+			this.tokens = tokens;
+			this.parser = parser;
+		}
+
+		/**
+		 * @sharpen.property Lexer
+		 */
+		@NotNull
+		public L getLexer() {
+			return lexer;
+		}
+
+		/**
+		 * @sharpen.property TokenStream
+		 */
+		@NotNull
+		public CommonTokenStream getTokenStream() {
+			return tokens;
+		}
+
+		/**
+		 * @sharpen.property Parser
+		 */
+		@NotNull
+		public P getParser() {
+			return parser;
+		}
+	}
+}
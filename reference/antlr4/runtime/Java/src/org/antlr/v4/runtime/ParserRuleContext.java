@@ -182,12 +182,14 @@ public class ParserRuleContext extends RuleContext {
 	}
 
 	public <T extends ParseTree> T getChild(Class<? extends T> ctxType, int i) {
-		if ( children==null || i < 0 || i >= children.size() ) {
+		int n = getChildCount();
+		if ( i < 0 || i >= n ) {
 			return null;
 		}
 
 		int j = -1; // what element have we found with ctxType?
-		for (ParseTree o : children) {
+		for (int k = 0; k < n; k++) {
+			ParseTree o = getChild(k);
 			if ( ctxType.isInstance(o) ) {
 				j++;
 				if ( j == i ) {
@@ -199,12 +201,14 @@ public class ParserRuleContext extends RuleContext {
 	}
 
 	public TerminalNode getToken(int ttype, int i) {
-		if ( children==null || i < 0 || i >= children.size() ) {
+		int n = getChildCount();
+		if ( i < 0 || i >= n ) {
 			return null;
 		}
 
 		int j = -1; // what token with ttype have we found?
-		for (ParseTree o : children) {
+		for (int k = 0; k < n; k++) {
+			ParseTree o = getChild(k);
 			if ( o instanceof TerminalNode ) {
 				TerminalNode tnode = (TerminalNode)o;
 				Token symbol = tnode.getSymbol();
@@ -221,12 +225,9 @@ public class ParserRuleContext extends RuleContext {
 	}
 
 	public List<? extends TerminalNode> getTokens(int ttype) {
-		if ( children==null ) {
-			return Collections.emptyList();
-		}
-
 		List<TerminalNode> tokens = null;
-		for (ParseTree o : children) {
+		for (int k = 0; k < getChildCount(); k++) {
+			ParseTree o = getChild(k);
 			if ( o instanceof TerminalNode ) {
 				TerminalNode tnode = (TerminalNode)o;
 				Token symbol = tnode.getSymbol();
@@ -251,12 +252,9 @@ public class ParserRuleContext extends RuleContext {
 	}
 
 	public <T extends ParserRuleContext> List<? extends T> getRuleContexts(Class<? extends T> ctxType) {
-		if ( children==null ) {
-			return Collections.emptyList();
-		}
-
 		List<T> contexts = null;
-		for (ParseTree o : children) {
+		for (int k = 0; k < getChildCount(); k++) {
+			ParseTree o = getChild(k);
 			if ( ctxType.isInstance(o) ) {
 				if ( contexts==null ) {
 					contexts = new ArrayList<T>();
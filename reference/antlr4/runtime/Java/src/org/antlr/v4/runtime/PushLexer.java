@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.IntegerStack;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A push-style front end for a {@link Lexer}. Input arrives in chunks through
+ * the {@code push} methods, which never block. Each call returns every token
+ * that is complete. A token is complete when the lexer did not need a
+ * character after the end of the data received so far.
+ *
+ * <p>A token cut off by the end of a chunk is abandoned. The lexer state is
+ * rolled back to the start of that token: the input position, line, column,
+ * mode, mode stack, and any errors reported while matching it. The token is
+ * matched again when the next chunk arrives. The lexer's DFA is shared with
+ * every other instance of the grammar, so work done on the abandoned attempt
+ * is not lost. Embedded lexer actions may run more than once for the same
+ * token, so they should not have side effects outside the lexer state listed
+ * above.</p>
+ *
+ * <p>Consumed input is released after each chunk. Token text therefore has to
+ * be copied into the tokens. If the lexer uses
+ * {@link CommonTokenFactory#DEFAULT}, a text-copying factory is installed in
+ * its place.</p>
+ *
+ * <p>This class is not thread safe. A single instance may be driven from
+ * different threads as long as calls do not overlap, as on an event loop.</p>
+ */
+public class PushLexer {
+	@NotNull
+	private final Lexer lexer;
+	@NotNull
+	private final ChunkedCharStream input;
+	@Nullable
+	private final CharsetDecoder decoder;
+
+	/** Bytes at the end of the last chunk which did not form a complete character. */
+	@Nullable
+	private ByteBuffer pendingBytes;
+
+	private boolean finished;
+
+	/** Lexer errors reported while matching the current token. */
+	private final List<DeferredError> deferredErrors = new ArrayList<DeferredError>();
+
+	public PushLexer(@NotNull Lexer lexer) {
+		this(lexer, null);
+	}
+
+	/**
+	 * Constructs a push lexer which also accepts byte chunks, decoded with
+	 * {@code charset}. Characters split across chunks are handled, and
+	 * malformed input is replaced.
+	 */
+	public PushLexer(@NotNull Lexer lexer, @Nullable Charset charset) {
+		this.lexer = lexer;
+		this.input = new ChunkedCharStream();
+		this.input.name = lexer._input != null ? lexer._input.getSourceName() : null;
+		lexer.setInputStream(input);
+		if (lexer.getTokenFactory() == CommonTokenFactory.DEFAULT) {
+			lexer.setTokenFactory(new CommonTokenFactory(true));
+		}
+
+		if (charset != null) {
+			decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+		else {
+			decoder = null;
+		}
+	}
+
+	/**
+	 * @sharpen.property Lexer
+	 */
+	@NotNull
+	public Lexer getLexer() {
+		return lexer;
+	}
+
+	/**
+	 * Gets whether {@link #finish} has been called.
+	 *
+	 * @sharpen.property IsFinished
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	@NotNull
+	public List<Token> push(@NotNull CharSequence chunk) {
+		checkNotFinished();
+		input.append(chunk);
+		return drain();
+	}
+
+	@NotNull
+	public List<Token> push(@NotNull char[] chunk, int offset, int length) {
+		checkNotFinished();
+		input.append(chunk, offset, length);
+		return drain();
+	}
+
+	/**
+	 * Appends the remaining characters of {@code chunk}, which is consumed.
+	 */
+	@NotNull
+	public List<Token> push(@NotNull CharBuffer chunk) {
+		checkNotFinished();
+		input.append(chunk);
+		return drain();
+	}
+
+	/**
+	 * Decodes and appends the remaining bytes of {@code chunk}, which is
+	 * consumed.
+	 *
+	 * @exception IllegalStateException if this instance was not constructed
+	 * with a {@link Charset}
+	 */
+	@NotNull
+	public List<Token> push(@NotNull ByteBuffer chunk) {
+		checkNotFinished();
+		decode(chunk, false);
+		return drain();
+	}
+
+	/**
+	 * Marks the end of the input and returns the remaining tokens, including
+	 * the {@link Token#EOF} token.
+	 */
+	@NotNull
+	public List<Token> finish() {
+		checkNotFinished();
+		if (decoder != null) {
+			decode(ByteBuffer.allocate(0), true);
+		}
+
+		input.close();
+		finished = true;
+		return drain();
+	}
+
+	protected void decode(@NotNull ByteBuffer chunk, boolean endOfInput) {
+		if (decoder == null) {
+			throw new IllegalStateException("byte input requires a charset");
+		}
+
+		ByteBuffer bytes = chunk;
+		if (pendingBytes != null) {
+			bytes = ByteBuffer.allocate(pendingBytes.remaining() + chunk.remaining());
+			bytes.put(pendingBytes).put(chunk);
+			bytes.flip();
+			pendingBytes = null;
+		}
+
+		CharBuffer chars = CharBuffer.allocate((int)Math.ceil(bytes.remaining() * (double)decoder.maxCharsPerByte()) + 1);
+		decoder.decode(bytes, chars, endOfInput);
+		if (endOfInput) {
+			decoder.flush(chars);
+			decoder.reset();
+		}
+		else if (bytes.hasRemaining()) {
+			pendingBytes = ByteBuffer.allocate(bytes.remaining());
+			pendingBytes.put(bytes);
+			pendingBytes.flip();
+		}
+
+		chars.flip();
+		input.append(chars);
+	}
+
+	/** Matches tokens until the data runs out or {@link Token#EOF} is returned. */
+	@NotNull
+	protected List<Token> drain() {
+		List<Token> tokens = new ArrayList<Token>();
+		List<? extends ANTLRErrorListener<? super Integer>> listeners = lexer.getErrorListeners();
+		ErrorCollector collector = new ErrorCollector();
+		lexer.removeErrorListeners();
+		lexer.addErrorListener(collector);
+		try {
+			while (true) {
+				int index = input.index();
+				int line = lexer.getLine();
+				int charPositionInLine = lexer.getCharPositionInLine();
+				int mode = lexer._mode;
+				IntegerStack modeStack = new IntegerStack(lexer._modeStack);
+
+				deferredErrors.clear();
+				input.clearLookedPastEnd();
+				Token token = lexer.nextToken();
+				if (input.hasLookedPastEnd()) {
+					// the token may continue in the next chunk
+					input.seek(index);
+					lexer.setLine(line);
+					lexer.setCharPositionInLine(charPositionInLine);
+					lexer._mode = mode;
+					lexer._modeStack.clear();
+					lexer._modeStack.addAll(modeStack);
+					lexer._hitEOF = false;
+					deferredErrors.clear();
+					break;
+				}
+
+				for (DeferredError error : deferredErrors) {
+					for (ANTLRErrorListener<? super Integer> listener : listeners) {
+						listener.syntaxError(lexer, error.offendingSymbol, error.line, error.charPositionInLine, error.msg, error.e);
+					}
+				}
+
+				tokens.add(token);
+				if (token.getType() == Token.EOF) {
+					break;
+				}
+			}
+		}
+		finally {
+			lexer.removeErrorListeners();
+			for (ANTLRErrorListener<? super Integer> listener : listeners) {
+				lexer.addErrorListener(listener);
+			}
+		}
+
+		input.discard(input.index());
+		return tokens;
+	}
+
+	private void checkNotFinished() {
+		if (finished) {
+			throw new IllegalStateException("the input has already been finished");
+		}
+	}
+
+	private static final class DeferredError {
+		public final Integer offendingSymbol;
+		public final int line;
+		public final int charPositionInLine;
+		public final String msg;
+		public final RecognitionException e;
+
+		public DeferredError(Integer offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+			this.offendingSymbol = offendingSymbol;
+			this.line = line;
+			this.charPositionInLine = charPositionInLine;
+			this.msg = msg;
+			this.e = e;
+		}
+	}
+
+	private final class ErrorCollector implements ANTLRErrorListener<Integer> {
+		@Override
+		public <T extends Integer> void syntaxError(@NotNull Recognizer<T, ?> recognizer, @Nullable T offendingSymbol, int line, int charPositionInLine, @NotNull String msg, @Nullable RecognitionException e) {
+			deferredErrors.add(new DeferredError(offendingSymbol, line, charPositionInLine, msg, e));
+		}
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A read-only view of a range of tokens in a {@link BufferedTokenStream},
+ * which ends with an {@link Token#EOF} token. The view uses the token
+ * indexes of the underlying stream, so parse trees built from it can be
+ * combined with trees built from other ranges of the same stream.
+ *
+ * <p>If the range does not end with the {@link Token#EOF} token of the
+ * underlying stream, the view ends with a new {@link Token#EOF} token at the
+ * position of the first token after the range.</p>
+ *
+ * <p>As with {@link CommonTokenStream}, the lookahead methods only return
+ * tokens on one channel. The view does not change the underlying stream, so
+ * several views of the same stream may be used from different threads once
+ * the stream has been filled.</p>
+ */
+public class SegmentTokenStream implements TokenStream {
+	@NotNull
+	private final BufferedTokenStream source;
+	private final int start;
+	@NotNull
+	private final Token eof;
+
+	/**
+	 * The indexes of the tokens on channel in the range, in increasing order,
+	 * followed by the index of {@link #eof}.
+	 */
+	@NotNull
+	private final int[] onChannelTokens;
+
+	/** The position in {@link #onChannelTokens} of the current token. */
+	private int p;
+
+	/**
+	 * Constructs a view of tokens {@code start..stop} (inclusive) of
+	 * {@code source}, which must already have been fetched, together with
+	 * token {@code stop + 1} if {@code stop} is not the {@link Token#EOF}
+	 * token.
+	 */
+	public SegmentTokenStream(@NotNull BufferedTokenStream source, int start, int stop, int channel) {
+		if (start < 0 || stop < start - 1 || stop >= source.size()) {
+			throw new IndexOutOfBoundsException("token range " + start + ".." + stop + " out of range 0.." + (source.size() - 1));
+		}
+
+		this.source = source;
+		this.start = start;
+
+		int[] indexes = new int[Math.max(stop - start + 2, 1)];
+		int count = 0;
+		for (int i = start; i <= stop; i++) {
+			Token token = source.get(i);
+			if (token.getType() == Token.EOF) {
+				break;
+			}
+
+			if (token.getChannel() == channel) {
+				indexes[count++] = i;
+			}
+		}
+
+		if (stop >= start && source.get(stop).getType() == Token.EOF) {
+			eof = source.get(stop);
+		}
+		else {
+			CommonToken token = new CommonToken(source.get(stop + 1));
+			token.setType(Token.EOF);
+			token.setChannel(Token.DEFAULT_CHANNEL);
+			token.setStopIndex(token.getStartIndex() - 1);
+			token.setText("<EOF>");
+			eof = token;
+		}
+
+		indexes[count++] = eof.getTokenIndex();
+		this.onChannelTokens = Arrays.copyOf(indexes, count);
+	}
+
+	/**
+	 * @sharpen.property Source
+	 */
+	@NotNull
+	public BufferedTokenStream getSource() {
+		return source;
+	}
+
+	@Override
+	public Token LT(int k) {
+		if (k == 0) {
+			return null;
+		}
+
+		int position = k < 0 ? p + k : p + k - 1;
+		if (position < 0) {
+			return null;
+		}
+
+		return get(onChannelTokens[Math.min(position, onChannelTokens.length - 1)]);
+	}
+
+	@Override
+	public int LA(int i) {
+		Token token = LT(i);
+		return token != null ? token.getType() : Token.INVALID_TYPE;
+	}
+
+	@Override
+	public void consume() {
+		if (p == onChannelTokens.length - 1) {
+			throw new IllegalStateException("cannot consume EOF");
+		}
+
+		p++;
+	}
+
+	@Override
+	public Token get(int i) {
+		if (i == eof.getTokenIndex()) {
+			return eof;
+		}
+
+		if (i < start || i > eof.getTokenIndex()) {
+			throw new IndexOutOfBoundsException("token index " + i + " out of range " + start + ".." + eof.getTokenIndex());
+		}
+
+		return source.get(i);
+	}
+
+	@Override
+	public int index() {
+		return onChannelTokens[p];
+	}
+
+	/**
+	 * Moves to the first token on channel at or after {@code index}, or to
+	 * the first token on channel in the range if {@code index} is before it.
+	 */
+	@Override
+	public void seek(int index) {
+		int position = Arrays.binarySearch(onChannelTokens, index);
+		if (position < 0) {
+			position = -position - 1;
+		}
+
+		p = Math.min(position, onChannelTokens.length - 1);
+	}
+
+	@Override
+	public int mark() {
+		return 0;
+	}
+
+	@Override
+	public void release(int marker) {
+		// no resources to release
+	}
+
+	@Override
+	public int size() {
+		return eof.getTokenIndex() + 1;
+	}
+
+	@Override
+	public TokenSource getTokenSource() {
+		return source.getTokenSource();
+	}
+
+	@Override
+	public String getSourceName() {
+		return source.getSourceName();
+	}
+
+	@NotNull
+	@Override
+	public String getText() {
+		return getText(Interval.of(start, eof.getTokenIndex()));
+	}
+
+	@NotNull
+	@Override
+	public String getText(@NotNull Interval interval) {
+		int a = Math.max(interval.a, start);
+		int b = Math.min(interval.b, eof.getTokenIndex() - 1);
+		if (b < a) {
+			return "";
+		}
+
+		return source.getText(Interval.of(a, b));
+	}
+
+	@NotNull
+	@Override
+	public String getText(@NotNull RuleContext ctx) {
+		return getText(ctx.getSourceInterval());
+	}
+
+	@NotNull
+	@Override
+	public String getText(Token start, Token stop) {
+		if (start != null && stop != null) {
+			return getText(Interval.of(start.getTokenIndex(), stop.getTokenIndex()));
+		}
+
+		return "";
+	}
+}
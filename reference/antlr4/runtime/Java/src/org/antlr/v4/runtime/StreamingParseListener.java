@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+/**
+ * A parse listener which hands each completed record of a repeated top-level
+ * rule to a {@link RecordHandler}, and then removes it from the parse tree.
+ * Use it with a start rule such as {@code file : record* EOF ;} to parse an
+ * input of unbounded length in constant memory.
+ *
+ * <p>A record is an invocation of the record rule whose parent is the root
+ * of the parse tree. When a record is complete, the handler is called. All
+ * children of the root are then removed, which are the record itself and
+ * the tokens matched by the start rule before it. The record keeps its
+ * reference to the root as its parent.</p>
+ *
+ * <p>Parse trees alone do not hold the input. To release the token and
+ * character buffers behind each record, the parser also has to read from an
+ * {@link UnbufferedTokenStream}, and the lexer from an
+ * {@link UnbufferedCharStream}. The lexer should use a
+ * {@link CommonTokenFactory} which copies the token text, since the
+ * characters of earlier records are no longer buffered. Both streams keep
+ * data only while the parser holds a mark, which it does during prediction,
+ * so memory use is bounded by the lookahead needed within one record.</p>
+ *
+ * <pre>
+ * lexer.setTokenFactory(new CommonTokenFactory(true));
+ * parser.addParseListener(new StreamingParseListener(MyParser.RULE_record, handler));
+ * parser.file();
+ * </pre>
+ */
+public class StreamingParseListener implements ParseTreeListener {
+	/**
+	 * Receives the records completed by a {@link StreamingParseListener}.
+	 */
+	public interface RecordHandler {
+		/**
+		 * Called when {@code record} is complete. The record is removed from
+		 * the parse tree after this method returns.
+		 */
+		void handleRecord(@NotNull ParserRuleContext record);
+	}
+
+	private final int recordRuleIndex;
+	@NotNull
+	private final RecordHandler handler;
+	private int recordCount;
+
+	public StreamingParseListener(int recordRuleIndex, @NotNull RecordHandler handler) {
+		this.recordRuleIndex = recordRuleIndex;
+		this.handler = handler;
+	}
+
+	/**
+	 * @sharpen.property RecordRuleIndex
+	 */
+	public int getRecordRuleIndex() {
+		return recordRuleIndex;
+	}
+
+	/**
+	 * Gets the number of records passed to the handler.
+	 *
+	 * @sharpen.property RecordCount
+	 */
+	public int getRecordCount() {
+		return recordCount;
+	}
+
+	@Override
+	public void visitTerminal(TerminalNode node) {
+	}
+
+	@Override
+	public void visitErrorNode(ErrorNode node) {
+	}
+
+	@Override
+	public void enterEveryRule(ParserRuleContext ctx) {
+	}
+
+	@Override
+	public void exitEveryRule(ParserRuleContext ctx) {
+		if (ctx.getRuleIndex() != recordRuleIndex) {
+			return;
+		}
+
+		ParserRuleContext root = ctx.getParent();
+		if (root == null || root.getParent() != null) {
+			return;
+		}
+
+		recordCount++;
+		handler.handleRecord(ctx);
+
+		// the parser still needs ctx.parent to return to the root
+		while (root.getChildCount() > 0) {
+			root.removeLastChild();
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A reusable buffer of tokens stored as parallel primitive arrays, filled by
+ * {@link BulkTokenizer}. Tokens are identified by their position in the
+ * buffer. Line and column information is not stored. It is computed on
+ * demand from an index of the newlines in the input, built the first time
+ * it is needed.
+ *
+ * <p>The buffer refers to the input array it was filled from, so the text,
+ * line and column of its tokens are only valid until that array is
+ * modified.</p>
+ */
+public class TokenBuffer {
+	public static final int INITIAL_CAPACITY = 256;
+
+	protected int[] types;
+	protected int[] channels;
+	protected int[] startIndexes;
+	protected int[] stopIndexes;
+	protected int size;
+
+	protected char[] data;
+	protected int length;
+
+	/** Indexes of each {@code '\n'} in {@link #data}, or {@code null} until needed. */
+	protected int[] newlines;
+	protected int newlineCount;
+
+	public TokenBuffer() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public TokenBuffer(int capacity) {
+		capacity = Math.max(capacity, 1);
+		types = new int[capacity];
+		channels = new int[capacity];
+		startIndexes = new int[capacity];
+		stopIndexes = new int[capacity];
+	}
+
+	/** Removes all tokens and associates the buffer with new input. */
+	public void reset(@NotNull char[] data, int length) {
+		this.data = data;
+		this.length = length;
+		this.size = 0;
+		this.newlines = null;
+		this.newlineCount = 0;
+	}
+
+	public void add(int type, int channel, int startIndex, int stopIndex) {
+		if (size == types.length) {
+			int capacity = types.length * 2;
+			types = Arrays.copyOf(types, capacity);
+			channels = Arrays.copyOf(channels, capacity);
+			startIndexes = Arrays.copyOf(startIndexes, capacity);
+			stopIndexes = Arrays.copyOf(stopIndexes, capacity);
+		}
+
+		types[size] = type;
+		channels[size] = channel;
+		startIndexes[size] = startIndex;
+		stopIndexes[size] = stopIndex;
+		size++;
+	}
+
+	/**
+	 * @sharpen.property Size
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int getType(int i) {
+		checkIndex(i);
+		return types[i];
+	}
+
+	public int getChannel(int i) {
+		checkIndex(i);
+		return channels[i];
+	}
+
+	public int getStartIndex(int i) {
+		checkIndex(i);
+		return startIndexes[i];
+	}
+
+	public int getStopIndex(int i) {
+		checkIndex(i);
+		return stopIndexes[i];
+	}
+
+	@NotNull
+	public String getText(int i) {
+		checkIndex(i);
+		if (types[i] == Token.EOF) {
+			return "<EOF>";
+		}
+
+		return new String(data, startIndexes[i], stopIndexes[i] - startIndexes[i] + 1);
+	}
+
+	/** Gets the line (1..n) containing the first character of token {@code i}. */
+	public int getLine(int i) {
+		checkIndex(i);
+		return lineIndex(startIndexes[i]) + 1;
+	}
+
+	/** Gets the position (0..n-1) of token {@code i} within its line. */
+	public int getCharPositionInLine(int i) {
+		checkIndex(i);
+		int index = startIndexes[i];
+		int line = lineIndex(index);
+		return line == 0 ? index : index - newlines[line - 1] - 1;
+	}
+
+	/** Gets the number of newlines before {@code index}. */
+	protected int lineIndex(int index) {
+		if (newlines == null) {
+			indexNewlines();
+		}
+
+		int position = Arrays.binarySearch(newlines, 0, newlineCount, index);
+		// a newline at index itself is the last character of the previous line
+		return position >= 0 ? position : -position - 1;
+	}
+
+	protected void indexNewlines() {
+		int[] result = new int[16];
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			if (data[i] == '\n') {
+				if (count == result.length) {
+					result = Arrays.copyOf(result, count * 2);
+				}
+
+				result[count++] = i;
+			}
+		}
+
+		newlines = result;
+		newlineCount = count;
+	}
+
+	private void checkIndex(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("token index "+i+" out of range 0.."+(size-1));
+		}
+	}
+}
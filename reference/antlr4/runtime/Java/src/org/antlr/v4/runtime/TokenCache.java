@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stores the serialized tokens recorded by {@link CachingTokenSource}. Keys
+ * are hexadecimal strings, and values are never modified once stored.
+ * Implementations must be safe for use by multiple threads, and may discard
+ * any entry at any time.
+ *
+ * @see LruTokenCache
+ * @see MappedFileTokenCache
+ */
+public interface TokenCache {
+	/**
+	 * Gets the data stored for {@code key}, or {@code null} if there is none.
+	 * The position of the returned buffer is at the start of the data, and
+	 * its limit is at the end.
+	 */
+	@Nullable
+	ByteBuffer get(@NotNull String key);
+
+	/**
+	 * Stores {@code data} for {@code key}. The caller does not modify
+	 * {@code data} after this method is called.
+	 */
+	void put(@NotNull String key, @NotNull byte[] data);
+}
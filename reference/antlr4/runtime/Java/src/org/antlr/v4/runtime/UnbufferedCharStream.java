@@ -12,12 +12,23 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.util.Arrays;
 
 /** Do not buffer up the entire char stream. It does keep a small buffer
  *  for efficiency and also buffers while a mark exists (set by the
  *  lookahead prediction in parser). "Unbuffered" here refers to fact
  *  that it doesn't buffer all data, not that's it's on demand loading of char.
+ *
+ *  <p>Characters are read from {@link #input input} in blocks, which
+ *  {@link #nextChar nextChar()} hands out one at a time, so the
+ *  {@link Reader} is not called for each character.</p>
+ *
+ *  <p>The buffer only grows while a mark holds characters which have been
+ *  consumed. Characters before {@link #p p} which no mark protects are moved
+ *  out of the buffer before it grows, and when the last mark is released the
+ *  buffer goes back to the smaller of its last two arrays, keeping the larger
+ *  one for the next mark. Memory therefore stays bounded by the longest
+ *  marked range for inputs of any length, and repeated marks do not allocate
+ *  new arrays.</p>
  */
 public class UnbufferedCharStream implements CharStream {
 	/**
@@ -71,6 +82,21 @@ public class UnbufferedCharStream implements CharStream {
 
     protected Reader input;
 
+	/**
+	 * Characters read from {@link #input input} which have not been returned
+	 * by {@link #nextChar nextChar()} yet. These are
+	 * {@code readBuffer[readPosition]..readBuffer[readLimit-1]}.
+	 */
+	private char[] readBuffer;
+	private int readPosition;
+	private int readLimit;
+
+	/**
+	 * The array which was used for {@link #data data} before it last grew or
+	 * shrank, reused the next time the buffer changes size.
+	 */
+	private char[] spareData;
+
 	/** The name or source of this char stream. */
 	public String name;
 
@@ -166,16 +192,59 @@ public class UnbufferedCharStream implements CharStream {
 	 * {@link #input input}.
 	 */
 	protected int nextChar() throws IOException {
-		return input.read();
+		while (readPosition == readLimit) {
+			if (readBuffer == null) {
+				readBuffer = new char[Math.max(data.length, 256)];
+			}
+
+			int count = input.read(readBuffer, 0, readBuffer.length);
+			if (count < 0) {
+				return IntStream.EOF;
+			}
+
+			readPosition = 0;
+			readLimit = count;
+		}
+
+		return readBuffer[readPosition++];
 	}
 
 	protected void add(int c) {
 		if ( n>=data.length ) {
-			data = Arrays.copyOf(data, data.length * 2);
+			grow();
         }
         data[n++] = (char)c;
     }
 
+	/**
+	 * Make room for at least one more character in {@link #data data}. If no
+	 * mark is held, the consumed characters are dropped instead of growing
+	 * the buffer.
+	 */
+	private void grow() {
+		if (numMarkers == 0 && p > 0) {
+			compact();
+			return;
+		}
+
+		int capacity = data.length * 2;
+		char[] grown = spareData != null && spareData.length >= capacity ? spareData : new char[capacity];
+		System.arraycopy(data, 0, grown, 0, n);
+		spareData = data;
+		data = grown;
+	}
+
+	/**
+	 * Copy {@code data[p]..data[n-1]} to {@code data[0]..data[(n-1)-p]} and
+	 * reset the pointers.
+	 */
+	private void compact() {
+		System.arraycopy(data, p, data, 0, n - p); // shift n-p char from p to 0
+		n = n - p;
+		p = 0;
+		lastCharBufferStart = lastChar;
+	}
+
     @Override
     public int LA(int i) {
 		if ( i==-1 ) return lastChar; // special case
@@ -198,6 +267,11 @@ public class UnbufferedCharStream implements CharStream {
     @Override
     public int mark() {
 		if (numMarkers == 0) {
+			if (p > 0) {
+				// the characters before the mark can't be reached anymore
+				compact();
+			}
+
 			lastCharBufferStart = lastChar;
 		}
 
@@ -218,12 +292,16 @@ public class UnbufferedCharStream implements CharStream {
 
 		numMarkers--;
 		if ( numMarkers==0 && p > 0 ) { // release buffer when we can, but don't do unnecessary work
-			// Copy data[p]..data[n-1] to data[0]..data[(n-1)-p], reset ptrs
 			// p is last valid char; move nothing if p==n as we have no valid char
-			System.arraycopy(data, p, data, 0, n - p); // shift n-p char from p to 0
-			n = n - p;
-			p = 0;
-			lastCharBufferStart = lastChar;
+			compact();
+		}
+
+		if (numMarkers == 0 && spareData != null && spareData.length < data.length && n <= spareData.length) {
+			// go back to the smaller array, and keep this one for the next mark
+			char[] larger = data;
+			System.arraycopy(larger, 0, spareData, 0, n);
+			data = spareData;
+			spareData = larger;
 		}
     }
 
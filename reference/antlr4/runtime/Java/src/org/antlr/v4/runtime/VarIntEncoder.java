@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/** Writes zigzag-encoded variable length integers to a growable array. */
+final class VarIntEncoder {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private byte[] data = new byte[256];
+	private int size;
+
+	public void writeByte(int value) {
+		if (size == data.length) {
+			data = Arrays.copyOf(data, data.length * 2);
+		}
+
+		data[size++] = (byte)value;
+	}
+
+	public void writeSigned(int value) {
+		int encoded = (value << 1) ^ (value >> 31);
+		while ((encoded & ~0x7F) != 0) {
+			writeByte((encoded & 0x7F) | 0x80);
+			encoded >>>= 7;
+		}
+
+		writeByte(encoded);
+	}
+
+	/**
+	 * Writes the length of {@code value} plus one, followed by its UTF-8
+	 * bytes. A {@code null} value is written as a length of zero.
+	 */
+	public void writeString(@Nullable String value) {
+		if (value == null) {
+			writeSigned(0);
+			return;
+		}
+
+		byte[] bytes = value.getBytes(UTF_8);
+		writeSigned(bytes.length + 1);
+		for (byte b : bytes) {
+			writeByte(b);
+		}
+	}
+
+	@NotNull
+	public byte[] toByteArray() {
+		return Arrays.copyOf(data, size);
+	}
+
+	public static int readSigned(@NotNull ByteBuffer data) {
+		int value = 0;
+		int shift = 0;
+		while (true) {
+			int b = data.get();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				break;
+			}
+
+			shift += 7;
+		}
+
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	@Nullable
+	public static String readString(@NotNull ByteBuffer data) {
+		int length = readSigned(data) - 1;
+		if (length < 0) {
+			return null;
+		}
+
+		byte[] bytes = new byte[length];
+		data.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+}
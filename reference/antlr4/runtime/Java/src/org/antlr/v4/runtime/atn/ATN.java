@@ -89,10 +89,32 @@ public class ATN {
 
 	protected final ConcurrentMap<Integer, Integer> LL1Table = new ConcurrentHashMap<Integer, Integer>();
 
+	/**
+	 * The error recovery sets computed by {@link #getErrorRecoverySet}, used
+	 * to share a single read-only instance for equal sets.
+	 */
+	private final ConcurrentMap<IntervalSet, IntervalSet> recoverySets =
+		new ConcurrentHashMap<IntervalSet, IntervalSet>();
+
+	/**
+	 * Maps a shared error recovery set and an invoking state to the shared
+	 * recovery set which also includes the tokens following the invoking state.
+	 */
+	private final ConcurrentMap<RecoverySetKey, IntervalSet> recoverySetUnions =
+		new ConcurrentHashMap<RecoverySetKey, IntervalSet>();
+
+	/**
+	 * The context cache shared by the predictions of simulators which enable
+	 * {@link ParserATNSimulator#setShareContextCache}.
+	 */
+	@NotNull
+	private final ConcurrentPredictionContextCache sharedContextCache = new ConcurrentPredictionContextCache();
+
 	/** Used for runtime deserialization of ATNs from strings */
 	public ATN(@NotNull ATNType grammarType, int maxTokenType) {
 		this.grammarType = grammarType;
 		this.maxTokenType = maxTokenType;
+		recoverySets.put(IntervalSet.EMPTY_SET, IntervalSet.EMPTY_SET);
 	}
 
 	public final void clearDFA() {
@@ -107,7 +129,11 @@ public class ATN {
 		}
 
 		contextCache.clear();
+		sharedContextCache.clear();
 		LL1Table.clear();
+		recoverySetUnions.clear();
+		recoverySets.clear();
+		recoverySets.put(IntervalSet.EMPTY_SET, IntervalSet.EMPTY_SET);
 	}
 
 	/**
@@ -117,6 +143,17 @@ public class ATN {
 		return contextCache.size();
 	}
 
+	/**
+	 * Gets the {@link PredictionContextCache} shared by all simulators for
+	 * this ATN which enable {@link ParserATNSimulator#setShareContextCache}.
+	 *
+	 * @sharpen.property SharedContextCache
+	 */
+	@NotNull
+	public ConcurrentPredictionContextCache getSharedContextCache() {
+		return sharedContextCache;
+	}
+
 	public PredictionContext getCachedContext(PredictionContext context) {
 		return PredictionContext.getCachedContext(context, contextCache, new PredictionContext.IdentityHashMap());
 	}
@@ -265,4 +302,87 @@ public class ATN {
 
 		return expected;
 	}
+
+	/**
+	 * Computes the set of tokens which can follow the invoking state of
+	 * {@code context} and of each of its parents, excluding
+	 * {@link Token#EPSILON}. This is the resynchronization set used for error
+	 * recovery by {@link org.antlr.v4.runtime.DefaultErrorStrategy}.
+	 *
+	 * <p>The returned set is read-only and shared. Recovery sets are stored
+	 * once for each distinct content, and the union of a stored set with the
+	 * tokens following an invoking state is cached, so after the first error
+	 * in a given invocation stack, this method only performs one lookup for
+	 * each context of the stack.</p>
+	 */
+	@NotNull
+	public IntervalSet getErrorRecoverySet(@Nullable RuleContext context) {
+		IntervalSet result = IntervalSet.EMPTY_SET;
+		for (RuleContext ctx = context; ctx != null && ctx.invokingState >= 0; ctx = ctx.parent) {
+			result = getErrorRecoverySet(result, ctx.invokingState);
+		}
+
+		return result;
+	}
+
+	@NotNull
+	private IntervalSet getErrorRecoverySet(@NotNull IntervalSet recoverySet, int invokingState) {
+		RecoverySetKey key = new RecoverySetKey(recoverySet, invokingState);
+		IntervalSet result = recoverySetUnions.get(key);
+		if (result != null) {
+			return result;
+		}
+
+		RuleTransition rt = (RuleTransition)states.get(invokingState).transition(0);
+		IntervalSet follow = nextTokens(rt.followState);
+		result = new IntervalSet();
+		result.addAll(recoverySet);
+		result.addAll(follow);
+		result.remove(Token.EPSILON);
+		result.setReadonly(true);
+
+		IntervalSet existing = recoverySets.putIfAbsent(result, result);
+		if (existing != null) {
+			result = existing;
+		}
+
+		recoverySetUnions.putIfAbsent(key, result);
+		return result;
+	}
+
+	/**
+	 * A key of {@link #recoverySetUnions}. Recovery sets are compared by
+	 * identity, since each distinct set is stored once in
+	 * {@link #recoverySets}.
+	 */
+	private static final class RecoverySetKey {
+		@NotNull
+		private final IntervalSet recoverySet;
+		private final int invokingState;
+
+		public RecoverySetKey(@NotNull IntervalSet recoverySet, int invokingState) {
+			this.recoverySet = recoverySet;
+			this.invokingState = invokingState;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+
+			if (!(obj instanceof RecoverySetKey)) {
+				return false;
+			}
+
+			RecoverySetKey other = (RecoverySetKey)obj;
+			return recoverySet == other.recoverySet
+				&& invokingState == other.invokingState;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(recoverySet) + invokingState;
+		}
+	}
 }
@@ -6,21 +6,20 @@
 
 package org.antlr.v4.runtime.atn;
 
+import org.antlr.v4.runtime.misc.IntegerList;
 import org.antlr.v4.runtime.misc.NotNull;
 import org.antlr.v4.runtime.misc.Nullable;
 import org.antlr.v4.runtime.misc.Utils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
-import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
@@ -29,28 +28,41 @@ import java.util.Set;
  * @author Sam Harwell
  */
 public class ATNConfigSet implements Set<ATNConfig> {
+	private static final int INITIAL_CAPACITY = 8;
 
 	/**
-	 * This maps (state, alt) -> merged {@link ATNConfig}. The key does not account for
-	 * the {@link ATNConfig#getSemanticContext} of the value, which is only a problem if a single
+	 * This is an open-addressing hash table which maps the key of a config
+	 * (see {@link #getKey}) to the index in {@link #configs} of the merged
+	 * {@link ATNConfig}, where empty slots hold -1. The key of this class is
+	 * (state, alt), and does not account for the
+	 * {@link ATNConfig#getSemanticContext} of the value, which is only a problem if a single
 	 * {@code ATNConfigSet} contains two configs with the same state and alternative
 	 * but different semantic contexts. When this case arises, the first config
-	 * added to this map stays, and the remaining configs are placed in {@link #unmerged}.
+	 * added to this table stays, and the remaining configs are placed in {@link #unmerged}.
 	 * <p>
-	 * This map is only used for optimizing the process of adding configs to the set,
+	 * This table is only used for optimizing the process of adding configs to the set,
 	 * and is {@code null} for read-only sets stored in the DFA.
 	 */
-	private final HashMap<Long, ATNConfig> mergedConfigs;
+	private int[] mergedConfigs;
+	/** The number of occupied slots in {@link #mergedConfigs}. */
+	private int mergedConfigCount;
 	/**
-	 * This is an "overflow" list holding configs which cannot be merged with one
-	 * of the configs in {@link #mergedConfigs} but have a colliding key. This
-	 * occurs when two configs in the set have the same state and alternative but
-	 * different semantic contexts.
+	 * The key of each config in {@link #configs}, or {@code null} for
+	 * read-only sets. This allows the keys in {@link #mergedConfigs} to be
+	 * compared without loading the configs.
+	 */
+	private long[] configKeys;
+	/**
+	 * This is an "overflow" list holding the indexes in {@link #configs} of
+	 * configs which cannot be merged with one of the configs in
+	 * {@link #mergedConfigs} but have a colliding key. This occurs when two
+	 * configs in the set have the same state and alternative but different
+	 * semantic contexts.
 	 * <p>
 	 * This list is only used for optimizing the process of adding configs to the set,
 	 * and is {@code null} for read-only sets stored in the DFA.
 	 */
-	private final ArrayList<ATNConfig> unmerged;
+	private final IntegerList unmerged;
 	/**
 	 * This is a list of all configs in this set.
 	 */
@@ -76,8 +88,9 @@ public class ATNConfigSet implements Set<ATNConfig> {
 	private int cachedHashCode = -1;
 
 	public ATNConfigSet() {
-		this.mergedConfigs = new HashMap<Long, ATNConfig>();
-		this.unmerged = new ArrayList<ATNConfig>();
+		this.mergedConfigs = createMergedConfigs(INITIAL_CAPACITY);
+		this.configKeys = new long[INITIAL_CAPACITY];
+		this.unmerged = new IntegerList();
 		this.configs = new ArrayList<ATNConfig>();
 
 		this.uniqueAlt = ATN.INVALID_ALT_NUMBER;
@@ -87,13 +100,18 @@ public class ATNConfigSet implements Set<ATNConfig> {
 	protected ATNConfigSet(ATNConfigSet set, boolean readonly) {
 		if (readonly) {
 			this.mergedConfigs = null;
+			this.configKeys = null;
 			this.unmerged = null;
 		} else if (!set.isReadOnly()) {
-			this.mergedConfigs = (HashMap<Long, ATNConfig>)set.mergedConfigs.clone();
-			this.unmerged = (ArrayList<ATNConfig>)set.unmerged.clone();
+			this.mergedConfigs = set.mergedConfigs.clone();
+			this.mergedConfigCount = set.mergedConfigCount;
+			this.configKeys = set.configKeys.clone();
+			this.unmerged = new IntegerList(set.unmerged);
 		} else {
-			this.mergedConfigs = new HashMap<Long, ATNConfig>(set.configs.size());
-			this.unmerged = new ArrayList<ATNConfig>();
+			int capacity = Math.max(INITIAL_CAPACITY, set.configs.size());
+			this.mergedConfigs = createMergedConfigs(capacity);
+			this.configKeys = new long[capacity];
+			this.unmerged = new IntegerList();
 		}
 
 		this.configs = (ArrayList<ATNConfig>)set.configs.clone();
@@ -107,7 +125,22 @@ public class ATNConfigSet implements Set<ATNConfig> {
 			this.conflictInfo = set.conflictInfo;
 		}
 
-		// if (!readonly && set.isReadOnly()) -> addAll is called from clone()
+		if (!readonly && set.isReadOnly()) {
+			// the keys of a read-only set are not stored, so they are computed
+			// here; the configs added by clone() are then merged into these
+			this.uniqueAlt = ATN.INVALID_ALT_NUMBER;
+			for (int i = 0; i < configs.size(); i++) {
+				ATNConfig config = configs.get(i);
+				configKeys[i] = getKey(config);
+				if (i == 0) {
+					uniqueAlt = config.getAlt();
+				} else if (uniqueAlt != config.getAlt()) {
+					uniqueAlt = ATN.INVALID_ALT_NUMBER;
+				}
+			}
+
+			rebuildMergedConfigs();
+		}
 	}
 
 	/**
@@ -206,12 +239,13 @@ public class ATNConfigSet implements Set<ATNConfig> {
 
 		ATNConfig config = (ATNConfig)o;
 		long configKey = getKey(config);
-		ATNConfig mergedConfig = mergedConfigs.get(configKey);
-		if (mergedConfig != null && canMerge(config, configKey, mergedConfig)) {
-			return mergedConfig.contains(config);
+		int mergedIndex = mergedConfigs[findMergedSlot(configKey)];
+		if (mergedIndex >= 0 && canMerge(config, configKey, configs.get(mergedIndex))) {
+			return configs.get(mergedIndex).contains(config);
 		}
 
-		for (ATNConfig c : unmerged) {
+		for (int i = 0; i < unmerged.size(); i++) {
+			ATNConfig c = configs.get(unmerged.get(i));
 			if (c.contains(config)) {
 				return true;
 			}
@@ -251,10 +285,11 @@ public class ATNConfigSet implements Set<ATNConfig> {
 			contextCache = PredictionContextCache.UNCACHED;
 		}
 
-		boolean addKey;
 		long key = getKey(e);
-		ATNConfig mergedConfig = mergedConfigs.get(key);
-		addKey = (mergedConfig == null);
+		int slot = findMergedSlot(key);
+		int mergedIndex = mergedConfigs[slot];
+		boolean addKey = mergedIndex < 0;
+		ATNConfig mergedConfig = addKey ? null : configs.get(mergedIndex);
 		if (mergedConfig != null && canMerge(e, key, mergedConfig)) {
 			mergedConfig.setOuterContextDepth(Math.max(mergedConfig.getOuterContextDepth(), e.getOuterContextDepth()));
 			if (e.isPrecedenceFilterSuppressed()) {
@@ -272,7 +307,12 @@ public class ATNConfigSet implements Set<ATNConfig> {
 		}
 
 		for (int i = 0; i < unmerged.size(); i++) {
-			ATNConfig unmergedConfig = unmerged.get(i);
+			int unmergedIndex = unmerged.get(i);
+			if (configKeys[unmergedIndex] != key) {
+				continue;
+			}
+
+			ATNConfig unmergedConfig = configs.get(unmergedIndex);
 			if (canMerge(e, key, unmergedConfig)) {
 				unmergedConfig.setOuterContextDepth(Math.max(unmergedConfig.getOuterContextDepth(), e.getOuterContextDepth()));
 				if (e.isPrecedenceFilterSuppressed()) {
@@ -288,19 +328,21 @@ public class ATNConfigSet implements Set<ATNConfig> {
 				unmergedConfig.setContext(joined);
 
 				if (addKey) {
-					mergedConfigs.put(key, unmergedConfig);
-					unmerged.remove(i);
+					putMergedConfig(slot, unmergedIndex);
+					unmerged.removeAt(i);
 				}
 
 				return true;
 			}
 		}
 
+		int index = configs.size();
 		configs.add(e);
+		appendKey(index, key);
 		if (addKey) {
-			mergedConfigs.put(key, e);
+			putMergedConfig(slot, index);
 		} else {
-			unmerged.add(e);
+			unmerged.add(index);
 		}
 
 		updatePropertiesForAddedConfig(e);
@@ -325,15 +367,11 @@ public class ATNConfigSet implements Set<ATNConfig> {
 		assert !outermostConfigSet || !dipsIntoOuterContext;
 	}
 
+	/**
+	 * Determines if {@code left} can be merged into {@code right}. This method
+	 * is only called when the keys of the configs are equal.
+	 */
 	protected boolean canMerge(ATNConfig left, long leftKey, ATNConfig right) {
-		if (left.getState().stateNumber != right.getState().stateNumber) {
-			return false;
-		}
-
-		if (leftKey != getKey(right)) {
-			return false;
-		}
-
 		return left.getSemanticContext().equals(right.getSemanticContext());
 	}
 
@@ -343,6 +381,71 @@ public class ATNConfigSet implements Set<ATNConfig> {
 		return key;
 	}
 
+	@NotNull
+	private static int[] createMergedConfigs(int capacity) {
+		int length = INITIAL_CAPACITY * 2;
+		while (length < capacity * 2) {
+			length <<= 1;
+		}
+
+		int[] mergedConfigs = new int[length];
+		Arrays.fill(mergedConfigs, -1);
+		return mergedConfigs;
+	}
+
+	/**
+	 * Gets the slot of {@link #mergedConfigs} holding the merged config for
+	 * {@code key}, or the empty slot where it would be added.
+	 */
+	private int findMergedSlot(long key) {
+		int mask = mergedConfigs.length - 1;
+		int hash = (int)(key ^ (key >>> 32)) * 0x9E3779B9;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (true) {
+			int index = mergedConfigs[slot];
+			if (index < 0 || configKeys[index] == key) {
+				return slot;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	private void putMergedConfig(int slot, int index) {
+		mergedConfigs[slot] = index;
+		mergedConfigCount++;
+		if (mergedConfigCount * 2 > mergedConfigs.length) {
+			rebuildMergedConfigs();
+		}
+	}
+
+	private void appendKey(int index, long key) {
+		if (index == configKeys.length) {
+			configKeys = Arrays.copyOf(configKeys, index * 2);
+		}
+
+		configKeys[index] = key;
+	}
+
+	/**
+	 * Recomputes {@link #mergedConfigs} and {@link #unmerged} from the keys of
+	 * {@link #configs}, after the table grows or a config is removed.
+	 */
+	private void rebuildMergedConfigs() {
+		mergedConfigs = createMergedConfigs(Math.max(INITIAL_CAPACITY, configs.size()));
+		mergedConfigCount = 0;
+		unmerged.clear();
+		for (int i = 0; i < configs.size(); i++) {
+			int slot = findMergedSlot(configKeys[i]);
+			if (mergedConfigs[slot] < 0) {
+				mergedConfigs[slot] = i;
+				mergedConfigCount++;
+			} else {
+				unmerged.add(i);
+			}
+		}
+	}
+
 	@Override
 	public boolean remove(Object o) {
 		ensureWritable();
@@ -397,7 +500,8 @@ public class ATNConfigSet implements Set<ATNConfig> {
 	public void clear() {
 		ensureWritable();
 
-		mergedConfigs.clear();
+		Arrays.fill(mergedConfigs, -1);
+		mergedConfigCount = 0;
 		unmerged.clear();
 		configs.clear();
 
@@ -561,19 +665,10 @@ public class ATNConfigSet implements Set<ATNConfig> {
 
 	public void remove(int index) {
 		ensureWritable();
-		ATNConfig config = configs.get(index);
-		configs.remove(config);
-		long key = getKey(config);
-		if (mergedConfigs.get(key) == config) {
-			mergedConfigs.remove(key);
-		} else {
-			for (int i = 0; i < unmerged.size(); i++) {
-				if (unmerged.get(i) == config) {
-					unmerged.remove(i);
-					return;
-				}
-			}
-		}
+		configs.remove(index);
+		int count = configs.size() - index;
+		System.arraycopy(configKeys, index + 1, configKeys, index, count);
+		rebuildMergedConfigs();
 	}
 
 	protected final void ensureWritable() {
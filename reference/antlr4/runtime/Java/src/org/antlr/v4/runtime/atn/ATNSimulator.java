@@ -10,6 +10,7 @@ import org.antlr.v4.runtime.dfa.DFAState;
 import org.antlr.v4.runtime.dfa.EmptyEdgeMap;
 import org.antlr.v4.runtime.misc.IntervalSet;
 import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
 
 import java.util.List;
 import java.util.UUID;
@@ -49,12 +50,65 @@ public abstract class ATNSimulator {
 		ERROR.stateNumber = Integer.MAX_VALUE;
 	}
 
+	/**
+	 * The prediction counters updated by this simulator, or {@code null} if
+	 * metrics are not collected.
+	 *
+	 * @see #setMetrics
+	 */
+	@Nullable
+	protected PredictionMetrics metrics;
+
+	/**
+	 * The number of predictions remaining before the next prediction is timed
+	 * for {@link #metrics}.
+	 */
+	private int samplingCountdown;
+
 	public ATNSimulator(@NotNull ATN atn) {
 		this.atn = atn;
 	}
 
 	public abstract void reset();
 
+	/**
+	 * @sharpen.property Metrics
+	 */
+	@Nullable
+	public final PredictionMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the prediction counters updated by this simulator. The same
+	 * {@link PredictionMetrics} instance may be shared by simulators running
+	 * on multiple threads.
+	 *
+	 * @param metrics the prediction counters, or {@code null} to stop
+	 * collecting metrics
+	 *
+	 * @sharpen.property Metrics
+	 */
+	public void setMetrics(@Nullable PredictionMetrics metrics) {
+		this.metrics = metrics;
+		this.samplingCountdown = 0;
+	}
+
+	/**
+	 * Determines whether the current prediction should be timed, according to
+	 * the {@link PredictionMetrics#getSamplingInterval sampling interval} of
+	 * {@code metrics}.
+	 */
+	protected final boolean samplePrediction(@NotNull PredictionMetrics metrics) {
+		int interval = metrics.getSamplingInterval();
+		if (interval == 0 || --samplingCountdown > 0) {
+			return false;
+		}
+
+		samplingCountdown = interval;
+		return true;
+	}
+
 	/**
 	 * Clear the DFA cache used by the current instance. Since the DFA cache may
 	 * be shared by multiple ATN simulators, this method may affect the
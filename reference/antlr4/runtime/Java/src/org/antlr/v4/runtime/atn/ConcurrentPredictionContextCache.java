@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe {@link PredictionContextCache} which is shared by every
+ * prediction made with an {@link ATN}, so the result of a
+ * {@link PredictionContext#join} computed by one full-context prediction is
+ * reused by later predictions, including those of other simulators and
+ * threads.
+ *
+ * <p>The cache does not lock. Two threads which compute the same entry at the
+ * same time may both perform the computation, in which case the first result
+ * stored is used. The cache holds at most {@link #getMaxSize} entries; when
+ * the limit is exceeded, all entries are removed.</p>
+ *
+ * @see ATN#getSharedContextCache
+ * @see ParserATNSimulator#setShareContextCache
+ */
+public class ConcurrentPredictionContextCache extends PredictionContextCache {
+	public static final int DEFAULT_MAX_SIZE = 1 << 16;
+
+	private final int maxSize;
+
+	private final ConcurrentMap<PredictionContext, PredictionContext> contexts =
+		new ConcurrentHashMap<PredictionContext, PredictionContext>();
+	private final ConcurrentMap<PredictionContextAndInt, PredictionContext> childContexts =
+		new ConcurrentHashMap<PredictionContextAndInt, PredictionContext>();
+	private final ConcurrentMap<IdentityCommutativePredictionContextOperands, PredictionContext> joinContexts =
+		new ConcurrentHashMap<IdentityCommutativePredictionContextOperands, PredictionContext>();
+
+	/** The approximate number of entries in the three maps. */
+	private final AtomicInteger size = new AtomicInteger();
+
+	private final AtomicLong childLookups = new AtomicLong();
+	private final AtomicLong childHits = new AtomicLong();
+	private final AtomicLong joinLookups = new AtomicLong();
+	private final AtomicLong joinHits = new AtomicLong();
+
+	public ConcurrentPredictionContextCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * @param maxSize the maximum number of entries held by the cache
+	 */
+	public ConcurrentPredictionContextCache(int maxSize) {
+		super(false);
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be positive");
+		}
+
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @sharpen.property MaxSize
+	 */
+	public final int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Gets the approximate number of entries held by the cache.
+	 *
+	 * @sharpen.property Size
+	 */
+	public int getSize() {
+		return size.get();
+	}
+
+	/**
+	 * Gets the number of calls to {@link #getChild}.
+	 *
+	 * @sharpen.property ChildLookups
+	 */
+	public long getChildLookups() {
+		return childLookups.get();
+	}
+
+	/**
+	 * Gets the number of calls to {@link #getChild} which returned a cached
+	 * context.
+	 *
+	 * @sharpen.property ChildHits
+	 */
+	public long getChildHits() {
+		return childHits.get();
+	}
+
+	/**
+	 * Gets the number of calls to {@link #join}.
+	 *
+	 * @sharpen.property JoinLookups
+	 */
+	public long getJoinLookups() {
+		return joinLookups.get();
+	}
+
+	/**
+	 * Gets the number of calls to {@link #join} which returned a cached
+	 * context, i.e. the number of merges saved by this cache.
+	 *
+	 * @sharpen.property JoinHits
+	 */
+	public long getJoinHits() {
+		return joinHits.get();
+	}
+
+	/**
+	 * Removes all entries from the cache. The lookup and hit counts are not
+	 * reset.
+	 */
+	public void clear() {
+		contexts.clear();
+		childContexts.clear();
+		joinContexts.clear();
+		size.set(0);
+	}
+
+	@Override
+	public PredictionContext getAsCached(PredictionContext context) {
+		PredictionContext result = contexts.get(context);
+		if (result != null) {
+			return result;
+		}
+
+		result = contexts.putIfAbsent(context, context);
+		if (result != null) {
+			return result;
+		}
+
+		added();
+		return context;
+	}
+
+	@Override
+	public PredictionContext getChild(PredictionContext context, int invokingState) {
+		childLookups.incrementAndGet();
+		PredictionContextAndInt operands = new PredictionContextAndInt(context, invokingState);
+		PredictionContext result = childContexts.get(operands);
+		if (result != null) {
+			childHits.incrementAndGet();
+			return result;
+		}
+
+		result = getAsCached(context.getChild(invokingState));
+		return put(childContexts, operands, result);
+	}
+
+	@Override
+	public PredictionContext join(PredictionContext x, PredictionContext y) {
+		joinLookups.incrementAndGet();
+		IdentityCommutativePredictionContextOperands operands = new IdentityCommutativePredictionContextOperands(x, y);
+		PredictionContext result = joinContexts.get(operands);
+		if (result != null) {
+			joinHits.incrementAndGet();
+			return result;
+		}
+
+		result = getAsCached(PredictionContext.join(x, y, this));
+		return put(joinContexts, operands, result);
+	}
+
+	@NotNull
+	private <K> PredictionContext put(@NotNull ConcurrentMap<K, PredictionContext> map, @NotNull K key, @NotNull PredictionContext value) {
+		PredictionContext existing = map.putIfAbsent(key, value);
+		if (existing != null) {
+			return existing;
+		}
+
+		added();
+		return value;
+	}
+
+	private void added() {
+		if (size.incrementAndGet() > maxSize) {
+			clear();
+		}
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+/**
+ * This enumeration defines the per-decision prediction strategies which may be
+ * assigned to decisions through a {@link PredictionPolicy}.
+ *
+ * @see ParserATNSimulator#setPredictionPolicy
+ */
+public enum DecisionStrategy {
+	/**
+	 * The decision is predicted according to the {@link PredictionMode} and
+	 * the options configured for the {@link ParserATNSimulator}.
+	 */
+	DEFAULT,
+	/**
+	 * The decision is predicted using the full parser context immediately,
+	 * without first attempting an SLL prediction. This strategy is appropriate
+	 * for decisions where the SLL prediction almost always results in a
+	 * conflict that requires the full-context retry.
+	 *
+	 * <p>This strategy is ignored when the prediction mode is
+	 * {@link PredictionMode#SLL}.</p>
+	 */
+	FULL_CONTEXT,
+	/**
+	 * The decision is predicted using SLL prediction only. SLL conflicts are
+	 * resolved to the minimum alternative instead of being retried with the
+	 * full parser context. This strategy is appropriate for decisions where
+	 * the full-context retry always produces the same result as SLL conflict
+	 * resolution.
+	 */
+	LOCAL_CONTEXT
+}
@@ -103,6 +103,15 @@ public class LexerATNSimulator extends ATNSimulator {
 	public int match(@NotNull CharStream input, int mode) {
 		match_calls++;
 		this.mode = mode;
+		PredictionMetrics metrics = this.metrics;
+		long sampleStart = 0;
+		if (metrics != null) {
+			metrics.increment(mode, PredictionMetrics.Counter.PREDICTIONS);
+			if (samplePrediction(metrics)) {
+				sampleStart = System.nanoTime();
+			}
+		}
+
 		int mark = input.mark();
 		try {
 			this.startIndex = input.index();
@@ -117,6 +126,9 @@ public class LexerATNSimulator extends ATNSimulator {
 		}
         finally {
 			input.release(mark);
+			if (sampleStart != 0) {
+				metrics.addSample(mode, System.nanoTime() - sampleStart);
+			}
 		}
 	}
 
@@ -199,8 +211,15 @@ public class LexerATNSimulator extends ATNSimulator {
 			// that already has lots of edges out of it. e.g., .* in comments.
 			DFAState target = getExistingTargetState(s, t);
 			if (target == null) {
+				if (metrics != null) {
+					metrics.increment(mode, PredictionMetrics.Counter.ATN_TRANSITIONS);
+				}
+
 				target = computeTargetState(input, s, t);
 			}
+			else if (metrics != null) {
+				metrics.increment(mode, PredictionMetrics.Counter.DFA_TRANSITIONS);
+			}
 
 			if (target == ERROR) {
 				break;
@@ -363,7 +382,7 @@ public class LexerATNSimulator extends ATNSimulator {
 
 	@Nullable
 	protected ATNState getReachableTarget(Transition trans, int t) {
-		if (trans.matches(t, Character.MIN_VALUE, Character.MAX_VALUE)) {
+		if (trans.matches(t, Character.MIN_CODE_POINT, Character.MAX_CODE_POINT)) {
 			return trans.target;
 		}
 
@@ -545,7 +564,7 @@ public class LexerATNSimulator extends ATNSimulator {
 		case RANGE:
 		case SET:
 			if (treatEofAsEpsilon) {
-				if (t.matches(CharStream.EOF, Character.MIN_VALUE, Character.MAX_VALUE)) {
+				if (t.matches(CharStream.EOF, Character.MIN_CODE_POINT, Character.MAX_CODE_POINT)) {
 					c = config.transform(t.target, false);
 					break;
 				}
@@ -694,7 +713,12 @@ public class LexerATNSimulator extends ATNSimulator {
 			newState.setAcceptState(new AcceptStateInfo(prediction, lexerActionExecutor));
 		}
 
-		return atn.modeToDFA[mode].addState(newState);
+		DFAState added = atn.modeToDFA[mode].addState(newState);
+		if (added == newState && metrics != null) {
+			metrics.increment(mode, PredictionMetrics.Counter.DFA_STATES_CREATED);
+		}
+
+		return added;
 	}
 
 	@NotNull
@@ -753,6 +777,6 @@ public class LexerATNSimulator extends ATNSimulator {
 	public String getTokenName(int t) {
 		if ( t==-1 ) return "EOF";
 		//if ( atn.g!=null ) return atn.g.getTokenDisplayName(t);
-		return "'"+(char)t+"'";
+		return "'"+new String(Character.toChars(t))+"'";
 	}
 }
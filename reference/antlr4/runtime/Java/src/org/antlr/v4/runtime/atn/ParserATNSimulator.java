@@ -318,6 +318,102 @@ public class ParserATNSimulator extends ATNSimulator {
 	 */
 	public boolean reportAmbiguities = false;
 
+	/**
+	 * The per-decision prediction strategies, or {@code null} to predict every
+	 * decision according to the options configured for this simulator.
+	 *
+	 * @see #setPredictionPolicy
+	 */
+	@Nullable
+	private PredictionPolicy predictionPolicy;
+
+	/**
+	 * When {@code true}, the results of semantic predicates which are not
+	 * context-dependent are cached by {@link #evalSemanticContext}.
+	 *
+	 * @see #setCachePredicateResults
+	 */
+	private boolean cachePredicateResults;
+
+	/**
+	 * The input index of the results in {@link #predicateResults}, or -1 if
+	 * no results are cached.
+	 */
+	private int predicateResultsIndex = -1;
+
+	/**
+	 * The cached predicate results at {@link #predicateResultsIndex}, keyed by
+	 * rule index (high 32 bits) and predicate index (low 32 bits).
+	 */
+	@NotNull
+	private final Map<Long, Boolean> predicateResults = new HashMap<Long, Boolean>();
+
+	/**
+	 * The number of closure operations between two checks of the deadline of
+	 * the prediction budget, minus one.
+	 */
+	private static final int DEADLINE_CHECK_MASK = 0x3F;
+
+	/**
+	 * The limits of the work done by this simulator, or {@code null} if there
+	 * are no limits.
+	 *
+	 * @see #setPredictionBudget
+	 */
+	@Nullable
+	private PredictionBudget predictionBudget;
+
+	/** The {@link System#nanoTime} value when the budget deadline passes. */
+	private long predictionDeadline;
+
+	/** The number of deadline checks requested through {@link #checkPredictionDeadline}. */
+	private int deadlineChecks;
+
+	/** The number of closure operations of the current prediction. */
+	private long closureOperations;
+
+	/** The decision of the current prediction, reported when a limit is exceeded. */
+	private int budgetDecision = -1;
+
+	/** The start index of the current prediction, reported when a limit is exceeded. */
+	private int budgetStartIndex = -1;
+
+	/** {@code true} if the current prediction attempted a full-context prediction. */
+	private boolean fullContextAttempted;
+
+	/**
+	 * {@code true} while a prediction which exceeded the prediction budget is
+	 * retried without full context.
+	 */
+	private boolean fullContextDisabled;
+
+	/**
+	 * When {@code true}, full-context predictions are memoized in
+	 * {@link #fullContextPredictions} until the simulator is reset.
+	 *
+	 * @see #setCacheFullContextPredictions
+	 */
+	private boolean cacheFullContextPredictions;
+
+	/** The memoized full-context predictions of the current parse. */
+	@NotNull
+	private final Map<FullContextKey, Integer> fullContextPredictions = new HashMap<FullContextKey, Integer>();
+
+	/**
+	 * When {@code true}, predictions use the shared context cache of the ATN
+	 * instead of a new cache.
+	 *
+	 * @see #setShareContextCache
+	 */
+	private boolean shareContextCache;
+
+	/**
+	 * The number of semantic predicates evaluated by this simulator. A
+	 * full-context prediction is not memoized if this value changes while it
+	 * is computed.
+	 */
+	private int predicateEvaluations;
+
 	/** By default we do full context-sensitive LL(*) parsing not
 	 *  Strong LL(*) parsing. If we fail with Strong LL(*) we
 	 *  try full LL(*). That means we rewind and use context information
@@ -353,14 +449,281 @@ public class ParserATNSimulator extends ATNSimulator {
 		this.predictionMode = predictionMode;
 	}
 
+	/**
+	 * @sharpen.property PredictionPolicy
+	 */
+	@Nullable
+	public final PredictionPolicy getPredictionPolicy() {
+		return predictionPolicy;
+	}
+
+	/**
+	 * Sets the per-decision prediction strategies used by this simulator. The
+	 * strategy assigned to a decision by the policy takes precedence over
+	 * {@link #force_global_context} and {@link #always_try_local_context} for
+	 * that decision.
+	 *
+	 * @param predictionPolicy the prediction policy, or {@code null} to use
+	 * the options configured for this simulator for every decision
+	 *
+	 * @see PredictionPolicy#fromParseInfo
+	 *
+	 * @sharpen.property PredictionPolicy
+	 */
+	public final void setPredictionPolicy(@Nullable PredictionPolicy predictionPolicy) {
+		this.predictionPolicy = predictionPolicy;
+	}
+
+	/**
+	 * @sharpen.property CachePredicateResults
+	 */
+	public final boolean getCachePredicateResults() {
+		return cachePredicateResults;
+	}
+
+	/**
+	 * Sets whether the results of semantic predicates which are not
+	 * context-dependent are cached during prediction. The default value is
+	 * {@code false}.
+	 *
+	 * <p>All predicates evaluated by one prediction are evaluated at the input
+	 * index where the decision starts. When the cache is enabled, the result of
+	 * each predicate which does not reference its rule context is kept until
+	 * a predicate is evaluated at another input index, so a predicate is not
+	 * evaluated again by the full-context retry of a decision, or by another
+	 * decision at the same input index. Predicates referencing their rule
+	 * context and precedence predicates are always evaluated. The cache should
+	 * only be enabled if the result of a predicate at an input index does not
+	 * change while the parser stays at this index, for example due to an
+	 * action executed when entering a rule.</p>
+	 *
+	 * @sharpen.property CachePredicateResults
+	 */
+	public final void setCachePredicateResults(boolean cachePredicateResults) {
+		this.cachePredicateResults = cachePredicateResults;
+		clearPredicateResults();
+	}
+
+	/**
+	 * Removes the cached results of semantic predicates.
+	 *
+	 * @see #setCachePredicateResults
+	 */
+	public void clearPredicateResults() {
+		predicateResults.clear();
+		predicateResultsIndex = -1;
+	}
+
+	/**
+	 * @sharpen.property CacheFullContextPredictions
+	 */
+	public final boolean getCacheFullContextPredictions() {
+		return cacheFullContextPredictions;
+	}
+
+	/**
+	 * Sets whether full-context predictions are memoized for the current
+	 * parse. The default value is {@code false}.
+	 *
+	 * <p>Unless {@link #enable_global_context_dfa} is set, the result of a
+	 * full-context prediction is not stored in the DFA, so a decision which
+	 * is predicted again at the same input index with the same outer context
+	 * (for example after error recovery or in nested precedence rules)
+	 * repeats the full-context simulation. When the memo is enabled, the
+	 * result of each full-context prediction is kept, keyed by decision, start
+	 * index, identity of the outer context and parser precedence, until the
+	 * next call to {@link #reset}. Predictions which evaluated a semantic
+	 * predicate are not memoized.</p>
+	 *
+	 * <p>The memo is not used while {@link #reportAmbiguities} is set, or by
+	 * a {@link ProfilingATNSimulator}, since a prediction found in the memo
+	 * does not repeat the simulation which reports ambiguities and context
+	 * sensitivities. Otherwise, an ambiguity detected by a full-context
+	 * prediction is only reported to the error listeners the first time the
+	 * prediction is made.</p>
+	 *
+	 * <p>The memo holds strong references to the outer context of each
+	 * memoized prediction, and so to the part of the parse tree built so far,
+	 * until the next call to {@link #reset} or to this method. Enable it for
+	 * the parse of one input rather than for a long-lived simulator which
+	 * is not reset.</p>
+	 *
+	 * <p>The number of lookups and hits of each decision are counted by the
+	 * {@link PredictionMetrics} of this simulator, if any.</p>
+	 *
+	 * @sharpen.property CacheFullContextPredictions
+	 */
+	public final void setCacheFullContextPredictions(boolean cacheFullContextPredictions) {
+		this.cacheFullContextPredictions = cacheFullContextPredictions;
+		fullContextPredictions.clear();
+	}
+
+	/**
+	 * @sharpen.property ShareContextCache
+	 */
+	public final boolean getShareContextCache() {
+		return shareContextCache;
+	}
+
+	/**
+	 * Sets whether predictions use the {@link ATN#getSharedContextCache} of
+	 * the ATN. The default value is {@code false}.
+	 *
+	 * <p>By default, each prediction computing a reach set or a start state
+	 * creates a new {@link PredictionContextCache}, so the joins of prediction
+	 * contexts performed by one full-context prediction are repeated by the
+	 * next. When this option is enabled, the predictions of every simulator
+	 * which enables it for the same ATN, on any thread, share a bounded
+	 * cache. The number of joins saved by the shared cache is reported by
+	 * {@link ConcurrentPredictionContextCache#getJoinHits}.</p>
+	 *
+	 * @sharpen.property ShareContextCache
+	 */
+	public final void setShareContextCache(boolean shareContextCache) {
+		this.shareContextCache = shareContextCache;
+	}
+
+	/**
+	 * @sharpen.property PredictionBudget
+	 */
+	@Nullable
+	public final PredictionBudget getPredictionBudget() {
+		return predictionBudget;
+	}
+
+	/**
+	 * Sets the limits of the work done by this simulator. The deadline of the
+	 * budget is measured from this call, and from each later call to
+	 * {@link #reset}, which the parser calls when its input changes.
+	 *
+	 * @param predictionBudget the prediction budget, or {@code null} to remove
+	 * the limits
+	 *
+	 * @sharpen.property PredictionBudget
+	 */
+	public final void setPredictionBudget(@Nullable PredictionBudget predictionBudget) {
+		this.predictionBudget = predictionBudget;
+		restartPredictionBudget();
+	}
+
+	private void restartPredictionBudget() {
+		PredictionBudget budget = predictionBudget;
+		if (budget != null && budget.getTimeoutNanos() >= 0) {
+			predictionDeadline = System.nanoTime() + budget.getTimeoutNanos();
+		}
+
+		deadlineChecks = 0;
+	}
+
+	/**
+	 * Checks the deadline of the prediction budget. The parser calls this
+	 * method when entering a rule; the clock is only read for a fraction of
+	 * the calls.
+	 *
+	 * @exception PredictionBudgetExceededException if the deadline passed
+	 */
+	public final void checkPredictionDeadline() {
+		PredictionBudget budget = predictionBudget;
+		if (budget == null || budget.getTimeoutNanos() < 0 || (++deadlineChecks & DEADLINE_CHECK_MASK) != 0) {
+			return;
+		}
+
+		if (System.nanoTime() - predictionDeadline > 0) {
+			int index = parser != null && parser.getInputStream() != null ? parser.getInputStream().index() : -1;
+			throw new PredictionBudgetExceededException(PredictionBudget.Limit.DEADLINE, -1, index);
+		}
+	}
+
+	/**
+	 * Called for each closure operation when a prediction budget is set.
+	 *
+	 * @param configs the configuration set being computed
+	 *
+	 * @exception PredictionBudgetExceededException if the current prediction
+	 * exceeds a limit of the budget
+	 */
+	protected void checkPredictionBudget(@NotNull ATNConfigSet configs) {
+		PredictionBudget budget = predictionBudget;
+		if (budget == null) {
+			return;
+		}
+
+		closureOperations++;
+		PredictionBudget.Limit exceeded = null;
+		if (budget.getMaxClosureOperations() >= 0 && closureOperations > budget.getMaxClosureOperations()) {
+			exceeded = PredictionBudget.Limit.CLOSURE_OPERATIONS;
+		}
+		else if (budget.getMaxConfigSetSize() >= 0 && configs.size() > budget.getMaxConfigSetSize()) {
+			exceeded = PredictionBudget.Limit.CONFIG_SET_SIZE;
+		}
+		else if (budget.getTimeoutNanos() >= 0
+			&& (closureOperations & DEADLINE_CHECK_MASK) == 0
+			&& System.nanoTime() - predictionDeadline > 0)
+		{
+			exceeded = PredictionBudget.Limit.DEADLINE;
+		}
+
+		if (exceeded != null) {
+			throw new PredictionBudgetExceededException(exceeded, budgetDecision, budgetStartIndex);
+		}
+	}
+
 	@Override
 	public void reset() {
+		clearPredicateResults();
+		fullContextPredictions.clear();
+		restartPredictionBudget();
 	}
 
 	public int adaptivePredict(@NotNull TokenStream input, int decision,
 							   @Nullable ParserRuleContext outerContext)
 	{
-		return adaptivePredict(input, decision, outerContext, false);
+		PredictionMetrics metrics = this.metrics;
+		if (metrics == null) {
+			return adaptivePredictWithinBudget(input, decision, outerContext);
+		}
+
+		metrics.increment(decision, PredictionMetrics.Counter.PREDICTIONS);
+		if (!samplePrediction(metrics)) {
+			return adaptivePredictWithinBudget(input, decision, outerContext);
+		}
+
+		long start = System.nanoTime();
+		try {
+			return adaptivePredictWithinBudget(input, decision, outerContext);
+		}
+		finally {
+			metrics.addSample(decision, System.nanoTime() - start);
+		}
+	}
+
+	private int adaptivePredictWithinBudget(@NotNull TokenStream input, int decision, @Nullable ParserRuleContext outerContext) {
+		PredictionBudget budget = predictionBudget;
+		if (budget == null) {
+			return adaptivePredict(input, decision, outerContext, false);
+		}
+
+		closureOperations = 0;
+		fullContextAttempted = false;
+		budgetDecision = decision;
+		budgetStartIndex = input.index();
+		try {
+			return adaptivePredict(input, decision, outerContext, false);
+		}
+		catch (PredictionBudgetExceededException ex) {
+			if (!budget.isFallBackToSll() || !fullContextAttempted || ex.getLimit() == PredictionBudget.Limit.DEADLINE) {
+				throw ex;
+			}
+
+			closureOperations = 0;
+			fullContextDisabled = true;
+			try {
+				return adaptivePredict(input, decision, outerContext, false);
+			}
+			finally {
+				fullContextDisabled = false;
+			}
+		}
 	}
 
 	public int adaptivePredict(@NotNull TokenStream input,
@@ -383,18 +746,51 @@ public class ParserATNSimulator extends ATNSimulator {
 
 		this.dfa = dfa;
 
-		if (force_global_context) {
-			useContext = true;
+		DecisionStrategy strategy = predictionPolicy != null ? predictionPolicy.getStrategy(decision) : DecisionStrategy.DEFAULT;
+		switch (strategy) {
+		case FULL_CONTEXT:
+			useContext |= predictionMode != PredictionMode.SLL;
+			break;
+
+		case LOCAL_CONTEXT:
+			break;
+
+		default:
+			if (force_global_context) {
+				useContext = true;
+			}
+			else if (!always_try_local_context) {
+				useContext |= dfa.isContextSensitive();
+			}
+
+			break;
+		}
+
+		if (fullContextDisabled) {
+			useContext = false;
 		}
-		else if (!always_try_local_context) {
-			useContext |= dfa.isContextSensitive();
+		else if (useContext) {
+			fullContextAttempted = true;
 		}
 
-		userWantsCtxSensitive = useContext || (predictionMode != PredictionMode.SLL && outerContext != null && !atn.decisionToState.get(decision).sll);
+		userWantsCtxSensitive = !fullContextDisabled && (useContext || (strategy != DecisionStrategy.LOCAL_CONTEXT && predictionMode != PredictionMode.SLL && outerContext != null && !atn.decisionToState.get(decision).sll));
 		if (outerContext == null) {
 			outerContext = ParserRuleContext.emptyContext();
 		}
 
+		FullContextKey fullContextKey = null;
+		int predicateEvaluations = 0;
+		if (useContext && useFullContextPredictionCache()) {
+			fullContextKey = createFullContextKey(decision, input.index(), outerContext);
+			Integer cachedAlt = getCachedFullContextPrediction(fullContextKey);
+			if (cachedAlt != null) {
+				this.dfa = null;
+				return cachedAlt;
+			}
+
+			predicateEvaluations = this.predicateEvaluations;
+		}
+
 		SimulatorState state = null;
 		if (!dfa.isEmpty()) {
 			state = getStartState(dfa, input, outerContext, useContext);
@@ -414,6 +810,10 @@ public class ParserATNSimulator extends ATNSimulator {
 		try {
 			int alt = execDFA(dfa, input, index, state);
 			if ( debug ) System.out.println("DFA after predictATN: "+dfa.toString(parser.getVocabulary(), parser.getRuleNames()));
+			if (fullContextKey != null && predicateEvaluations == this.predicateEvaluations) {
+				fullContextPredictions.put(fullContextKey, alt);
+			}
+
 			return alt;
 		}
 		finally {
@@ -423,6 +823,51 @@ public class ParserATNSimulator extends ATNSimulator {
 		}
 	}
 
+	/**
+	 * Determines whether full-context predictions are looked up in and
+	 * stored to the memo enabled by {@link #setCacheFullContextPredictions}.
+	 * The memo is bypassed while {@link #reportAmbiguities} is set, so every
+	 * full-context prediction is simulated and reported.
+	 */
+	protected boolean useFullContextPredictionCache() {
+		return cacheFullContextPredictions && !reportAmbiguities;
+	}
+
+	@NotNull
+	private FullContextKey createFullContextKey(int decision, int startIndex, @NotNull ParserRuleContext outerContext) {
+		int precedence = parser != null ? parser.getPrecedence() : 0;
+		return new FullContextKey(decision, startIndex, outerContext, precedence);
+	}
+
+	@Nullable
+	private Integer getCachedFullContextPrediction(@NotNull FullContextKey key) {
+		Integer alt = fullContextPredictions.get(key);
+		PredictionMetrics metrics = this.metrics;
+		if (metrics != null) {
+			metrics.increment(key.decision, PredictionMetrics.Counter.FULL_CONTEXT_CACHE_LOOKUPS);
+			if (alt != null) {
+				metrics.increment(key.decision, PredictionMetrics.Counter.FULL_CONTEXT_CACHE_HITS);
+			}
+		}
+
+		if ( debug && alt != null ) System.out.println("cached full-context prediction "+alt+" for decision "+key.decision+" at "+key.startIndex);
+		return alt;
+	}
+
+	/**
+	 * Gets the {@link PredictionContextCache} used by one prediction.
+	 *
+	 * @see #setShareContextCache
+	 */
+	@NotNull
+	protected PredictionContextCache getPredictionContextCache() {
+		if (shareContextCache) {
+			return atn.getSharedContextCache();
+		}
+
+		return new PredictionContextCache();
+	}
+
 	protected SimulatorState getStartState(@NotNull DFA dfa,
 										@NotNull TokenStream input,
 										@NotNull ParserRuleContext outerContext,
@@ -536,6 +981,10 @@ public class ParserATNSimulator extends ATNSimulator {
 
 			// if no edge, pop over to ATN interpreter, update DFA and return
 			DFAState target = getExistingTargetState(s, t);
+			if (target != null && metrics != null) {
+				metrics.increment(dfa.decision, PredictionMetrics.Counter.DFA_TRANSITIONS);
+			}
+
 			if ( target == null ) {
 				if ( dfa_debug && t>=0 ) System.out.println("no edge for "+parser.getVocabulary().getDisplayName(t));
 				int alt;
@@ -614,6 +1063,10 @@ public class ParserATNSimulator extends ATNSimulator {
 						reportAttemptingFullContext(dfa, conflictingAlts, conflictState, startIndex, input.index());
 					}
 
+					if (metrics != null) {
+						metrics.increment(dfa.decision, PredictionMetrics.Counter.FULL_CONTEXT_RETRIES);
+					}
+
 					input.seek(startIndex);
 					return adaptivePredict(input, dfa.decision, outerContext, true);
 				}
@@ -751,7 +1204,7 @@ public class ParserATNSimulator extends ATNSimulator {
 
 		SimulatorState previous = initialState;
 
-		PredictionContextCache contextCache = new PredictionContextCache();
+		PredictionContextCache contextCache = getPredictionContextCache();
 		while (true) { // while more work
 			SimulatorState nextState = computeReachSet(dfa, previous, t, contextCache);
 			if (nextState == null) {
@@ -845,13 +1298,34 @@ public class ParserATNSimulator extends ATNSimulator {
 					assert isAcceptState(D, false);
 
 					if ( debug ) System.out.println("RETRY with outerContext="+outerContext);
+					FullContextKey fullContextKey = null;
+					int predicateEvaluations = 0;
+					if (useFullContextPredictionCache()) {
+						fullContextKey = createFullContextKey(dfa.decision, startIndex, outerContext);
+						Integer cachedAlt = getCachedFullContextPrediction(fullContextKey);
+						if (cachedAlt != null) {
+							return cachedAlt;
+						}
+
+						predicateEvaluations = this.predicateEvaluations;
+					}
+
 					SimulatorState fullContextState = computeStartState(dfa, outerContext, true);
 					if (reportAmbiguities) {
 						reportAttemptingFullContext(dfa, conflictingAlts, nextState, startIndex, input.index());
 					}
 
+					if (metrics != null) {
+						metrics.increment(dfa.decision, PredictionMetrics.Counter.FULL_CONTEXT_RETRIES);
+					}
+
 					input.seek(startIndex);
-					return execATN(dfa, input, startIndex, fullContextState);
+					int alt = execATN(dfa, input, startIndex, fullContextState);
+					if (fullContextKey != null && predicateEvaluations == this.predicateEvaluations) {
+						fullContextPredictions.put(fullContextKey, alt);
+					}
+
+					return alt;
 				}
 			}
 
@@ -1023,10 +1497,17 @@ public class ParserATNSimulator extends ATNSimulator {
 
 		DFAState target = getExistingTargetState(s0, t);
 		if (target == null) {
+			if (metrics != null) {
+				metrics.increment(dfa.decision, PredictionMetrics.Counter.ATN_TRANSITIONS);
+			}
+
 			Tuple2<DFAState, ParserRuleContext> result = computeTargetState(dfa, s0, remainingGlobalContext, t, useContext, contextCache);
 			target = result.getItem1();
 			remainingGlobalContext = result.getItem2();
 		}
+		else if (metrics != null) {
+			metrics.increment(dfa.decision, PredictionMetrics.Counter.DFA_TRANSITIONS);
+		}
 
 		if (target == ERROR) {
 			return null;
@@ -1243,6 +1724,10 @@ public class ParserATNSimulator extends ATNSimulator {
 											ParserRuleContext globalContext,
 											boolean useContext)
 	{
+		if (useContext) {
+			fullContextAttempted = true;
+		}
+
 		DFAState s0 =
 			dfa.isPrecedenceDfa() ? dfa.getPrecedenceStartState(parser.getPrecedence(), useContext) :
 			useContext ? dfa.s0full.get() :
@@ -1263,7 +1748,7 @@ public class ParserATNSimulator extends ATNSimulator {
 		int previousContext = 0;
 		ParserRuleContext remainingGlobalContext = globalContext;
 		PredictionContext initialContext = useContext ? PredictionContext.EMPTY_FULL : PredictionContext.EMPTY_LOCAL; // always at least the implicit call to start rule
-		PredictionContextCache contextCache = new PredictionContextCache();
+		PredictionContextCache contextCache = getPredictionContextCache();
 		if (useContext) {
 			if (!enable_global_context_dfa) {
 				while (remainingGlobalContext != null) {
@@ -1616,6 +2101,7 @@ public class ParserATNSimulator extends ATNSimulator {
 				continue;
 			}
 
+			predicateEvaluations++;
 			boolean evaluatedResult = evalSemanticContext(pair.pred, outerContext, pair.alt);
 			if ( debug || dfa_debug ) {
 				System.out.println("eval pred "+pair+"="+evaluatedResult);
@@ -1653,6 +2139,11 @@ public class ParserATNSimulator extends ATNSimulator {
 	 * the operands within operator predicates.</li>
 	 * </ul>
 	 *
+	 * <p>
+	 * When {@link #getCachePredicateResults} is {@code true}, the operands of
+	 * operator predicates are evaluated individually, and the cached result
+	 * of each predicate which is not context-dependent is used.</p>
+	 *
 	 * @param pred The semantic context to evaluate
 	 * @param parserCallStack The parser context in which to evaluate the
 	 * semantic context
@@ -1661,6 +2152,49 @@ public class ParserATNSimulator extends ATNSimulator {
 	 * @since 4.3
 	 */
 	protected boolean evalSemanticContext(@NotNull SemanticContext pred, ParserRuleContext parserCallStack, int alt) {
+		if (cachePredicateResults && parser != null) {
+			return evalCachedSemanticContext(pred, parserCallStack, parser.getInputStream().index());
+		}
+
+		return pred.eval(parser, parserCallStack);
+	}
+
+	private boolean evalCachedSemanticContext(@NotNull SemanticContext pred, ParserRuleContext parserCallStack, int index) {
+		if (pred instanceof SemanticContext.Predicate && !((SemanticContext.Predicate)pred).isCtxDependent) {
+			SemanticContext.Predicate predicate = (SemanticContext.Predicate)pred;
+			if (index != predicateResultsIndex) {
+				predicateResults.clear();
+				predicateResultsIndex = index;
+			}
+
+			Long key = ((long)predicate.ruleIndex << 32) | (predicate.predIndex & 0xFFFFFFFFL);
+			Boolean result = predicateResults.get(key);
+			if (result == null) {
+				result = predicate.eval(parser, parserCallStack);
+				predicateResults.put(key, result);
+			}
+
+			return result;
+		}
+		else if (pred instanceof SemanticContext.AND) {
+			for (SemanticContext opnd : ((SemanticContext.AND)pred).opnds) {
+				if (!evalCachedSemanticContext(opnd, parserCallStack, index)) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+		else if (pred instanceof SemanticContext.OR) {
+			for (SemanticContext opnd : ((SemanticContext.OR)pred).opnds) {
+				if (evalCachedSemanticContext(opnd, parserCallStack, index)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
 		return pred.eval(parser, parserCallStack);
 	}
 
@@ -1705,6 +2239,9 @@ public class ParserATNSimulator extends ATNSimulator {
 						   boolean treatEofAsEpsilon)
 	{
 		if ( debug ) System.out.println("closure("+config.toString(parser,true)+")");
+		if (predictionBudget != null) {
+			checkPredictionBudget(configs);
+		}
 
 		if ( config.getState() instanceof RuleStopState ) {
 			// We hit rule end. If we have context info, use it
@@ -2354,6 +2891,10 @@ public class ParserATNSimulator extends ATNSimulator {
 
 		DFAState added = dfa.addState(newState);
         if ( debug && added == newState ) System.out.println("adding new DFA state: "+newState);
+		if (added == newState && metrics != null) {
+			metrics.increment(dfa.decision, PredictionMetrics.Counter.DFA_STATES_CREATED);
+		}
+
 		return added;
 	}
 
@@ -2435,4 +2976,50 @@ public class ParserATNSimulator extends ATNSimulator {
 	public Parser getParser() {
 		return parser;
 	}
+
+	/**
+	 * The key of a memoized full-context prediction. The outer context is
+	 * compared by identity, since the full-context prediction depends on the
+	 * invoking states of its whole parent chain.
+	 */
+	private static final class FullContextKey {
+		private final int decision;
+		private final int startIndex;
+		@NotNull
+		private final ParserRuleContext outerContext;
+		private final int precedence;
+
+		public FullContextKey(int decision, int startIndex, @NotNull ParserRuleContext outerContext, int precedence) {
+			this.decision = decision;
+			this.startIndex = startIndex;
+			this.outerContext = outerContext;
+			this.precedence = precedence;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = 7;
+			hash = 31 * hash + decision;
+			hash = 31 * hash + startIndex;
+			hash = 31 * hash + System.identityHashCode(outerContext);
+			hash = 31 * hash + precedence;
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			else if (!(obj instanceof FullContextKey)) {
+				return false;
+			}
+
+			FullContextKey other = (FullContextKey)obj;
+			return decision == other.decision
+				&& startIndex == other.startIndex
+				&& outerContext == other.outerContext
+				&& precedence == other.precedence;
+		}
+	}
 }
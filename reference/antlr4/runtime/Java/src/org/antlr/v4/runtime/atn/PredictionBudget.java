@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the work done by a {@link ParserATNSimulator}, so that the time
+ * spent parsing a pathological input is bounded.
+ *
+ * <p>The limits are checked cooperatively by the simulator during
+ * prediction, and the deadline is also checked when the parser enters a
+ * rule. When a limit is exceeded, a {@link PredictionBudgetExceededException}
+ * is thrown, which cancels the parse. If {@link #isFallBackToSll} is
+ * {@code true}, a prediction which exceeds the closure or configuration set
+ * limit after attempting a full-context prediction is first retried without
+ * full context, as in {@link PredictionMode#SLL}.</p>
+ *
+ * <p>A limit of -1 means there is no limit. An instance may be shared by
+ * several simulators.</p>
+ *
+ * @see ParserATNSimulator#setPredictionBudget
+ */
+public class PredictionBudget {
+	/** The limits enforced by a {@link PredictionBudget}. */
+	public enum Limit {
+		/** The number of closure operations of one prediction. */
+		CLOSURE_OPERATIONS,
+		/** The number of configurations in one configuration set. */
+		CONFIG_SET_SIZE,
+		/** The time elapsed since the start of the parse. */
+		DEADLINE
+	}
+
+	private final long maxClosureOperations;
+	private final int maxConfigSetSize;
+	private final long timeoutNanos;
+	private final boolean fallBackToSll;
+
+	/**
+	 * @param maxClosureOperations the maximum number of configurations
+	 * processed by the closure operations of one prediction, or -1
+	 * @param maxConfigSetSize the maximum number of configurations in a
+	 * configuration set, or -1
+	 * @param timeout the maximum time of a parse, or -1
+	 * @param unit the unit of {@code timeout}
+	 * @param fallBackToSll {@code true} to retry a prediction without full
+	 * context before throwing an exception
+	 */
+	public PredictionBudget(long maxClosureOperations, int maxConfigSetSize, long timeout, @NotNull TimeUnit unit, boolean fallBackToSll) {
+		if (maxClosureOperations < -1 || maxConfigSetSize < -1 || timeout < -1) {
+			throw new IllegalArgumentException("limits must be -1 or non-negative");
+		}
+
+		this.maxClosureOperations = maxClosureOperations;
+		this.maxConfigSetSize = maxConfigSetSize;
+		this.timeoutNanos = timeout >= 0 ? unit.toNanos(timeout) : -1;
+		this.fallBackToSll = fallBackToSll;
+	}
+
+	/**
+	 * @sharpen.property MaxClosureOperations
+	 */
+	public final long getMaxClosureOperations() {
+		return maxClosureOperations;
+	}
+
+	/**
+	 * @sharpen.property MaxConfigSetSize
+	 */
+	public final int getMaxConfigSetSize() {
+		return maxConfigSetSize;
+	}
+
+	/**
+	 * Gets the maximum time of a parse in nanoseconds, or -1. The time is
+	 * measured from the last call to {@link ParserATNSimulator#reset} or
+	 * {@link ParserATNSimulator#setPredictionBudget}.
+	 *
+	 * @sharpen.property TimeoutNanos
+	 */
+	public final long getTimeoutNanos() {
+		return timeoutNanos;
+	}
+
+	/**
+	 * @sharpen.property IsFallBackToSll
+	 */
+	public final boolean isFallBackToSll() {
+		return fallBackToSll;
+	}
+}
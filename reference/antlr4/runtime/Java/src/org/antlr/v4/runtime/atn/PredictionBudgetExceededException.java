@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+/**
+ * Thrown when a parse exceeds a limit of its {@link PredictionBudget}. Like
+ * other {@link ParseCancellationException}s, this exception bypasses error
+ * recovery and cancels the parse.
+ */
+public class PredictionBudgetExceededException extends ParseCancellationException {
+	private static final long serialVersionUID = 6370592810343785612L;
+
+	@NotNull
+	private final PredictionBudget.Limit limit;
+	private final int decision;
+	private final int inputIndex;
+
+	public PredictionBudgetExceededException(@NotNull PredictionBudget.Limit limit, int decision, int inputIndex) {
+		super("prediction budget exceeded: " + limit);
+		this.limit = limit;
+		this.decision = decision;
+		this.inputIndex = inputIndex;
+	}
+
+	/**
+	 * @sharpen.property Limit
+	 */
+	@NotNull
+	public PredictionBudget.Limit getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Gets the decision being predicted when the limit was exceeded, or -1 if
+	 * the deadline passed outside of prediction.
+	 *
+	 * @sharpen.property Decision
+	 */
+	public int getDecision() {
+		return decision;
+	}
+
+	/**
+	 * Gets the index of the input symbol where the decision being predicted
+	 * starts, or where the parser was when the deadline passed.
+	 *
+	 * @sharpen.property InputIndex
+	 */
+	public int getInputIndex() {
+		return inputIndex;
+	}
+}
@@ -18,12 +18,9 @@ import java.util.Map;
 public class PredictionContextCache {
     public static final PredictionContextCache UNCACHED = new PredictionContextCache(false);
 
-    private final Map<PredictionContext, PredictionContext> contexts =
-        new HashMap<PredictionContext, PredictionContext>();
-    private final Map<PredictionContextAndInt, PredictionContext> childContexts =
-        new HashMap<PredictionContextAndInt, PredictionContext>();
-    private final Map<IdentityCommutativePredictionContextOperands, PredictionContext> joinContexts =
-        new HashMap<IdentityCommutativePredictionContextOperands, PredictionContext>();
+    private final Map<PredictionContext, PredictionContext> contexts;
+    private final Map<PredictionContextAndInt, PredictionContext> childContexts;
+    private final Map<IdentityCommutativePredictionContextOperands, PredictionContext> joinContexts;
 
     private final boolean enableCache;
 
@@ -31,8 +28,25 @@ public class PredictionContextCache {
         this(true);
     }
 
-    private PredictionContextCache(boolean enableCache) {
+    /**
+     * Constructs a cache which stores contexts in hash maps if
+     * {@code enableCache} is {@code true}. Otherwise no map is allocated, and
+     * {@link #getAsCached}, {@link #getChild} and {@link #join} compute their
+     * result without caching it; subclasses which provide their own storage
+     * pass {@code false} and override these methods.
+     */
+    protected PredictionContextCache(boolean enableCache) {
         this.enableCache = enableCache;
+        if (enableCache) {
+            contexts = new HashMap<PredictionContext, PredictionContext>();
+            childContexts = new HashMap<PredictionContextAndInt, PredictionContext>();
+            joinContexts = new HashMap<IdentityCommutativePredictionContextOperands, PredictionContext>();
+        }
+        else {
+            contexts = null;
+            childContexts = null;
+            joinContexts = null;
+        }
     }
 
     public PredictionContext getAsCached(PredictionContext context) {
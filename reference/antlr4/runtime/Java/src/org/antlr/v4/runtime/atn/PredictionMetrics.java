@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Low-overhead prediction counters which may remain enabled in production.
+ * Unlike {@link ProfilingATNSimulator}, this class never allocates during
+ * prediction and only calls {@link System#nanoTime} for a sampled subset of
+ * predictions.
+ *
+ * <p>Counters are indexed by decision number when used by a
+ * {@link ParserATNSimulator}, and by lexer mode when used by a
+ * {@link LexerATNSimulator}. A single instance may be shared by any number of
+ * simulators running on different threads. Each counter is striped across
+ * several slots selected by the current thread, so concurrent updates rarely
+ * contend on the same memory; {@link #getSnapshot} sums the stripes.</p>
+ *
+ * @see ATNSimulator#setMetrics
+ */
+public class PredictionMetrics {
+	/**
+	 * The counters tracked for each decision or lexer mode.
+	 */
+	public enum Counter {
+		/** The number of predictions (or tokens matched by a lexer). */
+		PREDICTIONS,
+		/** The number of edges followed through the existing DFA. */
+		DFA_TRANSITIONS,
+		/** The number of edges computed by ATN simulation. */
+		ATN_TRANSITIONS,
+		/** The number of SLL conflicts retried with full context. */
+		FULL_CONTEXT_RETRIES,
+		/**
+		 * The number of full-context predictions looked up in the memo of a
+		 * parser simulator.
+		 *
+		 * @see ParserATNSimulator#setCacheFullContextPredictions
+		 */
+		FULL_CONTEXT_CACHE_LOOKUPS,
+		/** The number of full-context predictions found in the memo. */
+		FULL_CONTEXT_CACHE_HITS,
+		/** The number of new states added to the DFA. */
+		DFA_STATES_CREATED,
+		/** The number of predictions included in {@link #SAMPLED_TIME}. */
+		SAMPLED_PREDICTIONS,
+		/** The total time, in nanoseconds, spent in sampled predictions. */
+		SAMPLED_TIME
+	}
+
+	public static final int DEFAULT_SAMPLING_INTERVAL = 64;
+
+	private static final Counter[] COUNTERS = Counter.values();
+
+	private final int size;
+	private final int samplingInterval;
+	private final int stripeMask;
+	private final int stripeLength;
+	@NotNull
+	private final AtomicLongArray counters;
+
+	/**
+	 * Constructs a metrics instance for {@code size} decisions or modes, which
+	 * times one out of every {@link #DEFAULT_SAMPLING_INTERVAL} predictions.
+	 */
+	public PredictionMetrics(int size) {
+		this(size, DEFAULT_SAMPLING_INTERVAL);
+	}
+
+	/**
+	 * Constructs a metrics instance for {@code size} decisions or modes.
+	 *
+	 * @param size the number of decisions (parser) or modes (lexer)
+	 * @param samplingInterval time one out of every {@code samplingInterval}
+	 * predictions made by each simulator, or 0 to disable timing
+	 */
+	public PredictionMetrics(int size, int samplingInterval) {
+		if (size < 0) {
+			throw new IllegalArgumentException("size cannot be negative");
+		}
+
+		if (samplingInterval < 0) {
+			throw new IllegalArgumentException("samplingInterval cannot be negative");
+		}
+
+		this.size = size;
+		this.samplingInterval = samplingInterval;
+
+		int stripes = 1;
+		while (stripes < Runtime.getRuntime().availableProcessors() && stripes < 8) {
+			stripes <<= 1;
+		}
+
+		this.stripeMask = stripes - 1;
+		this.stripeLength = size * COUNTERS.length;
+		this.counters = new AtomicLongArray(stripes * stripeLength);
+	}
+
+	/**
+	 * Gets the number of decisions or modes tracked by this instance.
+	 *
+	 * @sharpen.property Size
+	 */
+	public final int getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets the interval at which predictions are timed, or 0 if timing is
+	 * disabled.
+	 *
+	 * @sharpen.property SamplingInterval
+	 */
+	public final int getSamplingInterval() {
+		return samplingInterval;
+	}
+
+	public final void increment(int index, @NotNull Counter counter) {
+		add(index, counter, 1);
+	}
+
+	public final void add(int index, @NotNull Counter counter, long value) {
+		if (index < 0 || index >= size) {
+			return;
+		}
+
+		int stripe = (int)Thread.currentThread().getId() & stripeMask;
+		counters.addAndGet(stripe * stripeLength + index * COUNTERS.length + counter.ordinal(), value);
+	}
+
+	/**
+	 * Records a sampled prediction which took {@code nanos} nanoseconds.
+	 */
+	public final void addSample(int index, long nanos) {
+		add(index, Counter.SAMPLED_PREDICTIONS, 1);
+		add(index, Counter.SAMPLED_TIME, nanos);
+	}
+
+	/**
+	 * Gets a snapshot of the current counter values. The snapshot is not
+	 * atomic with respect to concurrent updates, but each value is at least as
+	 * large as it was when this method was called.
+	 */
+	@NotNull
+	public Snapshot getSnapshot() {
+		long[] values = new long[stripeLength];
+		for (int i = 0; i < counters.length(); i++) {
+			values[i % stripeLength] += counters.get(i);
+		}
+
+		return new Snapshot(size, values);
+	}
+
+	/**
+	 * Resets all counters to 0. Updates made concurrently with this method may
+	 * or may not be retained.
+	 */
+	public void reset() {
+		for (int i = 0; i < counters.length(); i++) {
+			counters.set(i, 0);
+		}
+	}
+
+	/**
+	 * An immutable copy of the counter values of a {@link PredictionMetrics}
+	 * instance.
+	 */
+	public static class Snapshot {
+		private final int size;
+		@NotNull
+		private final long[] values;
+
+		protected Snapshot(int size, @NotNull long[] values) {
+			this.size = size;
+			this.values = values;
+		}
+
+		/**
+		 * @sharpen.property Size
+		 */
+		public final int getSize() {
+			return size;
+		}
+
+		public final long get(int index, @NotNull Counter counter) {
+			return values[index * COUNTERS.length + counter.ordinal()];
+		}
+
+		public final long getTotal(@NotNull Counter counter) {
+			long total = 0;
+			for (int i = 0; i < size; i++) {
+				total += get(i, counter);
+			}
+
+			return total;
+		}
+
+		/**
+		 * Gets the average time in nanoseconds of the sampled predictions for a
+		 * decision or mode, or 0 if no predictions were sampled.
+		 */
+		public final double getAverageTime(int index) {
+			long samples = get(index, Counter.SAMPLED_PREDICTIONS);
+			if (samples == 0) {
+				return 0;
+			}
+
+			return (double)get(index, Counter.SAMPLED_TIME) / samples;
+		}
+
+		/**
+		 * Gets the fraction of the full-context predictions of a decision which
+		 * were found in the memo of the simulator, or 0 if no predictions were
+		 * looked up.
+		 */
+		public final double getFullContextCacheHitRate(int index) {
+			long lookups = get(index, Counter.FULL_CONTEXT_CACHE_LOOKUPS);
+			if (lookups == 0) {
+				return 0;
+			}
+
+			return (double)get(index, Counter.FULL_CONTEXT_CACHE_HITS) / lookups;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			builder.append('[');
+			boolean first = true;
+			for (int i = 0; i < size; i++) {
+				if (get(i, Counter.PREDICTIONS) == 0) {
+					continue;
+				}
+
+				if (!first) {
+					builder.append(", ");
+				}
+
+				first = false;
+				builder.append('{').append("index=").append(i);
+				for (Counter counter : COUNTERS) {
+					builder.append(", ").append(counter).append('=').append(get(i, counter));
+				}
+
+				builder.append('}');
+			}
+
+			builder.append(']');
+			return builder.toString();
+		}
+	}
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * This class assigns a {@link DecisionStrategy} to individual decisions of an
+ * {@link ATN}. A policy is typically created from the statistics gathered by a
+ * {@link ProfilingATNSimulator} over a representative input set, saved with
+ * {@link #write}, and later loaded with {@link #read} and installed in
+ * production parsers with {@link ParserATNSimulator#setPredictionPolicy}.
+ *
+ * <p>The textual form of a policy contains a header line with the number of
+ * decisions, followed by one line for each decision which does not use
+ * {@link DecisionStrategy#DEFAULT}:</p>
+ *
+ * <pre>
+ * decisions 512
+ * 17 LOCAL_CONTEXT
+ * 412 FULL_CONTEXT
+ * </pre>
+ *
+ * <p>Lines starting with {@code #} and blank lines are ignored.</p>
+ */
+public class PredictionPolicy {
+	/**
+	 * The default minimum ratio of full-context retries to invocations for
+	 * which {@link #fromDecisionInfo(DecisionInfo[], double)} assigns
+	 * {@link DecisionStrategy#FULL_CONTEXT} to a context-sensitive decision.
+	 */
+	public static final double DEFAULT_FULL_CONTEXT_THRESHOLD = 0.5;
+
+	private static final String HEADER = "decisions";
+
+	@NotNull
+	private final DecisionStrategy[] strategies;
+
+	public PredictionPolicy(int numberOfDecisions) {
+		strategies = new DecisionStrategy[numberOfDecisions];
+		Arrays.fill(strategies, DecisionStrategy.DEFAULT);
+	}
+
+	/**
+	 * Creates a policy from the statistics gathered by a profiling parser,
+	 * using {@link #DEFAULT_FULL_CONTEXT_THRESHOLD}.
+	 *
+	 * @see #fromDecisionInfo(DecisionInfo[], double)
+	 */
+	@NotNull
+	public static PredictionPolicy fromParseInfo(@NotNull ParseInfo parseInfo) {
+		return fromDecisionInfo(parseInfo.getDecisionInfo(), DEFAULT_FULL_CONTEXT_THRESHOLD);
+	}
+
+	/**
+	 * Creates a policy from profiling statistics. Decisions which never
+	 * required a full-context retry keep {@link DecisionStrategy#DEFAULT}.
+	 * Decisions which required full-context retries but never produced a
+	 * context sensitivity (i.e. the full-context prediction always matched the
+	 * SLL conflict resolution) are assigned
+	 * {@link DecisionStrategy#LOCAL_CONTEXT}. Context-sensitive decisions which
+	 * fell back to full context for at least {@code fullContextThreshold} of
+	 * their invocations are assigned {@link DecisionStrategy#FULL_CONTEXT}.
+	 *
+	 * <p>The resulting policy is only as accurate as the input used for
+	 * profiling. In particular, {@link DecisionStrategy#LOCAL_CONTEXT} could
+	 * produce a syntax error for input which exercises a context sensitivity
+	 * not seen during profiling.</p>
+	 *
+	 * @param decisionInfo the profiling statistics, indexed by decision
+	 * @param fullContextThreshold the minimum ratio of
+	 * {@link DecisionInfo#LL_Fallback} to {@link DecisionInfo#invocations} for
+	 * assigning {@link DecisionStrategy#FULL_CONTEXT}
+	 */
+	@NotNull
+	public static PredictionPolicy fromDecisionInfo(@NotNull DecisionInfo[] decisionInfo, double fullContextThreshold) {
+		PredictionPolicy policy = new PredictionPolicy(decisionInfo.length);
+		for (DecisionInfo info : decisionInfo) {
+			if (info.LL_Fallback == 0) {
+				continue;
+			}
+
+			if (info.contextSensitivities.isEmpty()) {
+				policy.setStrategy(info.decision, DecisionStrategy.LOCAL_CONTEXT);
+			}
+			else if (info.LL_Fallback >= fullContextThreshold * info.invocations) {
+				policy.setStrategy(info.decision, DecisionStrategy.FULL_CONTEXT);
+			}
+		}
+
+		return policy;
+	}
+
+	/**
+	 * @sharpen.property NumberOfDecisions
+	 */
+	public final int getNumberOfDecisions() {
+		return strategies.length;
+	}
+
+	/**
+	 * Gets the strategy for a decision. Decisions outside the range of this
+	 * policy use {@link DecisionStrategy#DEFAULT}.
+	 */
+	@NotNull
+	public final DecisionStrategy getStrategy(int decision) {
+		if (decision < 0 || decision >= strategies.length) {
+			return DecisionStrategy.DEFAULT;
+		}
+
+		return strategies[decision];
+	}
+
+	public final void setStrategy(int decision, @NotNull DecisionStrategy strategy) {
+		if (strategy == null) {
+			throw new NullPointerException("strategy");
+		}
+
+		strategies[decision] = strategy;
+	}
+
+	/**
+	 * Writes this policy in the textual form described in the class
+	 * documentation.
+	 */
+	public void write(@NotNull Writer writer) throws IOException {
+		writer.write(toString());
+		writer.flush();
+	}
+
+	/**
+	 * Reads a policy in the textual form described in the class documentation.
+	 *
+	 * @throws IOException if an I/O error occurs or the input is not a valid
+	 * policy
+	 */
+	@NotNull
+	public static PredictionPolicy read(@NotNull Reader reader) throws IOException {
+		BufferedReader input = reader instanceof BufferedReader ? (BufferedReader)reader : new BufferedReader(reader);
+		PredictionPolicy policy = null;
+		int lineNumber = 0;
+		for (String line = input.readLine(); line != null; line = input.readLine()) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+
+			String[] parts = line.split("\\s+");
+			if (parts.length != 2) {
+				throw new IOException("Invalid prediction policy entry at line " + lineNumber + ": " + line);
+			}
+
+			try {
+				if (policy == null) {
+					if (!HEADER.equals(parts[0])) {
+						throw new IOException("Expected prediction policy header at line " + lineNumber + ": " + line);
+					}
+
+					policy = new PredictionPolicy(Integer.parseInt(parts[1]));
+					continue;
+				}
+
+				policy.setStrategy(Integer.parseInt(parts[0]), DecisionStrategy.valueOf(parts[1]));
+			}
+			catch (IllegalArgumentException ex) {
+				// also handles NumberFormatException
+				throw new IOException("Invalid prediction policy entry at line " + lineNumber + ": " + line, ex);
+			}
+			catch (ArrayIndexOutOfBoundsException ex) {
+				throw new IOException("Invalid decision number at line " + lineNumber + ": " + line, ex);
+			}
+		}
+
+		if (policy == null) {
+			throw new IOException("Missing prediction policy header.");
+		}
+
+		return policy;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(HEADER).append(' ').append(strategies.length).append('\n');
+		for (int i = 0; i < strategies.length; i++) {
+			if (strategies[i] != DecisionStrategy.DEFAULT) {
+				builder.append(i).append(' ').append(strategies[i]).append('\n');
+			}
+		}
+
+		return builder.toString();
+	}
+}
@@ -100,6 +100,18 @@ public class ProfilingATNSimulator extends ParserATNSimulator {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>The profiler never uses the memo, so the statistics of each decision
+	 * describe the full-context simulations actually required by the
+	 * input.</p>
+	 */
+	@Override
+	protected boolean useFullContextPredictionCache() {
+		return false;
+	}
+
 	@Override
 	protected SimulatorState getStartState(DFA dfa, TokenStream input, ParserRuleContext outerContext, boolean useContext) {
 		SimulatorState state = super.getStartState(dfa, input, outerContext, useContext);
@@ -0,0 +1,511 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.tree;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * A parse tree stored in primitive arrays instead of one object for each
+ * node.
+ *
+ * <p>Each node is an index into parallel arrays holding its rule index, its
+ * parent, its first child and next sibling, its start and stop token indexes,
+ * and its alternative number. Terminal and error nodes hold the index of
+ * their token, and a rule index of {@link #TERMINAL} or {@link #ERROR}. The
+ * tokens themselves are read from the token stream, which must keep all
+ * tokens, such as a {@link org.antlr.v4.runtime.BufferedTokenStream}.</p>
+ *
+ * <p>The tree is recorded during the parse by a {@link Builder} added with
+ * {@link org.antlr.v4.runtime.Parser#addParseListener}, typically with
+ * {@link org.antlr.v4.runtime.Parser#setBuildParseTree} set to
+ * {@code false}, so the rule contexts created by the parser are released as
+ * soon as their rule returns.</p>
+ *
+ * <pre>
+ * CompactParseTree.Builder builder = new CompactParseTree.Builder(tokens);
+ * parser.setBuildParseTree(false);
+ * parser.addParseListener(builder);
+ * parser.compilationUnit();
+ * CompactParseTree tree = builder.getTree();
+ * ParseTreeWalker.DEFAULT.walk(listener, tree.getRoot());
+ * </pre>
+ *
+ * <p>{@link #getRoot} and {@link #getNode} return views of the nodes which
+ * can be walked by {@link ParseTreeWalker} and visited by
+ * {@link ParseTreeVisitor}. Rule nodes are instances of {@link Context},
+ * which reports the rule index and alternative number of the node but is not
+ * an instance of the context class generated for the rule. Views are created
+ * when they are requested and are not stored by the tree, but each rule view
+ * creates the views of its children once, so repeated calls to
+ * {@link Context#getChild} return the same instances. Values stored in a
+ * {@link ParseTreeProperty} while walking one root view can therefore be read
+ * back through the children of that view.</p>
+ */
+public class CompactParseTree {
+	/** The rule index of a terminal node. */
+	public static final int TERMINAL = -1;
+	/** The rule index of an error node. */
+	public static final int ERROR = -2;
+	/** The index of a missing node. */
+	public static final int NONE = -1;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	@NotNull
+	private final TokenStream tokens;
+
+	private int size;
+	private int root = NONE;
+
+	@NotNull
+	private int[] ruleIndex = new int[INITIAL_CAPACITY];
+	@NotNull
+	private int[] parent = new int[INITIAL_CAPACITY];
+	@NotNull
+	private int[] firstChild = new int[INITIAL_CAPACITY];
+	@NotNull
+	private int[] nextSibling = new int[INITIAL_CAPACITY];
+	@NotNull
+	private int[] startIndex = new int[INITIAL_CAPACITY];
+	@NotNull
+	private int[] stopIndex = new int[INITIAL_CAPACITY];
+	@NotNull
+	private int[] altNumber = new int[INITIAL_CAPACITY];
+
+	public CompactParseTree(@NotNull TokenStream tokens) {
+		this.tokens = tokens;
+	}
+
+	/**
+	 * @sharpen.property TokenStream
+	 */
+	@NotNull
+	public TokenStream getTokenStream() {
+		return tokens;
+	}
+
+	/**
+	 * Gets the number of nodes in the tree.
+	 *
+	 * @sharpen.property Size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the index of the root node, or {@link #NONE} if the tree is empty.
+	 *
+	 * @sharpen.property RootIndex
+	 */
+	public int getRootIndex() {
+		return root;
+	}
+
+	/** Gets the rule index of a node, or {@link #TERMINAL} or {@link #ERROR}. */
+	public int getRuleIndex(int node) {
+		return ruleIndex[node];
+	}
+
+	public int getParent(int node) {
+		return parent[node];
+	}
+
+	public int getFirstChild(int node) {
+		return firstChild[node];
+	}
+
+	public int getNextSibling(int node) {
+		return nextSibling[node];
+	}
+
+	/** Gets the index of the first token of a node. */
+	public int getStartIndex(int node) {
+		return startIndex[node];
+	}
+
+	/**
+	 * Gets the index of the last token of a node. For a rule which matched no
+	 * tokens, this is the index of the token before the start token.
+	 */
+	public int getStopIndex(int node) {
+		return stopIndex[node];
+	}
+
+	public int getAltNumber(int node) {
+		return altNumber[node];
+	}
+
+	public boolean isTerminal(int node) {
+		return ruleIndex[node] < 0;
+	}
+
+	public int getChildCount(int node) {
+		int count = 0;
+		for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+			count++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Gets a view of the root node, or {@code null} if the tree is empty.
+	 */
+	@Nullable
+	public Context getRoot() {
+		return root != NONE ? (Context)getNode(root) : null;
+	}
+
+	/**
+	 * Gets a view of a node: a {@link Context} for a rule node, a
+	 * {@link TerminalNode} for a terminal node, or an {@link ErrorNode} for
+	 * an error node.
+	 */
+	@NotNull
+	public ParseTree getNode(int node) {
+		return createNode(node, null);
+	}
+
+	@NotNull
+	protected ParseTree createNode(int node, @Nullable Context parentView) {
+		switch (ruleIndex[node]) {
+		case TERMINAL:
+			TerminalNodeImpl terminal = new TerminalNodeImpl(tokens.get(startIndex[node]));
+			terminal.parent = parentView != null || parent[node] == NONE ? parentView : (Context)getNode(parent[node]);
+			return terminal;
+
+		case ERROR:
+			ErrorNodeImpl error = new ErrorNodeImpl(tokens.get(startIndex[node]));
+			error.parent = parentView != null || parent[node] == NONE ? parentView : (Context)getNode(parent[node]);
+			return error;
+
+		default:
+			return new Context(this, node, parentView);
+		}
+	}
+
+	protected int addNode(int ruleIndex, int parent, int startIndex) {
+		if (size == this.ruleIndex.length) {
+			int capacity = size * 2;
+			this.ruleIndex = Arrays.copyOf(this.ruleIndex, capacity);
+			this.parent = Arrays.copyOf(this.parent, capacity);
+			firstChild = Arrays.copyOf(firstChild, capacity);
+			nextSibling = Arrays.copyOf(nextSibling, capacity);
+			this.startIndex = Arrays.copyOf(this.startIndex, capacity);
+			stopIndex = Arrays.copyOf(stopIndex, capacity);
+			altNumber = Arrays.copyOf(altNumber, capacity);
+		}
+
+		int node = size++;
+		this.ruleIndex[node] = ruleIndex;
+		this.parent[node] = parent;
+		firstChild[node] = NONE;
+		nextSibling[node] = NONE;
+		this.startIndex[node] = startIndex;
+		stopIndex[node] = startIndex;
+		altNumber[node] = ATN.INVALID_ALT_NUMBER;
+		if (parent == NONE) {
+			root = node;
+		}
+
+		return node;
+	}
+
+	/**
+	 * A view of a rule node of a {@link CompactParseTree}.
+	 */
+	public static class Context extends ParserRuleContext {
+		@NotNull
+		private final CompactParseTree tree;
+		private final int node;
+
+		/** The index of each child node, computed on first use. */
+		private int[] childNodes;
+		/** The view of each child node, created on first use. */
+		private ParseTree[] childViews;
+
+		protected Context(@NotNull CompactParseTree tree, int node, @Nullable Context parent) {
+			this.tree = tree;
+			this.node = node;
+			this.parent = parent;
+			this.start = tokenAt(tree, tree.startIndex[node]);
+			this.stop = tokenAt(tree, tree.stopIndex[node]);
+		}
+
+		@Nullable
+		private static Token tokenAt(@NotNull CompactParseTree tree, int index) {
+			return index >= 0 ? tree.tokens.get(index) : null;
+		}
+
+		/**
+		 * @sharpen.property Tree
+		 */
+		@NotNull
+		public CompactParseTree getTree() {
+			return tree;
+		}
+
+		/**
+		 * Gets the index of this node in {@link #getTree}.
+		 *
+		 * @sharpen.property Node
+		 */
+		public int getNode() {
+			return node;
+		}
+
+		@Override
+		public int getRuleIndex() {
+			return tree.ruleIndex[node];
+		}
+
+		@Override
+		public int getAltNumber() {
+			return tree.altNumber[node];
+		}
+
+		@Override
+		public Context getParent() {
+			if (parent == null && tree.parent[node] != NONE) {
+				parent = new Context(tree, tree.parent[node], null);
+			}
+
+			return (Context)parent;
+		}
+
+		@Override
+		public int getChildCount() {
+			return getChildNodes().length;
+		}
+
+		@Override
+		public ParseTree getChild(int i) {
+			int[] nodes = getChildNodes();
+			if (i < 0 || i >= nodes.length) {
+				return null;
+			}
+
+			if (childViews == null) {
+				childViews = new ParseTree[nodes.length];
+			}
+
+			ParseTree child = childViews[i];
+			if (child == null) {
+				child = tree.createNode(nodes[i], this);
+				childViews[i] = child;
+			}
+
+			return child;
+		}
+
+		@NotNull
+		private int[] getChildNodes() {
+			if (childNodes == null) {
+				int[] nodes = new int[tree.getChildCount(node)];
+				int i = 0;
+				for (int child = tree.firstChild[node]; child != NONE; child = tree.nextSibling[child]) {
+					nodes[i++] = child;
+				}
+
+				childNodes = nodes;
+			}
+
+			return childNodes;
+		}
+	}
+
+	/**
+	 * A parse listener which records the parse tree in a
+	 * {@link CompactParseTree}.
+	 *
+	 * <p>The contexts of left-recursive rules are handled like the parser
+	 * handles them: when a context becomes the first child of a new context
+	 * of the same rule, the node recorded for it is moved under the node of
+	 * the new context. Missing tokens conjured up by error recovery are not
+	 * reported to parse listeners, so they are not part of the tree.</p>
+	 */
+	public static class Builder implements ParseTreeListener {
+		@NotNull
+		private final CompactParseTree tree;
+
+		private int depth;
+		@NotNull
+		private ParserRuleContext[] contexts = new ParserRuleContext[16];
+		@NotNull
+		private int[] nodes = new int[16];
+		/** The last child of the node at each depth. */
+		@NotNull
+		private int[] lastChild = new int[16];
+		/** The sibling before the last child of the node at each depth. */
+		@NotNull
+		private int[] previousChild = new int[16];
+		/**
+		 * The context of the rule exited by the last event, or {@code null} if
+		 * the last event was not an exit.
+		 */
+		@Nullable
+		private ParserRuleContext exitedContext;
+		/** The node of {@link #exitedContext}. */
+		private int exitedNode = NONE;
+
+		public Builder(@NotNull TokenStream tokens) {
+			this(new CompactParseTree(tokens));
+		}
+
+		public Builder(@NotNull CompactParseTree tree) {
+			this.tree = tree;
+		}
+
+		/**
+		 * @sharpen.property Tree
+		 */
+		@NotNull
+		public CompactParseTree getTree() {
+			return tree;
+		}
+
+		@Override
+		public void enterEveryRule(ParserRuleContext ctx) {
+			int startIndex = ctx.getStart() != null ? ctx.getStart().getTokenIndex() : NONE;
+			ParserRuleContext exited = exitedContext;
+			exitedContext = null;
+			if (exited != null && exited.getParent() == ctx && (depth > 0 ? lastChild[depth - 1] == exitedNode : tree.parent[exitedNode] == NONE)) {
+				// generated parsers exit the previous context of a left-recursive
+				// rule before it becomes the first child of ctx
+				int child = exitedNode;
+				int parentNode = tree.parent[child];
+				int node = tree.addNode(ctx.getRuleIndex(), parentNode, startIndex);
+				if (parentNode != NONE) {
+					int previousSibling = previousChild[depth - 1];
+					if (previousSibling == NONE) {
+						tree.firstChild[parentNode] = node;
+					}
+					else {
+						tree.nextSibling[previousSibling] = node;
+					}
+
+					lastChild[depth - 1] = node;
+				}
+
+				tree.parent[child] = node;
+				tree.firstChild[node] = child;
+				push(ctx, node, child);
+				return;
+			}
+
+			if (depth > 0 && contexts[depth - 1].getParent() == ctx) {
+				// the current context became the first child of ctx
+				ParserRuleContext previous = contexts[depth - 1];
+				int child = nodes[depth - 1];
+				tree.stopIndex[child] = previous.getStop() != null ? previous.getStop().getTokenIndex() : startIndex - 1;
+				tree.altNumber[child] = previous.getAltNumber();
+
+				int parentNode = tree.parent[child];
+				int node = tree.addNode(ctx.getRuleIndex(), parentNode, startIndex);
+				if (parentNode != NONE) {
+					int previousSibling = previousChild[depth - 2];
+					if (previousSibling == NONE) {
+						tree.firstChild[parentNode] = node;
+					}
+					else {
+						tree.nextSibling[previousSibling] = node;
+					}
+
+					lastChild[depth - 2] = node;
+				}
+
+				tree.parent[child] = node;
+				tree.firstChild[node] = child;
+				contexts[depth - 1] = ctx;
+				nodes[depth - 1] = node;
+				lastChild[depth - 1] = child;
+				previousChild[depth - 1] = NONE;
+				return;
+			}
+
+			int node = tree.addNode(ctx.getRuleIndex(), depth > 0 ? nodes[depth - 1] : NONE, startIndex);
+			appendChild(node);
+			push(ctx, node, NONE);
+		}
+
+		private void push(@NotNull ParserRuleContext ctx, int node, int child) {
+			if (depth == contexts.length) {
+				int capacity = depth * 2;
+				contexts = Arrays.copyOf(contexts, capacity);
+				nodes = Arrays.copyOf(nodes, capacity);
+				lastChild = Arrays.copyOf(lastChild, capacity);
+				previousChild = Arrays.copyOf(previousChild, capacity);
+			}
+
+			contexts[depth] = ctx;
+			nodes[depth] = node;
+			lastChild[depth] = child;
+			previousChild[depth] = NONE;
+			depth++;
+		}
+
+		@Override
+		public void exitEveryRule(ParserRuleContext ctx) {
+			if (depth == 0) {
+				return;
+			}
+
+			depth--;
+			int node = nodes[depth];
+			contexts[depth] = null;
+			tree.stopIndex[node] = ctx.getStop() != null ? ctx.getStop().getTokenIndex() : tree.startIndex[node] - 1;
+			tree.altNumber[node] = ctx.getAltNumber();
+			exitedContext = ctx;
+			exitedNode = node;
+		}
+
+		@Override
+		public void visitTerminal(TerminalNode node) {
+			addTerminal(TERMINAL, node.getSymbol());
+		}
+
+		@Override
+		public void visitErrorNode(ErrorNode node) {
+			addTerminal(ERROR, node.getSymbol());
+		}
+
+		private void addTerminal(int type, @NotNull Token token) {
+			exitedContext = null;
+			if (depth == 0) {
+				return;
+			}
+
+			int node = tree.addNode(type, nodes[depth - 1], token.getTokenIndex());
+			appendChild(node);
+		}
+
+		private void appendChild(int node) {
+			if (depth == 0) {
+				return;
+			}
+
+			int last = lastChild[depth - 1];
+			if (last == NONE) {
+				tree.firstChild[nodes[depth - 1]] = node;
+			}
+			else {
+				tree.nextSibling[last] = node;
+			}
+
+			previousChild[depth - 1] = last;
+			lastChild[depth - 1] = node;
+		}
+	}
+}
@@ -0,0 +1,429 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.tree;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.misc.IntegerStack;
+import org.antlr.v4.runtime.misc.NotNull;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Walks a parse tree once for several listeners. Each listener receives the
+ * same events, in the same order, as it would from
+ * {@link ParseTreeWalker#walk}.
+ *
+ * <p>Events are only sent to listeners which handle them. For each listener
+ * class, the walker finds, once, which of the {@link ParseTreeListener}
+ * methods and which rule-specific {@code enter} and {@code exit} methods are
+ * implemented by the listener rather than inherited from a generated base
+ * listener. For each context class, it then computes which listeners need
+ * {@link ParserRuleContext#enterRule} and {@link ParserRuleContext#exitRule},
+ * so visiting a rule node does not call the listeners which ignore it.</p>
+ *
+ * <p>A method is treated as inherited from a generated base listener if
+ * {@link #isDefaultImplementation} returns {@code true} for it. By default,
+ * these are the methods of a class {@code XBaseListener} which directly
+ * extends {@link Object}, directly implements an interface
+ * {@code XListener} extending {@link ParseTreeListener}, and declares no
+ * methods other than those of {@code XListener}, as generated by the tool.
+ * Every other method is treated as overridden. If the methods of a listener
+ * cannot be inspected, the listener receives every event.</p>
+ *
+ * <p>An instance of this class may be reused for several trees, but not by
+ * several threads at once.</p>
+ */
+public class MultiParseTreeWalker {
+	private static final ConcurrentMap<Class<?>, ListenerInfo> listenerInfo =
+		new ConcurrentHashMap<Class<?>, ListenerInfo>();
+
+	@NotNull
+	private final ParseTreeListener[] listeners;
+	private ListenerInfo[] infos;
+
+	private int[] terminalListeners;
+	private int[] errorListeners;
+
+	private final Map<Class<?>, RuleDispatch> ruleDispatch = new HashMap<Class<?>, RuleDispatch>();
+
+	public MultiParseTreeWalker(@NotNull List<? extends ParseTreeListener> listeners) {
+		this.listeners = listeners.toArray(new ParseTreeListener[listeners.size()]);
+	}
+
+	/**
+	 * @sharpen.property Listeners
+	 */
+	@NotNull
+	public List<ParseTreeListener> getListeners() {
+		List<ParseTreeListener> result = new ArrayList<ParseTreeListener>(listeners.length);
+		for (ParseTreeListener listener : listeners) {
+			result.add(listener);
+		}
+
+		return result;
+	}
+
+	public void walk(@NotNull ParseTree t) {
+		if (infos == null) {
+			initialize();
+		}
+
+		final Deque<ParseTree> nodeStack = new ArrayDeque<ParseTree>();
+		final IntegerStack indexStack = new IntegerStack();
+
+		ParseTree currentNode = t;
+		int currentIndex = 0;
+
+		while (currentNode != null) {
+			// pre-order visit
+			if (currentNode instanceof ErrorNode) {
+				for (int i : errorListeners) {
+					listeners[i].visitErrorNode((ErrorNode)currentNode);
+				}
+			} else if (currentNode instanceof TerminalNode) {
+				for (int i : terminalListeners) {
+					listeners[i].visitTerminal((TerminalNode)currentNode);
+				}
+			} else {
+				enterRule((RuleNode)currentNode);
+			}
+
+			// Move down to first child, if exists
+			if (currentNode.getChildCount() > 0) {
+				nodeStack.push(currentNode);
+				indexStack.push(currentIndex);
+				currentIndex = 0;
+				currentNode = currentNode.getChild(0);
+				continue;
+			}
+
+			// No child nodes, so walk tree
+			do {
+
+				// post-order visit
+				if (currentNode instanceof RuleNode) {
+					exitRule((RuleNode)currentNode);
+				}
+
+				// No parent, so no siblings
+				if (nodeStack.isEmpty()) {
+					currentNode = null;
+					currentIndex = 0;
+					break;
+				}
+
+				// Move to next sibling if possible
+				currentNode = nodeStack.peek().getChild(++currentIndex);
+				if (currentNode != null) {
+					break;
+				}
+
+				// No next sibling, so move up
+				currentNode = nodeStack.pop();
+				currentIndex = indexStack.pop();
+
+			} while (currentNode != null);
+		}
+	}
+
+	protected void enterRule(@NotNull RuleNode r) {
+		ParserRuleContext ctx = (ParserRuleContext)r.getRuleContext();
+		RuleDispatch dispatch = getRuleDispatch(ctx.getClass());
+		for (int i = 0; i < dispatch.enterListeners.length; i++) {
+			ParseTreeListener listener = listeners[dispatch.enterListeners[i]];
+			if (dispatch.enterEveryRule[i]) {
+				listener.enterEveryRule(ctx);
+			}
+
+			if (dispatch.enterRule[i]) {
+				ctx.enterRule(listener);
+			}
+		}
+	}
+
+	protected void exitRule(@NotNull RuleNode r) {
+		ParserRuleContext ctx = (ParserRuleContext)r.getRuleContext();
+		RuleDispatch dispatch = getRuleDispatch(ctx.getClass());
+		for (int i = 0; i < dispatch.exitListeners.length; i++) {
+			ParseTreeListener listener = listeners[dispatch.exitListeners[i]];
+			if (dispatch.exitRule[i]) {
+				ctx.exitRule(listener);
+			}
+
+			if (dispatch.exitEveryRule[i]) {
+				listener.exitEveryRule(ctx);
+			}
+		}
+	}
+
+	/**
+	 * Finds the events handled by each listener. This is done on the first
+	 * call to {@link #walk} rather than in the constructor, so
+	 * {@link #isDefaultImplementation} is not called on a partially
+	 * constructed subclass.
+	 */
+	private void initialize() {
+		ListenerInfo[] infos = new ListenerInfo[listeners.length];
+		List<Integer> terminal = new ArrayList<Integer>();
+		List<Integer> error = new ArrayList<Integer>();
+		for (int i = 0; i < listeners.length; i++) {
+			infos[i] = getListenerInfo(listeners[i].getClass());
+			if (infos[i].visitTerminal) {
+				terminal.add(i);
+			}
+
+			if (infos[i].visitErrorNode) {
+				error.add(i);
+			}
+		}
+
+		terminalListeners = toArray(terminal);
+		errorListeners = toArray(error);
+		this.infos = infos;
+	}
+
+	@NotNull
+	private RuleDispatch getRuleDispatch(@NotNull Class<?> contextClass) {
+		RuleDispatch dispatch = ruleDispatch.get(contextClass);
+		if (dispatch == null) {
+			dispatch = new RuleDispatch(infos, contextClass);
+			ruleDispatch.put(contextClass, dispatch);
+		}
+
+		return dispatch;
+	}
+
+	/**
+	 * Gets the events handled by a listener class. The result is shared by
+	 * all instances of this class; a subclass, which may override
+	 * {@link #isDefaultImplementation}, computes it for each instance.
+	 */
+	@NotNull
+	private ListenerInfo getListenerInfo(@NotNull Class<?> listenerClass) {
+		if (getClass() != MultiParseTreeWalker.class) {
+			return new ListenerInfo(this, listenerClass);
+		}
+
+		ListenerInfo info = listenerInfo.get(listenerClass);
+		if (info == null) {
+			info = new ListenerInfo(this, listenerClass);
+			ListenerInfo existing = listenerInfo.putIfAbsent(listenerClass, info);
+			if (existing != null) {
+				info = existing;
+			}
+		}
+
+		return info;
+	}
+
+	/**
+	 * Determines whether {@code method} is a default implementation which
+	 * does nothing. By default, this is the case for the methods of a
+	 * generated base listener, as described in the documentation of this
+	 * class.
+	 */
+	protected boolean isDefaultImplementation(@NotNull Method method) {
+		if (Modifier.isAbstract(method.getModifiers())) {
+			return false;
+		}
+
+		return isGeneratedBaseListener(method.getDeclaringClass());
+	}
+
+	/**
+	 * Determines whether {@code type} has the form of a base listener
+	 * generated for a grammar {@code X}: a class {@code XBaseListener} which
+	 * extends {@link Object}, directly implements the generated interface
+	 * {@code XListener}, and declares only the methods of that interface.
+	 */
+	private static boolean isGeneratedBaseListener(@NotNull Class<?> type) {
+		String suffix = "BaseListener";
+		String name = type.getName();
+		if (type.isInterface() || type.getSuperclass() != Object.class || !name.endsWith(suffix)) {
+			return false;
+		}
+
+		String listenerName = name.substring(0, name.length() - suffix.length()) + "Listener";
+		Class<?> listenerInterface = null;
+		for (Class<?> candidate : type.getInterfaces()) {
+			if (candidate.getName().equals(listenerName) && ParseTreeListener.class.isAssignableFrom(candidate)) {
+				listenerInterface = candidate;
+				break;
+			}
+		}
+
+		if (listenerInterface == null) {
+			return false;
+		}
+
+		for (Method declared : type.getDeclaredMethods()) {
+			if (declared.isSynthetic()) {
+				continue;
+			}
+
+			try {
+				listenerInterface.getMethod(declared.getName(), declared.getParameterTypes());
+			}
+			catch (NoSuchMethodException ex) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	@NotNull
+	private static int[] toArray(@NotNull List<Integer> list) {
+		int[] result = new int[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = list.get(i);
+		}
+
+		return result;
+	}
+
+	/**
+	 * The events handled by a listener class.
+	 */
+	private static final class ListenerInfo {
+		public final boolean enterEveryRule;
+		public final boolean exitEveryRule;
+		public final boolean visitTerminal;
+		public final boolean visitErrorNode;
+
+		/** The context types of the rule-specific enter methods. */
+		@NotNull
+		public final List<Class<?>> enterTypes = new ArrayList<Class<?>>();
+		/** The context types of the rule-specific exit methods. */
+		@NotNull
+		public final List<Class<?>> exitTypes = new ArrayList<Class<?>>();
+
+		/** {@code true} if the methods of the listener could not be inspected. */
+		public final boolean unknown;
+
+		public ListenerInfo(@NotNull MultiParseTreeWalker walker, @NotNull Class<?> listenerClass) {
+			boolean enterEveryRule = true;
+			boolean exitEveryRule = true;
+			boolean visitTerminal = true;
+			boolean visitErrorNode = true;
+			boolean unknown = false;
+			try {
+				enterEveryRule = !walker.isDefaultImplementation(listenerClass.getMethod("enterEveryRule", ParserRuleContext.class));
+				exitEveryRule = !walker.isDefaultImplementation(listenerClass.getMethod("exitEveryRule", ParserRuleContext.class));
+				visitTerminal = !walker.isDefaultImplementation(listenerClass.getMethod("visitTerminal", TerminalNode.class));
+				visitErrorNode = !walker.isDefaultImplementation(listenerClass.getMethod("visitErrorNode", ErrorNode.class));
+				for (Method method : listenerClass.getMethods()) {
+					Class<?>[] parameterTypes = method.getParameterTypes();
+					if (parameterTypes.length != 1
+						|| parameterTypes[0] == ParserRuleContext.class
+						|| !ParserRuleContext.class.isAssignableFrom(parameterTypes[0])
+						|| walker.isDefaultImplementation(method))
+					{
+						continue;
+					}
+
+					if (method.getName().startsWith("enter")) {
+						enterTypes.add(parameterTypes[0]);
+					}
+					else if (method.getName().startsWith("exit")) {
+						exitTypes.add(parameterTypes[0]);
+					}
+				}
+			}
+			catch (NoSuchMethodException ex) {
+				unknown = true;
+			}
+			catch (SecurityException ex) {
+				unknown = true;
+			}
+
+			this.enterEveryRule = enterEveryRule || unknown;
+			this.exitEveryRule = exitEveryRule || unknown;
+			this.visitTerminal = visitTerminal || unknown;
+			this.visitErrorNode = visitErrorNode || unknown;
+			this.unknown = unknown;
+		}
+
+		public boolean handlesEnter(@NotNull Class<?> contextClass) {
+			return unknown || handles(enterTypes, contextClass);
+		}
+
+		public boolean handlesExit(@NotNull Class<?> contextClass) {
+			return unknown || handles(exitTypes, contextClass);
+		}
+
+		private static boolean handles(@NotNull List<Class<?>> types, @NotNull Class<?> contextClass) {
+			for (Class<?> type : types) {
+				if (type.isAssignableFrom(contextClass)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+
+	/**
+	 * The listeners to notify when entering and exiting a context class.
+	 */
+	private static final class RuleDispatch {
+		@NotNull
+		public final int[] enterListeners;
+		@NotNull
+		public final boolean[] enterEveryRule;
+		@NotNull
+		public final boolean[] enterRule;
+
+		@NotNull
+		public final int[] exitListeners;
+		@NotNull
+		public final boolean[] exitEveryRule;
+		@NotNull
+		public final boolean[] exitRule;
+
+		public RuleDispatch(@NotNull ListenerInfo[] infos, @NotNull Class<?> contextClass) {
+			List<Integer> enter = new ArrayList<Integer>();
+			List<Integer> exit = new ArrayList<Integer>();
+			for (int i = 0; i < infos.length; i++) {
+				if (infos[i].enterEveryRule || infos[i].handlesEnter(contextClass)) {
+					enter.add(i);
+				}
+
+				if (infos[i].exitEveryRule || infos[i].handlesExit(contextClass)) {
+					exit.add(i);
+				}
+			}
+
+			enterListeners = toArray(enter);
+			enterEveryRule = new boolean[enterListeners.length];
+			enterRule = new boolean[enterListeners.length];
+			for (int i = 0; i < enterListeners.length; i++) {
+				ListenerInfo info = infos[enterListeners[i]];
+				enterEveryRule[i] = info.enterEveryRule;
+				enterRule[i] = info.handlesEnter(contextClass);
+			}
+
+			exitListeners = toArray(exit);
+			exitEveryRule = new boolean[exitListeners.length];
+			exitRule = new boolean[exitListeners.length];
+			for (int i = 0; i < exitListeners.length; i++) {
+				ListenerInfo info = infos[exitListeners[i]];
+				exitEveryRule[i] = info.exitEveryRule;
+				exitRule[i] = info.handlesExit(contextClass);
+			}
+		}
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.tree;
+
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A visitor which visits the children of large nodes on several threads.
+ *
+ * <p>{@link #visitChildren} forks a node when {@link #shouldFork} returns
+ * {@code true}. By default, this is the case for the nodes of the rules passed
+ * to {@link #setForkRules}, and for the nodes spanning at least
+ * {@link #getMinForkSize} tokens. The children of a forked node are split
+ * into consecutive groups, which are visited by tasks submitted to the
+ * executor. For a fork rule, each rule child starts a new group; otherwise,
+ * each group spans at least {@link #getMinForkSize} tokens. The first group is
+ * visited by the current thread, and a thread waiting for a group which has
+ * not started yet visits it itself, so nested forks cannot exhaust a bounded
+ * thread pool.</p>
+ *
+ * <p>The results of a group are combined with {@link #aggregateResult},
+ * starting with the result of its first child, and the results of the groups
+ * are then combined in order, starting with {@link #defaultResult}. The
+ * result is the same as the one of a sequential visit if
+ * {@link #aggregateResult} is associative. For a forked node,
+ * {@link #shouldVisitNextChild} is only called between groups, and the
+ * children of a group may be visited even if it returns {@code false}.</p>
+ *
+ * <p>The visit methods of a subclass may be called by several threads at
+ * once, and must not modify the tree or share unsynchronized state.</p>
+ *
+ * @param <Result> The return type of the visit operation. Use {@link Void} for
+ * operations with no return type.
+ */
+public abstract class ParallelParseTreeVisitor<Result> extends AbstractParseTreeVisitor<Result> {
+	public static final int DEFAULT_MIN_FORK_SIZE = 1024;
+
+	@NotNull
+	private final Executor executor;
+	@NotNull
+	private final BitSet forkRules = new BitSet();
+
+	private int minForkSize = DEFAULT_MIN_FORK_SIZE;
+
+	public ParallelParseTreeVisitor(@NotNull Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * @sharpen.property Executor
+	 */
+	@NotNull
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Gets the minimum number of tokens spanned by a node for it to be forked,
+	 * and by each group of its children. The default value is
+	 * {@link #DEFAULT_MIN_FORK_SIZE}.
+	 *
+	 * @sharpen.property MinForkSize
+	 */
+	public int getMinForkSize() {
+		return minForkSize;
+	}
+
+	/**
+	 * @sharpen.property MinForkSize
+	 */
+	public void setMinForkSize(int minForkSize) {
+		if (minForkSize < 1) {
+			throw new IllegalArgumentException("minForkSize must be at least 1");
+		}
+
+		this.minForkSize = minForkSize;
+	}
+
+	/**
+	 * Gets the indexes of the rules whose nodes are always forked.
+	 *
+	 * @sharpen.property ForkRules
+	 */
+	@NotNull
+	public BitSet getForkRules() {
+		return (BitSet)forkRules.clone();
+	}
+
+	/**
+	 * Sets the indexes of the rules whose nodes are always forked, each rule
+	 * child visited by its own task. These are typically rules whose children
+	 * are independent, such as a list of class members or statements.
+	 */
+	public void setForkRules(@NotNull int... ruleIndexes) {
+		forkRules.clear();
+		for (int ruleIndex : ruleIndexes) {
+			forkRules.set(ruleIndex);
+		}
+	}
+
+	/**
+	 * Determines whether the children of {@code node} are visited by several
+	 * tasks.
+	 *
+	 * <p>The default implementation returns {@code true} if {@code node} has
+	 * more than one child, and either its rule is a fork rule or it spans at
+	 * least {@link #getMinForkSize} tokens.</p>
+	 */
+	protected boolean shouldFork(@NotNull RuleNode node) {
+		if (node.getChildCount() < 2) {
+			return false;
+		}
+
+		return isForkRule(node) || size(node) >= minForkSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>If {@link #shouldFork} returns {@code true} for {@code node}, the
+	 * children are visited by several tasks as described for this class.
+	 * Otherwise, the children are visited by the current thread. If visiting a
+	 * child throws an exception, the tasks which have not started are
+	 * cancelled and the exception is thrown from this method.</p>
+	 */
+	@Override
+	public Result visitChildren(@NotNull RuleNode node) {
+		if (!shouldFork(node)) {
+			return super.visitChildren(node);
+		}
+
+		List<FutureTask<Result>> tasks = createTasks(node);
+		for (int i = 1; i < tasks.size(); i++) {
+			executor.execute(tasks.get(i));
+		}
+
+		try {
+			Result result = defaultResult();
+			for (FutureTask<Result> task : tasks) {
+				if (!shouldVisitNextChild(node, result)) {
+					break;
+				}
+
+				// runs the task here unless another thread already started it
+				task.run();
+				result = aggregateResult(result, task.get());
+			}
+
+			return result;
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+
+			throw new RuntimeException(cause);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new ParseCancellationException(ex);
+		}
+		finally {
+			for (FutureTask<Result> task : tasks) {
+				task.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Visits the children of {@code node} from {@code start} (inclusive) to
+	 * {@code stop} (exclusive), and combines their results starting with the
+	 * result of the first child.
+	 */
+	protected Result visitChildren(@NotNull RuleNode node, int start, int stop) {
+		Result result = node.getChild(start).accept(this);
+		for (int i = start + 1; i < stop; i++) {
+			result = aggregateResult(result, node.getChild(i).accept(this));
+		}
+
+		return result;
+	}
+
+	@NotNull
+	private List<FutureTask<Result>> createTasks(@NotNull final RuleNode node) {
+		boolean forkRule = isForkRule(node);
+		List<FutureTask<Result>> tasks = new ArrayList<FutureTask<Result>>();
+		int n = node.getChildCount();
+		int start = 0;
+		while (start < n) {
+			int stop = start;
+			int size = 0;
+			while (stop < n) {
+				ParseTree child = node.getChild(stop++);
+				size += size(child);
+				if (forkRule ? child instanceof RuleNode : size >= minForkSize) {
+					break;
+				}
+			}
+
+			final int groupStart = start;
+			final int groupStop = stop;
+			tasks.add(new FutureTask<Result>(new Callable<Result>() {
+				@Override
+				public Result call() {
+					return visitChildren(node, groupStart, groupStop);
+				}
+			}));
+
+			start = stop;
+		}
+
+		return tasks;
+	}
+
+	private boolean isForkRule(@NotNull RuleNode node) {
+		int ruleIndex = node.getRuleContext().getRuleIndex();
+		return ruleIndex >= 0 && forkRules.get(ruleIndex);
+	}
+
+	private static int size(@NotNull ParseTree tree) {
+		return tree.getSourceInterval().length();
+	}
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.analysis;
+
+import org.antlr.v4.runtime.KeywordTable;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.AbstractPredicateTransition;
+import org.antlr.v4.runtime.atn.ActionTransition;
+import org.antlr.v4.runtime.atn.AtomTransition;
+import org.antlr.v4.runtime.atn.EpsilonTransition;
+import org.antlr.v4.runtime.atn.NotSetTransition;
+import org.antlr.v4.runtime.atn.RangeTransition;
+import org.antlr.v4.runtime.atn.RuleStopState;
+import org.antlr.v4.runtime.atn.RuleTransition;
+import org.antlr.v4.runtime.atn.SetTransition;
+import org.antlr.v4.runtime.atn.Transition;
+import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+import org.antlr.v4.tool.Rule;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the keyword rules of a lexer mode which can be recognized by an
+ * identifier rule followed by a {@link KeywordTable} lookup.
+ *
+ * <p>A keyword rule is a rule whose only alternative is a string literal,
+ * without actions or lexer commands. The keyword rule can be removed from the
+ * mode if the first other rule of the mode which matches the literal is the
+ * identifier rule, and the keyword rule precedes it. Any input for which the
+ * keyword rule produced a token then produces an identifier token with the
+ * same text, since the longest match and the rule order are unchanged for
+ * the remaining rules. The identifier rule must not contain actions, lexer
+ * commands or semantic predicates, in the rule itself or in the fragment
+ * rules it references.</p>
+ *
+ * <p>The analysis is conservative. Semantic predicates in other rules are
+ * assumed to succeed, so a keyword which such a rule might match is kept in
+ * the ATN.</p>
+ */
+public class KeywordTableAnalyzer {
+	/** The maximum depth of rule invocations followed without consuming input. */
+	private static final int MAX_RULE_DEPTH = 64;
+
+	@NotNull
+	public final ATN atn;
+
+	private final Map<Rule, Boolean> sideEffects = new HashMap<Rule, Boolean>();
+
+	public KeywordTableAnalyzer(@NotNull ATN atn) {
+		this.atn = atn;
+	}
+
+	/**
+	 * Finds the keyword rules of a mode.
+	 *
+	 * @param rules the non-fragment rules of the mode, in grammar order
+	 * @return the keywords and their identifier rule, or {@code null} if no
+	 * keyword rule of the mode can be removed
+	 */
+	@Nullable
+	public Result analyze(@NotNull List<Rule> rules) {
+		Map<Rule, String> literals = new LinkedHashMap<Rule, String>();
+		for (Rule rule : rules) {
+			String literal = getLiteral(rule);
+			if (literal != null) {
+				literals.put(rule, literal);
+			}
+		}
+
+		Map<Rule, Map<Rule, String>> keywordsByIdentifier = new LinkedHashMap<Rule, Map<Rule, String>>();
+		for (Map.Entry<Rule, String> entry : literals.entrySet()) {
+			Rule keywordRule = entry.getKey();
+			String literal = entry.getValue();
+			Rule first = null;
+			for (Rule rule : rules) {
+				if (rule != keywordRule && accepts(rule, literal)) {
+					first = rule;
+					break;
+				}
+			}
+
+			if (first == null
+				|| literals.containsKey(first)
+				|| rules.indexOf(first) < rules.indexOf(keywordRule)
+				|| hasSideEffects(first))
+			{
+				continue;
+			}
+
+			Map<Rule, String> keywords = keywordsByIdentifier.get(first);
+			if (keywords == null) {
+				keywords = new LinkedHashMap<Rule, String>();
+				keywordsByIdentifier.put(first, keywords);
+			}
+
+			keywords.put(keywordRule, literal);
+		}
+
+		Result best = null;
+		for (Map.Entry<Rule, Map<Rule, String>> entry : keywordsByIdentifier.entrySet()) {
+			if (best == null || entry.getValue().size() > best.keywords.size()) {
+				best = new Result(entry.getKey(), entry.getValue());
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Gets the text matched by {@code rule} if the rule matches a single
+	 * string of characters in the Basic Multilingual Plane, without actions,
+	 * commands or predicates; otherwise, {@code null}.
+	 */
+	@Nullable
+	protected String getLiteral(@NotNull Rule rule) {
+		StringBuilder text = new StringBuilder();
+		ATNState state = atn.ruleToStartState[rule.index];
+		for (int steps = 0; steps <= atn.states.size(); steps++) {
+			if (state instanceof RuleStopState) {
+				return text.length() > 0 ? text.toString() : null;
+			}
+
+			if (state.getNumberOfTransitions() != 1) {
+				return null;
+			}
+
+			Transition transition = state.transition(0);
+			if (transition instanceof AtomTransition
+				|| transition instanceof RangeTransition
+				|| (transition instanceof SetTransition && !(transition instanceof NotSetTransition)))
+			{
+				IntervalSet label = transition.label();
+				if (label == null || label.size() != 1 || label.getMinElement() < 0 || label.getMinElement() > Character.MAX_VALUE) {
+					return null;
+				}
+
+				text.append((char)label.getMinElement());
+			}
+			else if (!(transition instanceof EpsilonTransition)) {
+				return null;
+			}
+
+			state = transition.target;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Determines whether {@code rule} matches exactly {@code text}. Semantic
+	 * predicates are assumed to succeed.
+	 */
+	protected boolean accepts(@NotNull Rule rule, @NotNull String text) {
+		Set<Configuration> configs = new LinkedHashSet<Configuration>();
+		closure(atn.ruleToStartState[rule.index], null, 0, configs);
+		for (int i = 0; i < text.length() && !configs.isEmpty(); i++) {
+			Set<Configuration> next = new LinkedHashSet<Configuration>();
+			for (Configuration config : configs) {
+				for (int j = 0; j < config.state.getNumberOfTransitions(); j++) {
+					Transition transition = config.state.transition(j);
+					if (!transition.isEpsilon() && transition.matches(text.charAt(i), Lexer.MIN_CHAR_VALUE, Lexer.MAX_CHAR_VALUE)) {
+						closure(transition.target, config.stack, 0, next);
+					}
+				}
+			}
+
+			configs = next;
+		}
+
+		for (Configuration config : configs) {
+			if (config.state instanceof RuleStopState && config.stack == null) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private void closure(@NotNull ATNState state, @Nullable ReturnStack stack, int depth, @NotNull Set<Configuration> configs) {
+		if (!configs.add(new Configuration(state, stack))) {
+			return;
+		}
+
+		if (state instanceof RuleStopState) {
+			if (stack != null) {
+				closure(stack.followState, stack.parent, depth, configs);
+			}
+
+			return;
+		}
+
+		for (int i = 0; i < state.getNumberOfTransitions(); i++) {
+			Transition transition = state.transition(i);
+			if (transition instanceof RuleTransition) {
+				if (depth < MAX_RULE_DEPTH) {
+					ReturnStack pushed = new ReturnStack(((RuleTransition)transition).followState, stack);
+					closure(transition.target, pushed, depth + 1, configs);
+				}
+			}
+			else if (transition.isEpsilon()) {
+				closure(transition.target, stack, depth, configs);
+			}
+		}
+	}
+
+	/**
+	 * Determines whether {@code rule}, or a rule it references, contains an
+	 * action, a lexer command or a semantic predicate.
+	 */
+	protected boolean hasSideEffects(@NotNull Rule rule) {
+		Boolean result = sideEffects.get(rule);
+		if (result == null) {
+			result = computeSideEffects(rule);
+			sideEffects.put(rule, result);
+		}
+
+		return result;
+	}
+
+	private boolean computeSideEffects(@NotNull Rule rule) {
+		Set<ATNState> visited = new HashSet<ATNState>();
+		Deque<ATNState> work = new ArrayDeque<ATNState>();
+		work.add(atn.ruleToStartState[rule.index]);
+		while (!work.isEmpty()) {
+			ATNState state = work.pop();
+			if (!visited.add(state) || state instanceof RuleStopState) {
+				continue;
+			}
+
+			for (int i = 0; i < state.getNumberOfTransitions(); i++) {
+				Transition transition = state.transition(i);
+				if (transition instanceof ActionTransition || transition instanceof AbstractPredicateTransition) {
+					return true;
+				}
+
+				if (transition instanceof RuleTransition) {
+					work.push(((RuleTransition)transition).followState);
+				}
+
+				work.push(transition.target);
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * The keyword rules of a mode which may be recognized by an identifier
+	 * rule.
+	 */
+	public static final class Result {
+		@NotNull
+		public final Rule identifierRule;
+		/** The keyword rules and their literals, in grammar order. */
+		@NotNull
+		public final Map<Rule, String> keywords;
+
+		public Result(@NotNull Rule identifierRule, @NotNull Map<Rule, String> keywords) {
+			this.identifierRule = identifierRule;
+			this.keywords = keywords;
+		}
+
+		@NotNull
+		public KeywordTable createKeywordTable(@NotNull ATN atn) {
+			String[] literals = new String[keywords.size()];
+			int[] types = new int[keywords.size()];
+			int i = 0;
+			for (Map.Entry<Rule, String> entry : keywords.entrySet()) {
+				literals[i] = entry.getValue();
+				types[i] = atn.ruleToTokenType[entry.getKey().index];
+				i++;
+			}
+
+			return new KeywordTable(atn.ruleToTokenType[identifierRule.index], literals, types);
+		}
+	}
+
+	private static final class ReturnStack {
+		@NotNull
+		public final ATNState followState;
+		@Nullable
+		public final ReturnStack parent;
+
+		public ReturnStack(@NotNull ATNState followState, @Nullable ReturnStack parent) {
+			this.followState = followState;
+			this.parent = parent;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+
+			if (!(obj instanceof ReturnStack)) {
+				return false;
+			}
+
+			ReturnStack other = (ReturnStack)obj;
+			return followState == other.followState
+				&& (parent == null ? other.parent == null : parent.equals(other.parent));
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * followState.stateNumber + (parent != null ? parent.hashCode() : 0);
+		}
+	}
+
+	private static final class Configuration {
+		@NotNull
+		public final ATNState state;
+		@Nullable
+		public final ReturnStack stack;
+
+		public Configuration(@NotNull ATNState state, @Nullable ReturnStack stack) {
+			this.state = state;
+			this.stack = stack;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+
+			if (!(obj instanceof Configuration)) {
+				return false;
+			}
+
+			Configuration other = (Configuration)obj;
+			return state == other.state
+				&& (stack == null ? other.stack == null : stack.equals(other.stack));
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * state.stateNumber + (stack != null ? stack.hashCode() : 0);
+		}
+	}
+}
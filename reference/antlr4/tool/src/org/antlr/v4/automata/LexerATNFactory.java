@@ -8,11 +8,13 @@ package org.antlr.v4.automata;
 
 import org.antlr.runtime.CommonToken;
 import org.antlr.runtime.Token;
+import org.antlr.v4.analysis.KeywordTableAnalyzer;
 import org.antlr.v4.codegen.CodeGenerator;
 import org.antlr.v4.codegen.Target;
 import org.antlr.v4.misc.CharSupport;
 import org.antlr.v4.parse.ANTLRParser;
 import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.KeywordTable;
 import org.antlr.v4.runtime.Lexer;
 import org.antlr.v4.runtime.atn.ATN;
 import org.antlr.v4.runtime.atn.ATNState;
@@ -49,6 +51,7 @@ import org.stringtemplate.v4.STGroup;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -57,6 +60,12 @@ public class LexerATNFactory extends ParserATNFactory {
 	@Nullable
 	public STGroup codegenTemplates;
 
+	/**
+	 * {@code true} if keyword rules found by {@link KeywordTableAnalyzer} are
+	 * recognized with a {@link KeywordTable} instead of the ATN.
+	 */
+	public final boolean useKeywordTables;
+
 	/**
 	 * Provides a map of names of predefined constants which are likely to
 	 * appear as the argument for lexer commands. These names would be resolved
@@ -94,6 +103,9 @@ public class LexerATNFactory extends ParserATNFactory {
 		CodeGenerator gen = new CodeGenerator(g.tool, null, language);
 		Target target = gen.getTarget();
 		codegenTemplates = target != null ? target.getTemplates() : null;
+		useKeywordTables = target != null
+			&& target.supportsKeywordTables()
+			&& "true".equals(g.getOptionString("keywordTable"));
 	}
 
 	public static Set<String> getCommonConstants() {
@@ -124,12 +136,39 @@ public class LexerATNFactory extends ParserATNFactory {
 			atn.lexerActions[entry.getKey()] = entry.getValue();
 		}
 
+		// FIND KEYWORDS MATCHED BY IDENTIFIER RULES
+		Set<Rule> keywordRules = new HashSet<Rule>();
+		((LexerGrammar)g).keywordTables = null;
+		if ( useKeywordTables ) {
+			KeywordTable[] keywordTables = new KeywordTable[modes.size()];
+			KeywordTableAnalyzer analyzer = new KeywordTableAnalyzer(atn);
+			int mode = 0;
+			for (String modeName : modes) {
+				List<Rule> rules = new ArrayList<Rule>();
+				for (Rule r : ((LexerGrammar)g).modes.get(modeName)) {
+					if ( !r.isFragment() ) {
+						rules.add(r);
+					}
+				}
+
+				KeywordTableAnalyzer.Result result = analyzer.analyze(rules);
+				if ( result!=null ) {
+					keywordTables[mode] = result.createKeywordTable(atn);
+					keywordRules.addAll(result.keywords.keySet());
+				}
+
+				mode++;
+			}
+
+			((LexerGrammar)g).keywordTables = keywordTables;
+		}
+
 		// LINK MODE START STATE TO EACH TOKEN RULE
 		for (String modeName : modes) {
 			List<Rule> rules = ((LexerGrammar)g).modes.get(modeName);
 			TokensStartState startState = atn.modeNameToStartState.get(modeName);
 			for (Rule r : rules) {
-				if ( !r.isFragment() ) {
+				if ( !r.isFragment() && !keywordRules.contains(r) ) {
 					RuleStartState s = atn.ruleToStartState[r.index];
 					epsilon(startState, s);
 				}
@@ -411,6 +411,17 @@ public abstract class Target {
 		return true;
 	}
 
+	/**
+	 * Gets whether the target runtime supports
+	 * {@link org.antlr.v4.runtime.KeywordTable}, so keyword rules may be
+	 * removed from the lexer ATN when the {@code keywordTable} option is set.
+	 *
+	 * @see org.antlr.v4.analysis.KeywordTableAnalyzer
+	 */
+	public boolean supportsKeywordTables() {
+		return false;
+	}
+
 	/** @since 4.6 */
 	public boolean needsHeader() { return false; }; // Override in targets that need header files.
 }
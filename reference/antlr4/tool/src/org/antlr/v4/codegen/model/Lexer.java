@@ -7,18 +7,24 @@
 package org.antlr.v4.codegen.model;
 
 import org.antlr.v4.codegen.OutputModelFactory;
+import org.antlr.v4.codegen.Target;
+import org.antlr.v4.runtime.KeywordTable;
 import org.antlr.v4.tool.Grammar;
 import org.antlr.v4.tool.LexerGrammar;
 import org.antlr.v4.tool.Rule;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 public class Lexer extends Recognizer {
 	public Map<String,Integer> channels;
 	public LexerFile file;
 	public Collection<String> modes;
+	/** The keyword table of each mode, or {@code null} if none are generated. */
+	public List<KeywordTableModel> keywordTables;
 
 	@ModelElement public LinkedHashMap<Rule, RuleActionFunction> actionFuncs =
 		new LinkedHashMap<Rule, RuleActionFunction>();
@@ -30,5 +36,30 @@ public class Lexer extends Recognizer {
 		Grammar g = factory.getGrammar();
 		channels = new LinkedHashMap<String, Integer>(g.channelNameToValueMap);
 		modes = ((LexerGrammar)g).modes.keySet();
+
+		KeywordTable[] tables = ((LexerGrammar)g).keywordTables;
+		if (tables != null) {
+			keywordTables = new ArrayList<KeywordTableModel>();
+			for (KeywordTable table : tables) {
+				keywordTables.add(table != null ? new KeywordTableModel(factory.getTarget(), table) : null);
+			}
+		}
+	}
+
+	public static class KeywordTableModel {
+		public final int identifierType;
+		public final List<String> keywords = new ArrayList<String>();
+		public final List<Integer> types = new ArrayList<Integer>();
+
+		public KeywordTableModel(Target target, KeywordTable table) {
+			identifierType = table.getIdentifierType();
+			for (String keyword : table.getKeywords()) {
+				keywords.add(target.getTargetStringLiteralFromString(keyword, true));
+			}
+
+			for (int type : table.getTypes()) {
+				types.add(type);
+			}
+		}
 	}
 }
@@ -167,6 +167,11 @@ public class JavaTarget extends Target {
 		return 65535 / 3;
 	}
 
+	@Override
+	public boolean supportsKeywordTables() {
+		return true;
+	}
+
 	@Override
 	protected boolean visibleGrammarSymbolCausesIssueInGeneratedCode(GrammarAST idNode) {
 		return getBadWords().contains(idNode.getText());
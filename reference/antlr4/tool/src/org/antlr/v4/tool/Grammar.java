@@ -87,6 +87,7 @@ public class Grammar implements AttributeResolver {
 		parserOptions.add("tokenVocab");
 		parserOptions.add("language");
 		parserOptions.add("exportMacro");
+		parserOptions.add("keywordTable");
 	}
 
 	public static final Set<String> lexerOptions = parserOptions;
@@ -1352,7 +1353,7 @@ public class Grammar implements AttributeResolver {
 
 		char[] serializedAtn = ATNSerializer.getSerializedAsChars(atn, Arrays.asList(getRuleNames()));
 		ATN deserialized = new ATNDeserializer().deserialize(serializedAtn);
-		return new LexerInterpreter(fileName, getVocabulary(), Arrays.asList(getRuleNames()), ((LexerGrammar)this).modes.keySet(), deserialized, input);
+		return new LexerInterpreter(fileName, getVocabulary(), Arrays.asList(getRuleNames()), ((LexerGrammar)this).modes.keySet(), deserialized, ((LexerGrammar)this).keywordTables, input);
 	}
 
 	/** @since 4.5.1 */
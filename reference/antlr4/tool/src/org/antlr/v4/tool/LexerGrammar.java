@@ -8,6 +8,7 @@ package org.antlr.v4.tool;
 
 import org.antlr.runtime.RecognitionException;
 import org.antlr.v4.Tool;
+import org.antlr.v4.runtime.KeywordTable;
 import org.antlr.v4.runtime.misc.MultiMap;
 import org.antlr.v4.tool.ast.GrammarRootAST;
 
@@ -21,6 +22,13 @@ public class LexerGrammar extends Grammar {
 	/** DEFAULT_MODE rules are added first due to grammar syntax order */
 	public MultiMap<String, Rule> modes;
 
+	/**
+	 * The keyword table of each mode when the {@code keywordTable} option is
+	 * set and the target supports it; otherwise, {@code null}. An element is
+	 * {@code null} if its mode has no keyword table.
+	 */
+	public KeywordTable[] keywordTables;
+
 	public LexerGrammar(Tool tool, GrammarRootAST ast) {
 		super(tool, ast);
 	}
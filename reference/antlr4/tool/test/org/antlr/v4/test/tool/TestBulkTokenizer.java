@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BulkTokenizer;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenBuffer;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestBulkTokenizer extends BaseTest {
+	private static final String GRAMMAR =
+		"lexer grammar L;\n" +
+		"ID : [a-z]+ ;\n" +
+		"INT : [0-9]+ ;\n" +
+		"COMMENT : '#' ~'\\n'* -> channel(HIDDEN) ;\n" +
+		"WS : [ \\n]+ -> skip ;\n" +
+		"STR : '\"' -> pushMode(S) ;\n" +
+		"mode S;\n" +
+		"S_END : '\"' -> popMode ;\n" +
+		"S_TEXT : ~'\"'+ ;\n";
+
+	@Test public void testMatchesLexer() throws Exception {
+		LexerGrammar g = new LexerGrammar(GRAMMAR);
+		String input = "abc 12 # note\n\"x y\" de\u00E9f\n  34 \"\"";
+
+		LexerInterpreter lexEngine = g.createLexerInterpreter(new ANTLRInputStream(input));
+		CommonTokenStream expected = new CommonTokenStream(lexEngine);
+		expected.fill();
+
+		BulkTokenizer tokenizer = new BulkTokenizer(g.createLexerInterpreter(new ANTLRInputStream("")));
+		TokenBuffer tokens = new TokenBuffer(2);
+		for (int pass = 0; pass < 2; pass++) {
+			tokenizer.tokenize(input, tokens);
+			assertSameTokens(expected.getTokens(), tokens);
+		}
+
+		// the second pass runs from the DFA built by the first
+		assertTrue(tokenizer.getDfaTokenCount() > 0);
+	}
+
+	@Test public void testKeywordTable() throws Exception {
+		String rules =
+			"IF : 'if' ;\n" +
+			"ELSE : 'else' ;\n" +
+			"ID : [a-z]+ ;\n" +
+			"WS : [ \\n]+ -> skip ;\n" +
+			"OPEN : '<' -> pushMode(TAG) ;\n" +
+			"mode TAG;\n" +
+			"CLOSE : '>' -> popMode ;\n" +
+			"NAME_KW : 'name' ;\n" +
+			"NAME : [a-z]+ ;\n";
+		LexerGrammar plain = new LexerGrammar("lexer grammar L;\n" + rules);
+		LexerGrammar g = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"options { keywordTable=true; }\n" +
+			rules);
+		String input = "if iff else\nelsewhere <name names> if";
+
+		CommonTokenStream expected = new CommonTokenStream(plain.createLexerInterpreter(new ANTLRInputStream(input)));
+		expected.fill();
+
+		BulkTokenizer tokenizer = new BulkTokenizer(g.createLexerInterpreter(new ANTLRInputStream("")));
+		TokenBuffer tokens = new TokenBuffer(2);
+		for (int pass = 0; pass < 2; pass++) {
+			tokenizer.tokenize(input, tokens);
+			assertSameTokens(expected.getTokens(), tokens);
+		}
+
+		assertTrue(tokenizer.getDfaTokenCount() > 0);
+	}
+
+	private static void assertSameTokens(List<Token> expected, TokenBuffer actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Token t = expected.get(i);
+			assertEquals(t.getType(), actual.getType(i));
+			assertEquals(t.getChannel(), actual.getChannel(i));
+			assertEquals(t.getStartIndex(), actual.getStartIndex(i));
+			assertEquals(t.getStopIndex(), actual.getStopIndex(i));
+			assertEquals(t.getText(), actual.getText(i));
+			assertEquals(t.getLine(), actual.getLine(i));
+			assertEquals(t.getCharPositionInLine(), actual.getCharPositionInLine(i));
+		}
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CachingTokenSource;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.LruTokenCache;
+import org.antlr.v4.runtime.MappedFileTokenCache;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.TokenCache;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestCachingTokenSource extends BaseTest {
+	private static final String GRAMMAR =
+		"lexer grammar L;\n" +
+		"ID : [a-z]+ ;\n" +
+		"INT : [0-9]+ ;\n" +
+		"COMMENT : '#' ~'\\n'* -> channel(HIDDEN) ;\n" +
+		"WS : [ \\n]+ -> skip ;\n";
+
+	@Test public void testReplayFromMemory() throws Exception {
+		LexerGrammar g = new LexerGrammar(GRAMMAR);
+		LruTokenCache cache = new LruTokenCache(1024);
+		String input = "abc 12 # note\n  de 345\n";
+
+		CachingTokenSource first = new CachingTokenSource(g.createLexerInterpreter(new ANTLRInputStream(input)), cache);
+		String expected = tokenize(first);
+		assertFalse(first.isReplaying());
+		assertTrue(cache.getSize() > 0);
+
+		CachingTokenSource second = new CachingTokenSource(g.createLexerInterpreter(new ANTLRInputStream(input)), cache);
+		assertEquals(expected, tokenize(second));
+		assertTrue(second.isReplaying());
+
+		// different content misses
+		CachingTokenSource third = new CachingTokenSource(g.createLexerInterpreter(new ANTLRInputStream(input + "x")), cache);
+		tokenize(third);
+		assertFalse(third.isReplaying());
+	}
+
+	@Test public void testReplayFromFile() throws Exception {
+		LexerGrammar g = new LexerGrammar(GRAMMAR);
+		String input = "abc 12 # note\n  de 345\n";
+		TokenCache cache = new MappedFileTokenCache(new File(tmpdir, "tokens"), 1024);
+
+		String expected = tokenize(new CachingTokenSource(g.createLexerInterpreter(new ANTLRInputStream(input)), cache));
+		CachingTokenSource second = new CachingTokenSource(g.createLexerInterpreter(new ANTLRInputStream(input)), cache);
+		assertEquals(expected, tokenize(second));
+		assertTrue(second.isReplaying());
+	}
+
+	@Test public void testSizeBound() throws Exception {
+		LexerGrammar g = new LexerGrammar(GRAMMAR);
+		LruTokenCache cache = new LruTokenCache(40);
+		tokenize(new CachingTokenSource(g.createLexerInterpreter(new ANTLRInputStream("a b c d e")), cache));
+		tokenize(new CachingTokenSource(g.createLexerInterpreter(new ANTLRInputStream("f g h i j")), cache));
+		assertTrue(cache.getSize() <= 40);
+
+		CachingTokenSource first = new CachingTokenSource(g.createLexerInterpreter(new ANTLRInputStream("a b c d e")), cache);
+		tokenize(first);
+		assertFalse(first.isReplaying());
+	}
+
+	@Test public void testSyntaxErrorsNotCached() throws Exception {
+		LexerGrammar g = new LexerGrammar(GRAMMAR);
+		LruTokenCache cache = new LruTokenCache(1024);
+		String input = "abc ! 12";
+		final int[] errors = new int[1];
+		ANTLRErrorListener<Integer> listener = new ANTLRErrorListener<Integer>() {
+			@Override
+			public <T extends Integer> void syntaxError(Recognizer<T, ?> recognizer, T offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+				errors[0]++;
+			}
+		};
+
+		for (int i = 0; i < 2; i++) {
+			LexerInterpreter lexer = g.createLexerInterpreter(new ANTLRInputStream(input));
+			lexer.removeErrorListeners();
+			lexer.addErrorListener(listener);
+			CachingTokenSource source = new CachingTokenSource(lexer, cache);
+			tokenize(source);
+			assertFalse(source.isReplaying());
+			assertEquals(i + 1, errors[0]);
+		}
+
+		assertEquals(0, cache.getSize());
+	}
+
+	@Test public void testTruncatedFile() throws Exception {
+		LexerGrammar g = new LexerGrammar(GRAMMAR);
+		String input = "abc 12 # note\n  de 345\n";
+		File directory = new File(tmpdir, "truncated");
+		TokenCache cache = new MappedFileTokenCache(directory, 1024);
+
+		String expected = tokenize(new CachingTokenSource(g.createLexerInterpreter(new ANTLRInputStream(input)), cache));
+		File[] files = directory.listFiles();
+		assertEquals(1, files.length);
+		RandomAccessFile file = new RandomAccessFile(files[0], "rw");
+		try {
+			file.setLength(file.length() - 3);
+		}
+		finally {
+			file.close();
+		}
+
+		CachingTokenSource second = new CachingTokenSource(g.createLexerInterpreter(new ANTLRInputStream(input)), cache);
+		assertEquals(expected, tokenize(second));
+		assertFalse(second.isReplaying());
+
+		// the entry was written again by the second source
+		CachingTokenSource third = new CachingTokenSource(g.createLexerInterpreter(new ANTLRInputStream(input)), cache);
+		assertEquals(expected, tokenize(third));
+		assertTrue(third.isReplaying());
+	}
+
+	@Test public void testIncompleteEntry() throws Exception {
+		LexerGrammar g = new LexerGrammar(GRAMMAR);
+		String input = "abc 12 # note\n  de 345\n";
+		final LruTokenCache entries = new LruTokenCache(1024);
+		String expected = tokenize(new CachingTokenSource(g.createLexerInterpreter(new ANTLRInputStream(input)), entries));
+
+		// a cache which drops the end of each entry
+		TokenCache cache = new TokenCache() {
+			@Override
+			public ByteBuffer get(String key) {
+				ByteBuffer data = entries.get(key);
+				if (data != null) {
+					data.limit(data.limit() - 2);
+				}
+
+				return data;
+			}
+
+			@Override
+			public void put(String key, byte[] data) {
+			}
+		};
+
+		CachingTokenSource second = new CachingTokenSource(g.createLexerInterpreter(new ANTLRInputStream(input)), cache);
+		assertEquals(expected, tokenize(second));
+		assertFalse(second.isReplaying());
+	}
+
+	private static String tokenize(CachingTokenSource source) {
+		CommonTokenStream tokens = new CommonTokenStream(source);
+		tokens.fill();
+		return tokens.getTokens().toString();
+	}
+}
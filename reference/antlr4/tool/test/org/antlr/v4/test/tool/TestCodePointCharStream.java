@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CodePointCharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestCodePointCharStream extends BaseTest {
+	@Test public void testEmpty() throws Exception {
+		CharStream input = CodePointCharStream.fromString("");
+		assertEquals(0, input.size());
+		assertEquals(IntStream.EOF, input.LA(1));
+		assertEquals("", input.getText(Interval.of(0, 0)));
+	}
+
+	@Test public void testSupplementaryCodePoints() throws Exception {
+		String text = "a\u00E9\u4E2D\uD83D\uDE00z";
+		CharStream input = CodePointCharStream.fromString(text);
+		assertEquals(5, input.size());
+		assertEquals(0x1F600, input.LA(4));
+		input.seek(3);
+		assertEquals(0x4E2D, input.LA(-1));
+		assertEquals("\u4E2D\uD83D\uDE00", input.getText(Interval.of(2, 3)));
+		assertEquals(text, input.toString());
+	}
+
+	@Test public void testUTF8() throws Exception {
+		String text = "x\u00FF\u0100\uD83D\uDE00";
+		CharStream input = CodePointCharStream.fromUTF8(text.getBytes("UTF-8"), "T.txt");
+		assertEquals(4, input.size());
+		assertEquals(0xFF, input.LA(2));
+		assertEquals(0x100, input.LA(3));
+		assertEquals(0x1F600, input.LA(4));
+		assertEquals(text, input.toString());
+		assertEquals("T.txt", input.getSourceName());
+	}
+
+	@Test public void testMalformedUTF8() throws Exception {
+		// truncated 3-byte sequence, invalid lead byte, overlong encoding
+		byte[] bytes = { 'a', (byte)0xE4, (byte)0xB8, 'b', (byte)0xFF, (byte)0xC0, (byte)0x80 };
+		CharStream input = CodePointCharStream.fromUTF8(bytes, null);
+		assertEquals(new String(bytes, "UTF-8"), input.toString());
+		assertEquals(0xFFFD, input.LA(2));
+		assertEquals('b', input.LA(3));
+	}
+
+	@Test public void testLexerMatchesCodePoints() throws Exception {
+		LexerGrammar g = new LexerGrammar(
+			"lexer grammar t;\n" +
+			"A : 'a' ;\n" +
+			"NOT_A : ~'a' ;\n" +
+			"ANY : . ;\n");
+		CharStream input = CodePointCharStream.fromString("a\uD83D\uDE00a");
+		LexerInterpreter lexEngine = g.createLexerInterpreter(input);
+		Token t = lexEngine.nextToken();
+		assertEquals(g.getTokenType("A"), t.getType());
+		t = lexEngine.nextToken();
+		assertEquals(g.getTokenType("NOT_A"), t.getType());
+		assertEquals("\uD83D\uDE00", t.getText());
+		assertEquals(1, t.getStartIndex());
+		assertEquals(1, t.getStopIndex());
+		t = lexEngine.nextToken();
+		assertEquals(2, t.getCharPositionInLine());
+		assertEquals(Token.EOF, lexEngine.nextToken().getType());
+	}
+}
@@ -12,6 +12,7 @@ import org.antlr.v4.runtime.CommonTokenFactory;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.IntStream;
 import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.ListTokenSource;
 import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.TokenFactory;
 import org.antlr.v4.runtime.TokenSource;
@@ -19,6 +20,9 @@ import org.antlr.v4.runtime.TokenStream;
 import org.antlr.v4.runtime.WritableToken;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 public class TestCommonTokenStream extends TestBufferedTokenStream {
@@ -189,6 +193,43 @@ public class TestCommonTokenStream extends TestBufferedTokenStream {
 		assertEquals(null, tokens.getHiddenTokensToRight(9));
 	}
 
+	@Test public void testSeekOverOffChannel() throws Exception {
+		// a b c d separated by two hidden tokens each
+		List<Token> source = new ArrayList<Token>();
+		for (char c = 'a'; c <= 'd'; c++) {
+			source.add(new CommonToken(1, String.valueOf(c)));
+			for (int i = 0; i < 2; i++) {
+				CommonToken hidden = new CommonToken(2, "#");
+				hidden.setChannel(Lexer.HIDDEN);
+				source.add(hidden);
+			}
+		}
+
+		CommonTokenStream tokens = new CommonTokenStream(new ListTokenSource(source));
+		assertEquals("a", tokens.LT(1).getText());
+		assertEquals("d", tokens.LT(4).getText());
+		assertEquals(Token.EOF, tokens.LA(5));
+		assertEquals(Token.EOF, tokens.LA(50));
+
+		// seeking to an off-channel token moves to the next token on channel
+		tokens.seek(4);
+		assertEquals(6, tokens.index());
+		assertEquals("c", tokens.LT(1).getText());
+		assertEquals("b", tokens.LT(-1).getText());
+		assertEquals("a", tokens.LT(-2).getText());
+		assertEquals(null, tokens.LT(-3));
+
+		tokens.consume();
+		assertEquals(9, tokens.index());
+		assertEquals("d", tokens.LT(1).getText());
+		tokens.consume();
+		assertEquals(Token.EOF, tokens.LA(1));
+
+		tokens.seek(1);
+		assertEquals(3, tokens.index());
+		assertEquals("b", tokens.LT(1).getText());
+	}
+
 	@Test
 	public void testSingleEOF() throws Exception {
 		TokenSource lexer = new TokenSource() {
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.KeywordTable;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestKeywordTable extends BaseTest {
+	private static final String RULES =
+		"IF : 'if' ;\n" +
+		"ELSE : 'else' ;\n" +
+		"END : 'end' -> channel(HIDDEN) ;\n" +
+		"ARROW : '->' ;\n" +
+		"ID : LETTER (LETTER | [0-9])* ;\n" +
+		"EACH : 'each' ;\n" +
+		"fragment LETTER : [a-z_] ;\n" +
+		"WS : [ \\n]+ -> skip ;\n";
+
+	@Test public void testKeywordsMatchedByIdentifier() throws Exception {
+		LexerGrammar g = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"options { keywordTable=true; }\n" +
+			RULES);
+		KeywordTable[] tables = g.keywordTables;
+		assertEquals(1, tables.length);
+		assertEquals(g.getTokenType("ID"), tables[0].getIdentifierType());
+		// END has a command, ARROW is not an identifier, EACH follows ID
+		assertArrayEquals(new String[] { "if", "else" }, tables[0].getKeywords());
+		assertArrayEquals(new int[] { g.getTokenType("IF"), g.getTokenType("ELSE") }, tables[0].getTypes());
+	}
+
+	@Test public void testSameTokens() throws Exception {
+		LexerGrammar plain = new LexerGrammar("lexer grammar L;\n" + RULES);
+		LexerGrammar keywords = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"options { keywordTable=true; }\n" +
+			RULES);
+		assertNull(plain.keywordTables);
+
+		String input = "if iff else elsewhere end each i e x_1 ->if else";
+		assertEquals(tokenize(plain, input), tokenize(keywords, input));
+		assertEquals(
+			"[IF, ID, ELSE, ID, END, ID, ID, ID, ID, ARROW, IF, ELSE, EOF]",
+			Arrays.toString(getTokenTypes(keywords, input)));
+	}
+
+	@Test public void testModes() throws Exception {
+		LexerGrammar g = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"options { keywordTable=true; }\n" +
+			"OPEN : '<' -> pushMode(TAG) ;\n" +
+			"TEXT : ~'<'+ ;\n" +
+			"mode TAG;\n" +
+			"CLOSE : '>' -> popMode ;\n" +
+			"NAME_KW : 'name' ;\n" +
+			"NAME : [a-z]+ ;\n" +
+			"SPACE : ' ' -> skip ;\n");
+		assertNull(g.keywordTables[0]);
+		assertArrayEquals(new String[] { "name" }, g.keywordTables[1].getKeywords());
+		assertEquals(
+			"[OPEN, NAME_KW, NAME, CLOSE, TEXT, EOF]",
+			Arrays.toString(getTokenTypes(g, "<name names>name")));
+	}
+
+	private static String tokenize(LexerGrammar g, String input) {
+		CommonTokenStream tokens = new CommonTokenStream(g.createLexerInterpreter(new ANTLRInputStream(input)));
+		tokens.fill();
+		return tokens.getTokens().toString();
+	}
+
+	private static String[] getTokenTypes(LexerGrammar g, String input) {
+		CommonTokenStream tokens = new CommonTokenStream(g.createLexerInterpreter(new ANTLRInputStream(input)));
+		tokens.fill();
+		String[] result = new String[tokens.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = g.getVocabulary().getSymbolicName(tokens.get(i).getType());
+		}
+
+		return result;
+	}
+}
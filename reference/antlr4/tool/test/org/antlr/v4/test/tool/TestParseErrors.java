@@ -6,7 +6,19 @@
 
 package org.antlr.v4.test.tool;
 
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.atn.ATN;
 import org.antlr.v4.runtime.atn.ATNSerializer;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.RuleTransition;
+import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -400,4 +412,92 @@ public class TestParseErrors extends BaseTest {
 		assertEquals("[@0,0:0='a',<3>,1:0]\n", found);
 		assertEquals("line 1:1 missing {'b', 'c'} at 'd'\n", this.stderrDuringParse);
 	}
+
+	@Test public void testCachedErrorRecoverySet() throws Exception {
+		LexerGrammar lg = createRecoveryLexerGrammar();
+		Grammar g = createRecoveryGrammar(lg);
+		ATN atn = g.createParserInterpreter(new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream("")))).getATN();
+		int statInvokingState = getInvokingState(atn, g.getRule("s").index, g.getRule("stat").index);
+		int exprInvokingState = getInvokingState(atn, g.getRule("stat").index, g.getRule("expr").index);
+
+		ParserRuleContext first = new ParserRuleContext(new ParserRuleContext(new ParserRuleContext(), statInvokingState), exprInvokingState);
+		ParserRuleContext second = new ParserRuleContext(new ParserRuleContext(new ParserRuleContext(), statInvokingState), exprInvokingState);
+		IntervalSet recoverySet = atn.getErrorRecoverySet(first);
+		assertEquals("{<EOF>, ID, ';'}", recoverySet.toString(g.getVocabulary()));
+		assertTrue(recoverySet.isReadonly());
+		assertSame(recoverySet, atn.getErrorRecoverySet(second));
+		assertSame(IntervalSet.EMPTY_SET, atn.getErrorRecoverySet(new ParserRuleContext()));
+	}
+
+	@Test public void testRecoveryBudget() throws Exception {
+		LexerGrammar lg = createRecoveryLexerGrammar();
+		Grammar g = createRecoveryGrammar(lg);
+		String input = "a = 1; b = ; c = ( 2 ; d = ) ; e = 3;";
+
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream(input))));
+		parser.removeErrorListeners();
+		parser.parse(g.getRule("s").index);
+		assertEquals(3, ((DefaultErrorStrategy)parser.getErrorHandler()).getRecoveryCount());
+
+		parser = g.createParserInterpreter(new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream(input))));
+		parser.removeErrorListeners();
+		DefaultErrorStrategy errorHandler = new DefaultErrorStrategy();
+		errorHandler.setMaxRecoveries(2);
+		parser.setErrorHandler(errorHandler);
+		try {
+			parser.parse(g.getRule("s").index);
+			fail("Expected the parse to be canceled.");
+		}
+		catch (ParseCancellationException ex) {
+			assertEquals(3, errorHandler.getRecoveryCount());
+		}
+	}
+
+	@Test public void testRecoveryCountedOncePerError() throws Exception {
+		LexerGrammar lg = createRecoveryLexerGrammar();
+		Grammar g = createRecoveryGrammar(lg);
+
+		// the missing ')' is seen by recoverInline, which throws, and then by
+		// recover; the missing ';' is not reported while recovering
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream("a = ( 2 b = 1;"))));
+		parser.removeErrorListeners();
+		parser.parse(g.getRule("s").index);
+		assertEquals(1, parser.getNumberOfSyntaxErrors());
+		assertEquals(1, ((DefaultErrorStrategy)parser.getErrorHandler()).getRecoveryCount());
+	}
+
+	private static LexerGrammar createRecoveryLexerGrammar() throws Exception {
+		return new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"EQ : '=' ;\n" +
+			"SEMI : ';' ;\n" +
+			"LP : '(' ;\n" +
+			"RP : ')' ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+	}
+
+	private static Grammar createRecoveryGrammar(LexerGrammar lg) throws Exception {
+		return new Grammar(
+			"parser grammar T;\n" +
+			"s : stat* EOF ;\n" +
+			"stat : ID '=' expr ';' ;\n" +
+			"expr : INT | '(' expr ')' ;\n",
+			lg);
+	}
+
+	private static int getInvokingState(ATN atn, int ruleIndex, int targetRuleIndex) {
+		for (ATNState state : atn.states) {
+			if (state.ruleIndex == ruleIndex
+				&& state.getNumberOfTransitions() == 1
+				&& state.transition(0) instanceof RuleTransition
+				&& state.transition(0).target.ruleIndex == targetRuleIndex)
+			{
+				return state.stateNumber;
+			}
+		}
+
+		throw new IllegalArgumentException("no invoking state");
+	}
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.InterpreterRuleContext;
+import org.antlr.v4.runtime.ParseTreeSerializer;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestParseTreeSerializer extends BaseTest {
+	private static final String LEXER =
+		"lexer grammar L;\n" +
+		"ID : [a-z]+ ;\n" +
+		"INT : [0-9]+ ;\n" +
+		"EQ : '=' ;\n" +
+		"PLUS : '+' ;\n" +
+		"SEMI : ';' ;\n" +
+		"COMMENT : '#' ~'\\n'* -> channel(HIDDEN) ;\n" +
+		"WS : [ \\n]+ -> skip ;\n";
+
+	private static final String PARSER =
+		"parser grammar T;\n" +
+		"s : stat* EOF ;\n" +
+		"stat : ID '=' e ';' ;\n" +
+		"e : e '+' e | ID | INT ;\n";
+
+	@Test public void testRoundTrip() throws Exception {
+		LexerGrammar lg = new LexerGrammar(LEXER);
+		Grammar g = new Grammar(PARSER, lg);
+		String input = "a = 1 + b; # note\nc = 2 + 3 + d;\n";
+
+		CharStream chars = new ANTLRInputStream(input);
+		CommonTokenStream tokens = new CommonTokenStream(lg.createLexerInterpreter(chars));
+		ParserInterpreter parser = g.createParserInterpreter(tokens);
+		ParserRuleContext tree = parser.parse(g.rules.get("s").index);
+
+		ParseTreeSerializer serializer = new ParseTreeSerializer(parser);
+		byte[] data = serializer.serialize(tree, tokens.getTokens());
+
+		ParseTreeSerializer.Result result = serializer.deserialize(ByteBuffer.wrap(data), new ANTLRInputStream(input));
+		ParserRuleContext restored = result.getTree();
+		assertEquals(tree.toStringTree(parser), restored.toStringTree(parser));
+		assertEquals(tokens.getTokens().toString(), result.getTokens().toString());
+		assertTrue(restored instanceof InterpreterRuleContext);
+		assertEquals(tree.getChild(1).getSourceInterval(), restored.getChild(1).getSourceInterval());
+		assertEquals(((ParserRuleContext)tree.getChild(1)).invokingState, ((ParserRuleContext)restored.getChild(1)).invokingState);
+		assertEquals("c=2+3+d;", result.createTokenStream().getText(restored.getChild(1).getSourceInterval()));
+	}
+
+	@Test public void testErrorNodes() throws Exception {
+		LexerGrammar lg = new LexerGrammar(LEXER);
+		Grammar g = new Grammar(PARSER, lg);
+		// a missing ';' is conjured up, and the extra '=' is an error node
+		String input = "a = 1 b = = 2;";
+
+		CommonTokenStream tokens = new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream(input)));
+		ParserInterpreter parser = g.createParserInterpreter(tokens);
+		parser.removeErrorListeners();
+		ParserRuleContext tree = parser.parse(g.rules.get("s").index);
+
+		ParseTreeSerializer serializer = new ParseTreeSerializer(parser);
+		byte[] data = serializer.serialize(tree, tokens.getTokens());
+		ParseTreeSerializer.Result result = serializer.deserialize(ByteBuffer.wrap(data), new ANTLRInputStream(input));
+		assertEquals(tree.toStringTree(parser), result.getTree().toStringTree(parser));
+	}
+
+	@Test public void testOtherGrammar() throws Exception {
+		LexerGrammar lg = new LexerGrammar(LEXER);
+		Grammar g = new Grammar(PARSER, lg);
+		Grammar other = new Grammar(PARSER + "f : ID ;\n", lg);
+		String input = "a = 1;";
+
+		CommonTokenStream tokens = new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream(input)));
+		ParserInterpreter parser = g.createParserInterpreter(tokens);
+		byte[] data = new ParseTreeSerializer(parser).serialize(parser.parse(g.rules.get("s").index), tokens.getTokens());
+
+		ParserInterpreter otherParser = other.createParserInterpreter(new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream(input))));
+		assertNull(new ParseTreeSerializer(otherParser).deserialize(ByteBuffer.wrap(data), new ANTLRInputStream(input)));
+	}
+}
@@ -7,15 +7,51 @@
 package org.antlr.v4.test.tool;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenFactory;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.InterpreterRuleContext;
 import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParallelSegmentParser;
+import org.antlr.v4.runtime.Parser;
 import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.StreamingParseListener;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.UnbufferedCharStream;
+import org.antlr.v4.runtime.UnbufferedTokenStream;
+import org.antlr.v4.runtime.atn.ConcurrentPredictionContextCache;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.misc.Func1;
+import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.runtime.tree.CompactParseTree;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.MultiParseTreeWalker;
+import org.antlr.v4.runtime.tree.ParallelParseTreeVisitor;
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.ParseTreeProperty;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.antlr.v4.runtime.tree.TerminalNodeImpl;
+import org.antlr.v4.runtime.tree.Trees;
 import org.antlr.v4.tool.Grammar;
 import org.antlr.v4.tool.LexerGrammar;
 import org.junit.Test;
 
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 
 public class TestParserInterpreter extends BaseTest {
@@ -323,6 +359,594 @@ public class TestParserInterpreter extends BaseTest {
 		testInterp(lg, g, "e", "a+a*a", "(e (e a) + (e (e a) * (e a)))");
 	}
 
+	/**
+	 * The decision in rule {@code a} has an SLL conflict which is resolved
+	 * incorrectly for the first alternative of {@code s}, so the first stage
+	 * of {@link Parser#parseTwoStage} fails and the second stage succeeds.
+	 */
+	@Test public void testTwoStageParsing() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"A : 'a' ;\n" +
+			"B : 'b' ;\n" +
+			"C : 'c' ;\n" +
+			"Z : 'z' ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : a B C\n" +
+			"  | Z a C\n" +
+			"  ;\n" +
+			"a : A B\n" +
+			"  | A\n" +
+			"  ;\n",
+			lg);
+
+		ParserInterpreter parser = testTwoStageInterp(lg, g, "s", "zabc", "(s z (a a b) c)");
+		assertEquals(1, parser.getTwoStageSllCount());
+		assertEquals(0, parser.getTwoStageFallbackCount());
+
+		parser = testTwoStageInterp(lg, g, "s", "abc", "(s (a a) b c)");
+		assertEquals(0, parser.getTwoStageSllCount());
+		assertEquals(1, parser.getTwoStageFallbackCount());
+		assertEquals(0, parser.getNumberOfSyntaxErrors());
+	}
+
+	@Test public void testStreamingRecords() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"A : 'a' ;\n" +
+			"SEMI : ';' ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"file : (record SEMI)* EOF ;\n" +
+			"record : A+ ;\n",
+			lg);
+
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new UnbufferedCharStream(new StringReader("aa;a;aaa;")));
+		lexEngine.setTokenFactory(new CommonTokenFactory(true));
+		final ParserInterpreter parser = g.createParserInterpreter(new UnbufferedTokenStream<Token>(lexEngine));
+		final List<String> records = new ArrayList<String>();
+		StreamingParseListener listener = new StreamingParseListener(g.rules.get("record").index, new StreamingParseListener.RecordHandler() {
+			@Override
+			public void handleRecord(ParserRuleContext record) {
+				records.add(record.toStringTree(parser));
+			}
+		});
+		parser.addParseListener(listener);
+
+		ParseTree t = parser.parse(g.rules.get("file").index);
+		assertEquals("[(record a a), (record a), (record a a a)]", records.toString());
+		assertEquals(3, listener.getRecordCount());
+		// only the tokens after the last record remain
+		assertEquals("(file ; <EOF>)", t.toStringTree(parser));
+	}
+
+	@Test public void testParallelSegments() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"EQ : '=' ;\n" +
+			"SEMI : ';' ;\n" +
+			"WS : [ \\n]+ -> channel(HIDDEN) ;\n");
+		final Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : ID EQ INT SEMI ;\n",
+			lg);
+
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new ANTLRInputStream("a=1; b=2;\nc=3; d=4;"));
+		CommonTokenStream tokens = new CommonTokenStream(lexEngine);
+		final int ruleIndex = g.rules.get("s").index;
+		ParallelSegmentParser<ParserInterpreter> parser = new ParallelSegmentParser<ParserInterpreter>(
+			new Func1<TokenStream, ParserInterpreter>() {
+				@Override
+				public ParserInterpreter eval(TokenStream input) {
+					return g.createParserInterpreter(input);
+				}
+			},
+			new Func1<ParserInterpreter, ParserRuleContext>() {
+				@Override
+				public ParserRuleContext eval(ParserInterpreter arg1) {
+					return arg1.parse(ruleIndex);
+				}
+			},
+			IntervalSet.of(lg.getTokenType("SEMI")));
+		parser.setMinSegmentSize(5);
+		assertEquals("[0..8, 9..18, 19..19]", parser.findSegments(tokens).toString());
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		ParserRuleContext root;
+		try {
+			root = parser.parse(tokens, executor);
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		List<String> ruleNames = Arrays.asList(g.getRuleNames());
+		List<String> trees = new ArrayList<String>();
+		for (int i = 0; i < root.getChildCount(); i++) {
+			assertSame(root, root.getChild(i).getParent());
+			trees.add(((ParserRuleContext)root.getChild(i)).toStringTree(ruleNames));
+		}
+
+		assertEquals("[(s a = 1 ;), (s b = 2 ;), (s c = 3 ;), (s d = 4 ;)]", trees.toString());
+		// token indexes are those of the original stream
+		assertEquals("15..18", root.getChild(3).getSourceInterval().toString());
+		assertEquals("0..18", root.getSourceInterval().toString());
+	}
+
+	@Test public void testCompactParseTree() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"PLUS : '+' ;\n" +
+			"MULT : '*' ;\n" +
+			"SEMI : ';' ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : e ';' (e ';')* EOF ;\n" +
+			"e : e '*' e | e '+' e | ID | INT ;\n",
+			lg);
+		String input = "a + b * 3 ; c ; 1 * 2 + x ;";
+
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream(input))));
+		String expected = parser.parse(g.rules.get("s").index).toStringTree(parser);
+
+		CommonTokenStream tokens = new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream(input)));
+		parser = g.createParserInterpreter(tokens);
+		CompactParseTree.Builder builder = new CompactParseTree.Builder(tokens);
+		parser.setBuildParseTree(false);
+		parser.addParseListener(builder);
+		parser.parse(g.rules.get("s").index);
+
+		CompactParseTree tree = builder.getTree();
+		assertEquals(expected, Trees.toStringTree(tree.getRoot(), parser));
+		assertEquals("0..14", tree.getRoot().getSourceInterval().toString());
+
+		final int[] counts = new int[2];
+		ParseTreeWalker.DEFAULT.walk(new ParseTreeListener() {
+			@Override
+			public void visitTerminal(TerminalNode node) {
+				counts[1]++;
+			}
+
+			@Override
+			public void visitErrorNode(ErrorNode node) {
+			}
+
+			@Override
+			public void enterEveryRule(ParserRuleContext ctx) {
+				counts[0]++;
+			}
+
+			@Override
+			public void exitEveryRule(ParserRuleContext ctx) {
+			}
+		}, tree.getRoot());
+		assertEquals(tree.size(), counts[0] + counts[1]);
+		assertEquals(15, counts[1]);
+	}
+
+	@Test public void testCompactParseTreeGeneratedEventOrder() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"INT : [0-9]+ ;\n" +
+			"PLUS : '+' ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : e EOF ;\n" +
+			"e : e '+' e | INT ;\n",
+			lg);
+		CommonTokenStream tokens = new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream("1+2")));
+		tokens.fill();
+		int s = g.rules.get("s").index;
+		int e = g.rules.get("e").index;
+
+		// replay the events of a generated parser, which exits the previous
+		// context of a left-recursive rule before pushNewRecursionContext, and
+		// replaces the context of a labeled alternative without an event
+		CompactParseTree.Builder builder = new CompactParseTree.Builder(tokens);
+		InterpreterRuleContext sctx = new InterpreterRuleContext(null, -1, s);
+		sctx.start = tokens.get(0);
+		builder.enterEveryRule(sctx);
+
+		InterpreterRuleContext e0 = new InterpreterRuleContext(sctx, 1, e);
+		e0.start = tokens.get(0);
+		builder.enterEveryRule(e0);
+		InterpreterRuleContext e0Labeled = new InterpreterRuleContext(sctx, 1, e);
+		e0Labeled.start = tokens.get(0);
+		builder.visitTerminal(new TerminalNodeImpl(tokens.get(0)));
+		e0Labeled.stop = tokens.get(0);
+		builder.exitEveryRule(e0Labeled);
+
+		InterpreterRuleContext e1 = new InterpreterRuleContext(sctx, 1, e);
+		e0Labeled.parent = e1;
+		e1.start = tokens.get(0);
+		builder.enterEveryRule(e1);
+		builder.visitTerminal(new TerminalNodeImpl(tokens.get(1)));
+
+		InterpreterRuleContext e2 = new InterpreterRuleContext(e1, 3, e);
+		e2.start = tokens.get(2);
+		builder.enterEveryRule(e2);
+		builder.visitTerminal(new TerminalNodeImpl(tokens.get(2)));
+		e2.stop = tokens.get(2);
+		builder.exitEveryRule(e2);
+		e1.stop = tokens.get(2);
+		builder.exitEveryRule(e1);
+
+		builder.visitTerminal(new TerminalNodeImpl(tokens.get(3)));
+		sctx.stop = tokens.get(3);
+		builder.exitEveryRule(sctx);
+
+		CompactParseTree tree = builder.getTree();
+		List<String> ruleNames = Arrays.asList(g.getRuleNames());
+		assertEquals("(s (e (e 1) + (e 2)) <EOF>)", Trees.toStringTree(tree.getRoot(), ruleNames));
+		assertEquals("0..2", tree.getRoot().getChild(0).getSourceInterval().toString());
+
+		// a parse tree listener on the interpreter produces the same tree
+		tokens.seek(0);
+		ParserInterpreter parser = g.createParserInterpreter(tokens);
+		builder = new CompactParseTree.Builder(tokens);
+		parser.setBuildParseTree(false);
+		parser.addParseListener(builder);
+		parser.parse(s);
+		assertEquals("(s (e (e 1) + (e 2)) <EOF>)", Trees.toStringTree(builder.getTree().getRoot(), ruleNames));
+	}
+
+	@Test public void testCompactParseTreeProperty() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"INT : [0-9]+ ;\n" +
+			"PLUS : '+' ;\n" +
+			"MULT : '*' ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : e EOF ;\n" +
+			"e : e '*' e | e '+' e | INT ;\n",
+			lg);
+		CommonTokenStream tokens = new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream("1 + 2 * 3 + 4")));
+		ParserInterpreter parser = g.createParserInterpreter(tokens);
+		CompactParseTree.Builder builder = new CompactParseTree.Builder(tokens);
+		parser.setBuildParseTree(false);
+		parser.addParseListener(builder);
+		parser.parse(g.rules.get("s").index);
+
+		CompactParseTree.Context root = builder.getTree().getRoot();
+		assertSame(root.getChild(0), root.getChild(0));
+		assertSame(root, root.getChild(0).getParent());
+
+		// values stored on exit of a child are read by the parent through getChild
+		final ParseTreeProperty<Integer> values = new ParseTreeProperty<Integer>();
+		ParseTreeWalker.DEFAULT.walk(new ParseTreeListener() {
+			@Override
+			public void visitTerminal(TerminalNode node) {
+				if (node.getSymbol().getType() == Token.EOF || node.getText().equals("+") || node.getText().equals("*")) {
+					return;
+				}
+
+				values.put(node, Integer.valueOf(node.getText()));
+			}
+
+			@Override
+			public void visitErrorNode(ErrorNode node) {
+			}
+
+			@Override
+			public void enterEveryRule(ParserRuleContext ctx) {
+			}
+
+			@Override
+			public void exitEveryRule(ParserRuleContext ctx) {
+				if (ctx.getChildCount() < 3) {
+					values.put(ctx, values.get(ctx.getChild(0)));
+				}
+				else if (ctx.getChild(1).getText().equals("+")) {
+					values.put(ctx, values.get(ctx.getChild(0)) + values.get(ctx.getChild(2)));
+				}
+				else {
+					values.put(ctx, values.get(ctx.getChild(0)) * values.get(ctx.getChild(2)));
+				}
+			}
+		}, root);
+		assertEquals(Integer.valueOf(11), values.get(root));
+	}
+
+	@Test public void testMultiParseTreeWalker() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"PLUS : '+' ;\n" +
+			"SEMI : ';' ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : e ';' (e ';')* EOF ;\n" +
+			"e : e '+' e | ID | INT ;\n",
+			lg);
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream("a + 1 ; b ; 2 + c + d ;"))));
+		ParseTree tree = parser.parse(g.rules.get("s").index);
+
+		RecordingListener expected = new RecordingListener();
+		ParseTreeWalker.DEFAULT.walk(expected, tree);
+
+		RecordingListener first = new RecordingListener();
+		RecordingListener second = new RecordingListener();
+		CountingBaseListener counting = new CountingBaseListener();
+		TerminalListener terminals = new TerminalListener();
+		new MultiParseTreeWalker(Arrays.asList(first, counting, terminals, second)).walk(tree);
+		assertEquals(expected.events, first.events);
+		assertEquals(expected.events, second.events);
+		assertEquals(32, expected.events.size());
+
+		// a class is only treated as a base listener if it has the generated form
+		assertEquals(32, counting.count);
+		assertEquals(12, terminals.count);
+	}
+
+	@Test public void testMultiParseTreeWalkerDefaultImplementation() throws Exception {
+		DefaultImplementationWalker walker = new DefaultImplementationWalker();
+		assertTrue(walker.isDefault(TBaseListener.class.getMethod("enterEveryRule", ParserRuleContext.class)));
+		assertTrue(walker.isDefault(TBaseListener.class.getMethod("enterS", ParserRuleContext.class)));
+		assertTrue(walker.isDefault(TerminalListener.class.getMethod("exitEveryRule", ParserRuleContext.class)));
+		assertFalse(walker.isDefault(TerminalListener.class.getMethod("visitTerminal", TerminalNode.class)));
+		assertFalse(walker.isDefault(CountingBaseListener.class.getMethod("enterEveryRule", ParserRuleContext.class)));
+		assertFalse(walker.isDefault(ExtendedBaseListener.class.getMethod("enterEveryRule", ParserRuleContext.class)));
+	}
+
+	@Test public void testParallelParseTreeVisitor() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"EQ : '=' ;\n" +
+			"PLUS : '+' ;\n" +
+			"SEMI : ';' ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"prog : stat* EOF ;\n" +
+			"stat : ID '=' e ';' ;\n" +
+			"e : e '+' e | ID | INT ;\n",
+			lg);
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			input.append("x = a + ").append(i).append(" + b;\n");
+		}
+
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream(input.toString()))));
+		ParseTree tree = parser.parse(g.rules.get("prog").index);
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			// concatenation is associative but not commutative
+			ParallelParseTreeVisitor<String> visitor = new ParallelParseTreeVisitor<String>(executor) {
+				@Override
+				public String visitTerminal(TerminalNode node) {
+					return node.getText();
+				}
+
+				@Override
+				protected String defaultResult() {
+					return "";
+				}
+
+				@Override
+				protected String aggregateResult(String aggregate, String nextResult) {
+					return aggregate + nextResult;
+				}
+			};
+
+			visitor.setMinForkSize(8);
+			assertEquals(tree.getText(), visitor.visit(tree));
+
+			visitor.setMinForkSize(Integer.MAX_VALUE);
+			visitor.setForkRules(g.rules.get("prog").index);
+			assertEquals(tree.getText(), visitor.visit(tree));
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test public void testCachedPredicateResults() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : {isType()}? ID | ID ;\n",
+			lg);
+		CommonTokenStream tokens = new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream("a b")));
+		final int[] evaluations = new int[1];
+		ParserInterpreter parser = new ParserInterpreter(g.fileName, g.getVocabulary(), Arrays.asList(g.getRuleNames()), g.atn, tokens) {
+			@Override
+			public boolean sempred(RuleContext _localctx, int ruleIndex, int actionIndex) {
+				if (_localctx == null) {
+					// evaluated during prediction
+					evaluations[0]++;
+				}
+
+				return true;
+			}
+		};
+
+		ParserATNSimulator interpreter = parser.getInterpreter();
+		assertEquals(1, interpreter.adaptivePredict(tokens, 0, null));
+		int once = evaluations[0];
+		assertTrue(once > 0);
+		interpreter.adaptivePredict(tokens, 0, null);
+		assertEquals(2 * once, evaluations[0]);
+
+		evaluations[0] = 0;
+		interpreter.setCachePredicateResults(true);
+		interpreter.adaptivePredict(tokens, 0, null);
+		interpreter.adaptivePredict(tokens, 0, null);
+		assertEquals(1, evaluations[0]);
+
+		// a prediction at another input index replaces the cached results
+		tokens.seek(1);
+		assertEquals(1, interpreter.adaptivePredict(tokens, 0, null));
+		assertEquals(2, evaluations[0]);
+		tokens.seek(0);
+		interpreter.adaptivePredict(tokens, 0, null);
+		assertEquals(3, evaluations[0]);
+	}
+
+	@Test public void testSharedContextCache() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : a ;\n" +
+			"a : ID ID | ID INT ;\n",
+			lg);
+		ConcurrentPredictionContextCache sharedContextCache = g.atn.getSharedContextCache();
+		for (int i = 0; i < 2; i++) {
+			CommonTokenStream tokens = new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream("a 1")));
+			ParserInterpreter parser = new ParserInterpreter(g.fileName, g.getVocabulary(), Arrays.asList(g.getRuleNames()), g.atn, tokens);
+			parser.getInterpreter().force_global_context = true;
+			parser.getInterpreter().setShareContextCache(true);
+			assertEquals("(s (a a 1))", parser.parse(g.rules.get("s").index).toStringTree(parser));
+		}
+
+		// the second parser, which shares the ATN of the first, found the context
+		// of the full-context prediction in the cache populated by the first
+		assertTrue(sharedContextCache.getChildLookups() >= 2);
+		assertTrue(sharedContextCache.getChildHits() > 0);
+		assertTrue(sharedContextCache.getSize() > 0);
+
+		g.atn.clearDFA();
+		assertEquals(0, sharedContextCache.getSize());
+	}
+
+	private static class RecordingListener implements ParseTreeListener {
+		public final List<String> events = new ArrayList<String>();
+
+		@Override
+		public void visitTerminal(TerminalNode node) {
+			events.add("terminal " + node.getText());
+		}
+
+		@Override
+		public void visitErrorNode(ErrorNode node) {
+			events.add("error " + node.getText());
+		}
+
+		@Override
+		public void enterEveryRule(ParserRuleContext ctx) {
+			events.add("enter " + ctx.getRuleIndex());
+		}
+
+		@Override
+		public void exitEveryRule(ParserRuleContext ctx) {
+			events.add("exit " + ctx.getRuleIndex());
+		}
+	}
+
+	private static class CountingBaseListener implements ParseTreeListener {
+		public int count;
+
+		@Override
+		public void visitTerminal(TerminalNode node) {
+			count++;
+		}
+
+		@Override
+		public void visitErrorNode(ErrorNode node) {
+			count++;
+		}
+
+		@Override
+		public void enterEveryRule(ParserRuleContext ctx) {
+			count++;
+		}
+
+		@Override
+		public void exitEveryRule(ParserRuleContext ctx) {
+			count++;
+		}
+	}
+
+	/** The form of a listener interface generated for a grammar {@code T}. */
+	public interface TListener extends ParseTreeListener {
+		void enterS(ParserRuleContext ctx);
+
+		void exitS(ParserRuleContext ctx);
+	}
+
+	/** The form of a base listener generated for a grammar {@code T}. */
+	public static class TBaseListener implements TListener {
+		@Override public void enterS(ParserRuleContext ctx) { }
+		@Override public void exitS(ParserRuleContext ctx) { }
+
+		@Override public void enterEveryRule(ParserRuleContext ctx) { }
+		@Override public void exitEveryRule(ParserRuleContext ctx) { }
+		@Override public void visitTerminal(TerminalNode node) { }
+		@Override public void visitErrorNode(ErrorNode node) { }
+	}
+
+	private static class TerminalListener extends TBaseListener {
+		public int count;
+
+		@Override
+		public void visitTerminal(TerminalNode node) {
+			count++;
+		}
+	}
+
+	public interface ExtendedListener extends TListener {
+	}
+
+	/** Declares a method which is not part of {@code ExtendedListener}. */
+	public static class ExtendedBaseListener implements ExtendedListener {
+		@Override public void enterS(ParserRuleContext ctx) { }
+		@Override public void exitS(ParserRuleContext ctx) { }
+
+		@Override public void enterEveryRule(ParserRuleContext ctx) { }
+		@Override public void exitEveryRule(ParserRuleContext ctx) { }
+		@Override public void visitTerminal(TerminalNode node) { }
+		@Override public void visitErrorNode(ErrorNode node) { }
+
+		public void reset() { }
+	}
+
+	private static class DefaultImplementationWalker extends MultiParseTreeWalker {
+		public DefaultImplementationWalker() {
+			super(new ArrayList<ParseTreeListener>());
+		}
+
+		public boolean isDefault(Method method) {
+			return isDefaultImplementation(method);
+		}
+	}
+
+	ParserInterpreter testTwoStageInterp(LexerGrammar lg, Grammar g,
+										 String startRule, String input,
+										 String expectedParseTree)
+	{
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new ANTLRInputStream(input));
+		CommonTokenStream tokens = new CommonTokenStream(lexEngine);
+		ParserInterpreter parser = g.createParserInterpreter(tokens);
+		final int startRuleIndex = g.rules.get(startRule).index;
+		ParserRuleContext t = parser.parseTwoStage(new Func1<Parser, ParserRuleContext>() {
+			@Override
+			public ParserRuleContext eval(Parser arg1) {
+				return ((ParserInterpreter)arg1).parse(startRuleIndex);
+			}
+		});
+		assertEquals(expectedParseTree, t.toStringTree(parser));
+		return parser;
+	}
+
 	ParseTree testInterp(LexerGrammar lg, Grammar g,
 					String startRule, String input,
 					String expectedParseTree)
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.ParserPool;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.misc.Func1;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestParserPool extends BaseTest {
+	@Test public void testReuse() throws Exception {
+		LexerGrammar lg = createLexerGrammar();
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : ID EQ INT EOF ;\n",
+			lg);
+		ParserPool<LexerInterpreter, ParserInterpreter> pool = createPool(lg, g);
+
+		int ruleIndex = g.rules.get("s").index;
+		ParserPool.Entry<LexerInterpreter, ParserInterpreter> first = pool.borrow(new ANTLRInputStream("a = 1"));
+		ParserRuleContext tree = first.getParser().parse(ruleIndex);
+		assertEquals("(s a = 1 <EOF>)", tree.toStringTree(first.getParser()));
+		pool.release(first);
+		assertEquals(1, pool.getIdleCount());
+		assertNull(first.getLexer().getInputStream());
+		assertNull(first.getParser().getInputStream());
+		assertEquals(0, first.getTokenStream().size());
+
+		ParserPool.Entry<LexerInterpreter, ParserInterpreter> second = pool.borrow(new ANTLRInputStream("bc = 23"));
+		assertSame(first, second);
+		tree = second.getParser().parse(ruleIndex);
+		assertEquals("(s bc = 23 <EOF>)", tree.toStringTree(second.getParser()));
+		assertEquals(0, second.getParser().getNumberOfSyntaxErrors());
+
+		// a second concurrent borrower gets a new instance
+		ParserPool.Entry<LexerInterpreter, ParserInterpreter> third = pool.borrow(new ANTLRInputStream("d = 4"));
+		assertEquals(2, pool.getCreatedCount());
+		pool.release(third);
+		pool.release(second);
+		assertEquals(2, pool.getIdleCount());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testDoubleRelease() throws Exception {
+		LexerGrammar lg = createLexerGrammar();
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : ID EOF ;\n",
+			lg);
+		ParserPool<LexerInterpreter, ParserInterpreter> pool = createPool(lg, g);
+		ParserPool.Entry<LexerInterpreter, ParserInterpreter> entry = pool.borrow(new ANTLRInputStream("a"));
+		pool.release(entry);
+		pool.release(entry);
+	}
+
+	private static LexerGrammar createLexerGrammar() throws Exception {
+		return new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"EQ : '=' ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+	}
+
+	private static ParserPool<LexerInterpreter, ParserInterpreter> createPool(final LexerGrammar lg, final Grammar g) {
+		return new ParserPool<LexerInterpreter, ParserInterpreter>(
+			new Func1<CharStream, LexerInterpreter>() {
+				@Override
+				public LexerInterpreter eval(CharStream input) {
+					return lg.createLexerInterpreter(input);
+				}
+			},
+			new Func1<TokenStream, ParserInterpreter>() {
+				@Override
+				public ParserInterpreter eval(TokenStream input) {
+					return g.createParserInterpreter(input);
+				}
+			});
+	}
+}
@@ -12,15 +12,22 @@ import org.antlr.v4.runtime.LexerInterpreter;
 import org.antlr.v4.runtime.ParserInterpreter;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.antlr.v4.runtime.atn.DecisionStrategy;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionMetrics;
+import org.antlr.v4.runtime.atn.PredictionPolicy;
 import org.antlr.v4.tool.Grammar;
 import org.antlr.v4.tool.LexerGrammar;
 import org.antlr.v4.tool.Rule;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.Arrays;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class TestParserProfiler extends BaseTest {
 	LexerGrammar lg;
@@ -206,6 +213,142 @@ public class TestParserProfiler extends BaseTest {
 		assertEquals(expecting, Arrays.toString(info));
 	}
 
+	@Test public void testPredictionPolicyFromProfile() throws Exception {
+		Grammar g = new Grammar(
+			"parser grammar T;\n"+
+			"a : '.' e ID \n" +
+			"  | ';' e INT ID ;\n" +
+			"e : INT | ;\n",
+			lg);
+		DecisionInfo[] info = interpAndGetDecisionInfo(lg, g, "a", "; 1 x");
+		PredictionPolicy policy = PredictionPolicy.fromDecisionInfo(info, PredictionPolicy.DEFAULT_FULL_CONTEXT_THRESHOLD);
+		assertEquals(DecisionStrategy.DEFAULT, policy.getStrategy(0));
+		assertEquals(DecisionStrategy.FULL_CONTEXT, policy.getStrategy(1));
+
+		g = new Grammar(
+				"parser grammar T;\n" +
+				"s : e ';'\n" +
+				"  | e '.' \n" +
+				"  ;\n" +
+				"e : (ID|INT) ({true}? '+' e)*\n" +
+				"  ;\n",
+				lg);
+		info = interpAndGetDecisionInfo(lg, g, "s", "a+b+c;");
+		policy = PredictionPolicy.fromDecisionInfo(info, PredictionPolicy.DEFAULT_FULL_CONTEXT_THRESHOLD);
+		assertEquals(DecisionStrategy.DEFAULT, policy.getStrategy(0));
+		assertEquals(DecisionStrategy.LOCAL_CONTEXT, policy.getStrategy(1));
+
+		StringWriter writer = new StringWriter();
+		policy.write(writer);
+		assertEquals("decisions 2\n1 LOCAL_CONTEXT\n", writer.toString());
+		PredictionPolicy loaded = PredictionPolicy.read(new StringReader(writer.toString()));
+		assertEquals(policy.toString(), loaded.toString());
+	}
+
+	@Test public void testFullContextPredictionPolicy() throws Exception {
+		Grammar g = new Grammar(
+			"parser grammar T;\n"+
+			"a : '.' e ID \n" +
+			"  | ';' e INT ID ;\n" +
+			"e : INT | ;\n",
+			lg);
+		PredictionPolicy policy = new PredictionPolicy(2);
+		policy.setStrategy(1, DecisionStrategy.FULL_CONTEXT);
+
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new ANTLRInputStream("; 1 x"));
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(lexEngine));
+		parser.setProfile(true);
+		parser.getInterpreter().setPredictionPolicy(policy);
+		ParserRuleContext t = parser.parse(g.rules.get("a").index);
+		assertEquals("(a ; e 1 x)", t.toStringTree(parser));
+
+		// the decision is predicted with full context directly
+		DecisionInfo info = parser.getParseInfo().getDecisionInfo()[1];
+		assertEquals(0, info.LL_Fallback);
+		assertEquals(0, info.SLL_ATNTransitions);
+		assertTrue(info.LL_ATNTransitions > 0);
+	}
+
+	@Test public void testPredictionMetrics() throws Exception {
+		Grammar g = new Grammar(
+				"parser grammar T;\n" +
+				"s : ID ';'{}\n" +
+				"  | ID '.'\n" +
+				"  ;\n",
+				lg);
+
+		PredictionMetrics parserMetrics = new PredictionMetrics(g.atn.getNumberOfDecisions(), 1);
+		PredictionMetrics lexerMetrics = new PredictionMetrics(1);
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(null);
+		lexEngine.getInterpreter().setMetrics(lexerMetrics);
+		ParserInterpreter parser = g.createParserInterpreter(null);
+		parser.getInterpreter().setMetrics(parserMetrics);
+		for (String input : new String[] { "xyz;", "abc;" }) {
+			lexEngine.setInputStream(new ANTLRInputStream(input));
+			parser.setInputStream(new CommonTokenStream(lexEngine));
+			parser.parse(g.rules.get("s").index);
+		}
+
+		PredictionMetrics.Snapshot snapshot = parserMetrics.getSnapshot();
+		assertEquals(2, snapshot.get(0, PredictionMetrics.Counter.PREDICTIONS));
+		assertEquals(2, snapshot.get(0, PredictionMetrics.Counter.ATN_TRANSITIONS));
+		assertEquals(2, snapshot.get(0, PredictionMetrics.Counter.DFA_TRANSITIONS));
+		assertEquals(0, snapshot.get(0, PredictionMetrics.Counter.FULL_CONTEXT_RETRIES));
+		assertTrue(snapshot.get(0, PredictionMetrics.Counter.DFA_STATES_CREATED) > 0);
+		assertEquals(2, snapshot.get(0, PredictionMetrics.Counter.SAMPLED_PREDICTIONS));
+
+		// EOF is emitted without a call to match
+		snapshot = lexerMetrics.getSnapshot();
+		assertEquals(4, snapshot.get(0, PredictionMetrics.Counter.PREDICTIONS));
+		assertTrue(snapshot.get(0, PredictionMetrics.Counter.DFA_TRANSITIONS) > 0);
+		// only the first of every 64 tokens is timed by default
+		assertEquals(1, snapshot.get(0, PredictionMetrics.Counter.SAMPLED_PREDICTIONS));
+	}
+
+	@Test public void testFullContextCacheMetrics() throws Exception {
+		Grammar g = new Grammar(
+				"parser grammar T;\n" +
+				"s : ID ID\n" +
+				"  | ID INT\n" +
+				"  ;\n",
+				lg);
+
+		PredictionMetrics metrics = new PredictionMetrics(g.atn.getNumberOfDecisions());
+		CommonTokenStream tokens = new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream("a 1")));
+		ParserInterpreter parser = g.createParserInterpreter(tokens);
+		ParserATNSimulator interp = parser.getInterpreter();
+		interp.setMetrics(metrics);
+		interp.force_global_context = true;
+		interp.setCacheFullContextPredictions(true);
+
+		// the second prediction at the same index with the same outer context
+		// is found in the memo
+		assertEquals(2, interp.adaptivePredict(tokens, 0, null));
+		assertEquals(2, interp.adaptivePredict(tokens, 0, null));
+		PredictionMetrics.Snapshot snapshot = metrics.getSnapshot();
+		assertEquals(2, snapshot.get(0, PredictionMetrics.Counter.FULL_CONTEXT_CACHE_LOOKUPS));
+		assertEquals(1, snapshot.get(0, PredictionMetrics.Counter.FULL_CONTEXT_CACHE_HITS));
+		assertEquals(0.5, snapshot.getFullContextCacheHitRate(0), 0);
+
+		// the memo is cleared by reset
+		interp.reset();
+		assertEquals(2, interp.adaptivePredict(tokens, 0, null));
+		snapshot = metrics.getSnapshot();
+		assertEquals(3, snapshot.get(0, PredictionMetrics.Counter.FULL_CONTEXT_CACHE_LOOKUPS));
+		assertEquals(1, snapshot.get(0, PredictionMetrics.Counter.FULL_CONTEXT_CACHE_HITS));
+
+		// the memo is bypassed while ambiguities are reported
+		interp.reportAmbiguities = true;
+		assertEquals(2, interp.adaptivePredict(tokens, 0, null));
+		assertEquals(2, interp.adaptivePredict(tokens, 0, null));
+		snapshot = metrics.getSnapshot();
+		assertEquals(3, snapshot.get(0, PredictionMetrics.Counter.FULL_CONTEXT_CACHE_LOOKUPS));
+		interp.reportAmbiguities = false;
+
+		parser.reset();
+		assertEquals("(s a 1)", parser.parse(g.rules.get("s").index).toStringTree(parser));
+	}
+
 	@Test public void testProfilerGeneratedCode() throws Exception {
 		String grammar =
 			"grammar T;\n" +
@@ -28,6 +28,7 @@ import org.antlr.v4.runtime.atn.ATN;
 import org.antlr.v4.runtime.atn.ATNConfig;
 import org.antlr.v4.runtime.atn.ATNConfigSet;
 import org.antlr.v4.runtime.atn.ATNDeserializer;
+import org.antlr.v4.runtime.atn.ConcurrentPredictionContextCache;
 import org.antlr.v4.runtime.atn.LexerATNSimulator;
 import org.antlr.v4.runtime.atn.ParserATNSimulator;
 import org.antlr.v4.runtime.atn.PredictionContextCache;
@@ -256,6 +257,12 @@ public class TestPerformance extends BaseTest {
 	private static final boolean OPTIMIZE_TAIL_CALLS = true;
 	private static final boolean TAIL_CALL_PRESERVES_SLL = true;
 	private static final boolean TREAT_SLLK1_CONFLICT_AS_AMBIGUITY = false;
+	/**
+	 * If {@code true}, the parsers use the prediction context cache shared by
+	 * all predictions for the ATN, and the number of joins saved by the cache
+	 * is reported with the DFA state statistics.
+	 */
+	private static final boolean SHARE_CONTEXT_CACHE = false;
 
 	private static final boolean TWO_STAGE_PARSING = true;
 
@@ -972,6 +979,13 @@ public class TestPerformance extends BaseTest {
                 }
 
                 System.out.format("There are %d parser DFAState instances, %d configs (%d unique), %d prediction contexts.%n", states, configs, uniqueConfigs.size(), interpreter.atn.getContextCacheSize());
+				if (SHARE_CONTEXT_CACHE) {
+					ConcurrentPredictionContextCache sharedContextCache = interpreter.atn.getSharedContextCache();
+					System.out.format("The shared context cache saved %d of %d joins and %d of %d child contexts (%d entries).%n",
+						sharedContextCache.getJoinHits(), sharedContextCache.getJoinLookups(),
+						sharedContextCache.getChildHits(), sharedContextCache.getChildLookups(),
+						sharedContextCache.getSize());
+				}
 
 				if (DETAILED_DFA_STATE_STATS) {
 					if (COMPUTE_TRANSITION_STATS) {
@@ -1312,6 +1326,7 @@ public class TestPerformance extends BaseTest {
 						parser.getInterpreter().optimize_tail_calls = OPTIMIZE_TAIL_CALLS;
 						parser.getInterpreter().tail_call_preserves_sll = TAIL_CALL_PRESERVES_SLL;
 						parser.getInterpreter().treat_sllk1_conflict_as_ambiguity = TREAT_SLLK1_CONFLICT_AS_AMBIGUITY;
+						parser.getInterpreter().setShareContextCache(SHARE_CONTEXT_CACHE);
 						parser.setBuildParseTree(BUILD_PARSE_TREES);
 						if (!BUILD_PARSE_TREES && BLANK_LISTENER) {
 							parser.addParseListener(listener);
@@ -1385,6 +1400,7 @@ public class TestPerformance extends BaseTest {
 							parser.getInterpreter().optimize_tail_calls = OPTIMIZE_TAIL_CALLS;
 							parser.getInterpreter().tail_call_preserves_sll = TAIL_CALL_PRESERVES_SLL;
 							parser.getInterpreter().treat_sllk1_conflict_as_ambiguity = TREAT_SLLK1_CONFLICT_AS_AMBIGUITY;
+							parser.getInterpreter().setShareContextCache(SHARE_CONTEXT_CACHE);
 							parser.setBuildParseTree(BUILD_PARSE_TREES);
 							if (COMPUTE_CHECKSUM && !BUILD_PARSE_TREES) {
 								parser.addParseListener(new ChecksumParseTreeListener(checksum));
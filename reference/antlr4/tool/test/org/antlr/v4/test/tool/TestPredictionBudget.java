@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.atn.PredictionBudget;
+import org.antlr.v4.runtime.atn.PredictionBudgetExceededException;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TestPredictionBudget extends BaseTest {
+	private static final String LEXER =
+		"lexer grammar L;\n" +
+		"ID : [a-z]+ ;\n" +
+		"INT : [0-9]+ ;\n" +
+		"SEMI : ';' ;\n" +
+		"WS : [ \\n]+ -> skip ;\n";
+
+	@Test public void testClosureLimit() throws Exception {
+		LexerGrammar lg = new LexerGrammar(LEXER);
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : ID ID | ID INT ;\n",
+			lg);
+		int s = g.rules.get("s").index;
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream("a 1"))));
+		parser.getInterpreter().setPredictionBudget(new PredictionBudget(1, -1, -1, TimeUnit.MILLISECONDS, false));
+		try {
+			parser.parse(s);
+			fail("Expected the prediction budget to be exceeded.");
+		}
+		catch (PredictionBudgetExceededException ex) {
+			assertEquals(PredictionBudget.Limit.CLOSURE_OPERATIONS, ex.getLimit());
+			assertEquals(0, ex.getDecision());
+			assertEquals(0, ex.getInputIndex());
+		}
+
+		// without a budget, the prediction is stored in the DFA
+		parser.reset();
+		parser.getInterpreter().setPredictionBudget(null);
+		assertEquals("(s a 1)", parser.parse(s).toStringTree(parser));
+
+		// the full-context prediction exceeds the budget, and the retry uses
+		// the DFA without closure operations
+		parser.reset();
+		parser.getInterpreter().force_global_context = true;
+		parser.getInterpreter().setPredictionBudget(new PredictionBudget(1, -1, -1, TimeUnit.MILLISECONDS, true));
+		assertEquals("(s a 1)", parser.parse(s).toStringTree(parser));
+
+		parser.reset();
+		parser.getInterpreter().setPredictionBudget(new PredictionBudget(1, -1, -1, TimeUnit.MILLISECONDS, false));
+		try {
+			parser.parse(s);
+			fail("Expected the prediction budget to be exceeded.");
+		}
+		catch (PredictionBudgetExceededException ex) {
+			assertEquals(PredictionBudget.Limit.CLOSURE_OPERATIONS, ex.getLimit());
+		}
+	}
+
+	@Test public void testDeadline() throws Exception {
+		LexerGrammar lg = new LexerGrammar(LEXER);
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : stat* EOF ;\n" +
+			"stat : ID ';' ;\n",
+			lg);
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			input.append("a;\n");
+		}
+
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(lg.createLexerInterpreter(new ANTLRInputStream(input.toString()))));
+		parser.getInterpreter().setPredictionBudget(new PredictionBudget(-1, -1, 0, TimeUnit.MILLISECONDS, true));
+		try {
+			parser.parse(g.rules.get("s").index);
+			fail("Expected the deadline to pass.");
+		}
+		catch (PredictionBudgetExceededException ex) {
+			assertEquals(PredictionBudget.Limit.DEADLINE, ex.getLimit());
+		}
+	}
+}
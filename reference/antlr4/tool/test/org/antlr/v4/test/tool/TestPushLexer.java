@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2012 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD-3-Clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.PushLexer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestPushLexer extends BaseTest {
+	private static final String GRAMMAR =
+		"lexer grammar L;\n" +
+		"ID : [a-z]+ ;\n" +
+		"INT : [0-9]+ ;\n" +
+		"WS : [ \\n]+ -> skip ;\n" +
+		"STR : '\"' -> pushMode(S) ;\n" +
+		"mode S;\n" +
+		"S_END : '\"' -> popMode ;\n" +
+		"S_TEXT : ~'\"'+ ;\n";
+
+	@Test public void testTokensSplitAcrossChunks() throws Exception {
+		LexerGrammar g = new LexerGrammar(GRAMMAR);
+		LexerInterpreter lexEngine = g.createLexerInterpreter(new ANTLRInputStream(""));
+		PushLexer lexer = new PushLexer(lexEngine);
+
+		assertEquals("[]", toString(lexEngine, lexer.push("ab")));
+		assertEquals("[ID:abc@1:0]", toString(lexEngine, lexer.push("c 12")));
+		assertEquals("[INT:12@1:4, STR:\"@2:0]", toString(lexEngine, lexer.push("\n\"x")));
+		// still inside the string mode after the rollback
+		assertEquals("[S_TEXT:xy@2:1]", toString(lexEngine, lexer.push("y\"")));
+		assertEquals("[S_END:\"@2:3, EOF:<EOF>@2:4]", toString(lexEngine, lexer.finish()));
+	}
+
+	@Test public void testSplitCharacterInByteChunks() throws Exception {
+		LexerGrammar g = new LexerGrammar(GRAMMAR);
+		LexerInterpreter lexEngine = g.createLexerInterpreter(new ANTLRInputStream(""));
+		PushLexer lexer = new PushLexer(lexEngine, Charset.forName("UTF-8"));
+
+		byte[] bytes = "\"\u00E9\"".getBytes("UTF-8");
+		List<Token> tokens = new ArrayList<Token>();
+		for (byte b : bytes) {
+			tokens.addAll(lexer.push(ByteBuffer.wrap(new byte[] { b })));
+		}
+
+		tokens.addAll(lexer.finish());
+		assertEquals("[STR:\"@1:0, S_TEXT:\u00E9@1:1, S_END:\"@1:2, EOF:<EOF>@1:3]", toString(lexEngine, tokens));
+	}
+
+	private static String toString(LexerInterpreter lexer, List<Token> tokens) {
+		List<String> result = new ArrayList<String>();
+		for (Token t : tokens) {
+			String name = t.getType() == Token.EOF ? "EOF" : lexer.getVocabulary().getSymbolicName(t.getType());
+			result.add(name + ":" + t.getText() + "@" + t.getLine() + ":" + t.getCharPositionInLine());
+		}
+
+		return result.toString();
+	}
+}
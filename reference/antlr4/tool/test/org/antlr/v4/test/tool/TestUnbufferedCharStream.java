@@ -20,6 +20,7 @@ import java.io.Reader;
 import java.io.StringReader;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class TestUnbufferedCharStream extends BaseTest {
 	@Test public void testNoChar() throws Exception {
@@ -273,6 +274,74 @@ public class TestUnbufferedCharStream extends BaseTest {
 		assertEquals("\uFFFF", input.getBuffer());
    	}
 
+	@Test public void testMarkAcrossBufferGrowth() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			text.append((char)('a' + i % 26));
+		}
+
+		TestingUnbufferedCharStream input = createStream(text.toString(), 8);
+		input.consume();
+		int m = input.mark();
+		for (int i = 1; i < 90; i++) {
+			assertEquals(text.charAt(i), input.LA(1));
+			input.consume();
+		}
+
+		assertEquals(text.substring(1, 90), input.getText(Interval.of(1, 89)));
+		input.seek(40);
+		assertEquals(text.charAt(39), input.LA(-1));
+		assertTrue(input.getRemainingBuffer().startsWith(text.substring(40, 90)));
+		input.release(m);
+		assertTrue(input.getBuffer().startsWith(text.substring(40, 90)));
+
+		for (int i = 40; i < 100; i++) {
+			input.consume();
+		}
+
+		assertEquals(IntStream.EOF, input.LA(1));
+		assertEquals("\uFFFF", input.getBuffer());
+	}
+
+	@Test public void testBufferBoundedWithoutMarks() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			text.append((char)('a' + i % 26));
+		}
+
+		TestingUnbufferedCharStream input = createStream(text.toString(), 4);
+		for (int i = 0; i < 995; i++) {
+			// lookahead keeps characters after p in the buffer
+			assertEquals(text.charAt(i + 4), input.LA(5));
+			assertEquals(text.charAt(i), input.LA(1));
+			input.consume();
+		}
+
+		assertTrue(input.getBufferCapacity() <= 8);
+	}
+
+	@Test public void testBufferReusedByMarks() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			text.append((char)('a' + i % 26));
+		}
+
+		TestingUnbufferedCharStream input = createStream(text.toString(), 8);
+		for (int i = 0; i < 990; i += 30) {
+			int m = input.mark();
+			for (int j = 0; j < 30; j++) {
+				assertEquals(text.charAt(i + j), input.LA(1));
+				input.consume();
+			}
+
+			assertEquals(text.substring(i, i + 30), input.getText(Interval.of(i, i + 29)));
+			input.release(m);
+			// the buffer goes back to the smaller array, and the larger array
+			// is kept for the next mark
+			assertEquals(16, input.getBufferCapacity());
+		}
+	}
+
     @Test public void testAFewTokens() throws Exception {
         LexerGrammar g = new LexerGrammar(
                 "lexer grammar t;\n"+
@@ -339,5 +408,9 @@ public class TestUnbufferedCharStream extends BaseTest {
 			return new String(data,0,n);
 		}
 
+		public int getBufferCapacity() {
+			return data.length;
+		}
+
 	}
 }
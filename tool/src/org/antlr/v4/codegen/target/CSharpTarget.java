@@ -29,9 +29,13 @@
  */
 package org.antlr.v4.codegen.target;
 
+import java.util.IdentityHashMap;
 import java.util.Map;
 import org.antlr.v4.codegen.CodeGenerator;
 import org.antlr.v4.codegen.Target;
+import org.antlr.v4.codegen.model.AltBlock;
+import org.antlr.v4.codegen.model.Choice;
+import org.antlr.v4.runtime.atn.DecisionState;
 import org.antlr.v4.tool.ErrorType;
 import org.antlr.v4.tool.ast.GrammarAST;
 import org.stringtemplate.v4.Interpreter;
@@ -42,10 +46,12 @@ import org.stringtemplate.v4.STGroup;
 import org.stringtemplate.v4.STGroupFile;
 import org.stringtemplate.v4.StringRenderer;
 import org.stringtemplate.v4.misc.MapModelAdaptor;
+import org.stringtemplate.v4.misc.ObjectModelAdaptor;
 import org.stringtemplate.v4.misc.STMessage;
 import org.stringtemplate.v4.misc.STNoSuchPropertyException;
 
 public abstract class CSharpTarget extends Target {
+	private final Map<Choice, LL2Decision> fixedLookaheadDecisions = new IdentityHashMap<Choice, LL2Decision>();
 
 	protected CSharpTarget(CodeGenerator gen, String language) {
 		super(gen, language);
@@ -139,6 +145,38 @@ public abstract class CSharpTarget extends Target {
 		return false;
 	}
 
+	@Override
+	public int getSerializedATNSegmentLimit() {
+		// keep the individual string literals small; the segments are joined
+		// when the recognizer type is initialized
+		return 8192;
+	}
+
+	/**
+	 * Gets the two-token lookahead table used to predict {@code choice}
+	 * without calling {@code AdaptivePredict}, or {@code null} if the decision
+	 * needs adaptive prediction.
+	 *
+	 * @see LL2Analyzer
+	 */
+	public LL2Decision getFixedLookaheadDecision(Choice choice) {
+		if (fixedLookaheadDecisions.containsKey(choice)) {
+			return fixedLookaheadDecisions.get(choice);
+		}
+
+		LL2Decision result = null;
+		if (!getCodeGenerator().tool.force_atn) {
+			LL2Analyzer analyzer = new LL2Analyzer(getCodeGenerator().g.atn);
+			LL2Analyzer.DecisionLookahead look = analyzer.getDecisionLookahead((DecisionState)choice.ast.atnState);
+			if (look != null) {
+				result = new LL2Decision(this, getCodeGenerator().g, look);
+			}
+		}
+
+		fixedLookaheadDecisions.put(choice, result);
+		return result;
+	}
+
 	@Override
 	protected STGroup loadTemplates() {
 		// override the superclass behavior to put all C# templates in the same folder
@@ -167,6 +205,19 @@ public abstract class CSharpTarget extends Target {
 				return value;
 			}
 		});
+		result.registerModelAdaptor(AltBlock.class, new ObjectModelAdaptor() {
+			@Override
+			public Object getProperty(Interpreter interp, ST self, Object o, Object property, String propertyName) throws STNoSuchPropertyException {
+				// The code generator always creates an AltBlock for a complex
+				// choice; the template asks the target whether it can be
+				// predicted from two tokens instead.
+				if ("fixedLookahead".equals(propertyName)) {
+					return getFixedLookaheadDecision((Choice)o);
+				}
+
+				return super.getProperty(interp, self, o, property, propertyName);
+			}
+		});
 		result.registerRenderer(Integer.class, new NumberRenderer());
 		result.registerRenderer(String.class, new StringRenderer());
 		result.setListener(new STErrorListener() {
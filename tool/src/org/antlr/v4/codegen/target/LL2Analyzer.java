@@ -0,0 +1,304 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2013 Terence Parr
+ *  Copyright (c) 2013 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.antlr.v4.codegen.target;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNConfig;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.AbstractPredicateTransition;
+import org.antlr.v4.runtime.atn.DecisionState;
+import org.antlr.v4.runtime.atn.LL1Analyzer;
+import org.antlr.v4.runtime.atn.NotSetTransition;
+import org.antlr.v4.runtime.atn.PredictionContext;
+import org.antlr.v4.runtime.atn.RuleStopState;
+import org.antlr.v4.runtime.atn.RuleTransition;
+import org.antlr.v4.runtime.atn.StarLoopEntryState;
+import org.antlr.v4.runtime.atn.Transition;
+import org.antlr.v4.runtime.atn.WildcardTransition;
+import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.misc.Nullable;
+
+/**
+ * Determines whether a decision can be predicted by looking at no more than
+ * two tokens, without consulting the outer context of the rule containing the
+ * decision. Decisions which pass this analysis can be emitted as nested
+ * {@code switch} statements on {@code LA(1)} and {@code LA(2)} instead of a
+ * call to {@code adaptivePredict}.
+ *
+ * <p>The analysis is conservative. It fails for non-greedy and precedence
+ * decisions, when a semantic predicate appears before the first token, when
+ * the end of the decision rule is reached before the tokens needed to make the
+ * decision, and when a rule invocation is recursive before the first token.
+ * Semantic predicates which appear after the first token are ignored, which is
+ * consistent with SLL prediction in {@code ParserATNSimulator}.</p>
+ */
+public class LL2Analyzer {
+	@NotNull
+	public final ATN atn;
+
+	public LL2Analyzer(@NotNull ATN atn) {
+		this.atn = atn;
+	}
+
+	/**
+	 * Computes the two-token lookahead for a decision.
+	 *
+	 * @param s the decision state
+	 * @return the lookahead for the decision, or {@code null} if the decision
+	 * cannot be predicted from two tokens of lookahead
+	 */
+	@Nullable
+	public DecisionLookahead getDecisionLookahead(@NotNull DecisionState s) {
+		if (s.nonGreedy) {
+			return null;
+		}
+
+		if (s instanceof StarLoopEntryState && ((StarLoopEntryState)s).precedenceRuleDecision) {
+			return null;
+		}
+
+		int n = s.getNumberOfTransitions();
+		List<List<Edge>> altEdges = new ArrayList<List<Edge>>(n);
+		IntervalSet[] firstLook = new IntervalSet[n];
+		for (int alt = 0; alt < n; alt++) {
+			List<Edge> edges = new ArrayList<Edge>();
+			if (!closure(s.transition(alt).target, PredictionContext.EMPTY_LOCAL, edges, new HashSet<ATNConfig>(), new BitSet())) {
+				return null;
+			}
+
+			firstLook[alt] = new IntervalSet();
+			for (Edge edge : edges) {
+				firstLook[alt].addAll(edge.label);
+			}
+
+			if (firstLook[alt].isNil()) {
+				return null;
+			}
+
+			altEdges.add(edges);
+		}
+
+		SortedMap<Integer, IntervalSet[]> secondLook = new TreeMap<Integer, IntervalSet[]>();
+		IntervalSet combined = new IntervalSet();
+		IntervalSet shared = new IntervalSet();
+		for (IntervalSet look : firstLook) {
+			shared.addAll(look.and(combined));
+			combined.addAll(look);
+		}
+
+		ATNState stopState = atn.ruleToStopState[s.ruleIndex];
+		LL1Analyzer analyzer = new LL1Analyzer(atn);
+		for (int t1 : shared.toArray()) {
+			if (t1 == Token.EOF) {
+				return null;
+			}
+
+			IntervalSet[] look = new IntervalSet[n];
+			IntervalSet seen = new IntervalSet();
+			for (int alt = 0; alt < n; alt++) {
+				if (!firstLook[alt].contains(t1)) {
+					continue;
+				}
+
+				look[alt] = new IntervalSet();
+				for (Edge edge : altEdges.get(alt)) {
+					if (edge.label.contains(t1)) {
+						look[alt].addAll(analyzer.LOOK(edge.target, stopState, edge.context));
+					}
+				}
+
+				if (look[alt].contains(Token.EPSILON) || !look[alt].and(seen).isNil()) {
+					return null;
+				}
+
+				seen.addAll(look[alt]);
+			}
+
+			secondLook.put(t1, look);
+		}
+
+		return new DecisionLookahead(firstLook, secondLook);
+	}
+
+	/**
+	 * Collects the token-consuming transitions reachable from {@code s}
+	 * through epsilon transitions.
+	 *
+	 * @return {@code false} if the closure reached a semantic predicate, a
+	 * recursive rule invocation, or the end of the decision rule
+	 */
+	protected boolean closure(@NotNull ATNState s,
+							  @NotNull PredictionContext ctx,
+							  @NotNull List<Edge> edges,
+							  @NotNull Set<ATNConfig> busy,
+							  @NotNull BitSet calledRuleStack)
+	{
+		if (!busy.add(ATNConfig.create(s, 0, ctx))) {
+			return true;
+		}
+
+		if (s instanceof RuleStopState) {
+			if (PredictionContext.isEmptyLocal(ctx)) {
+				return false;
+			}
+
+			boolean removed = calledRuleStack.get(s.ruleIndex);
+			try {
+				calledRuleStack.clear(s.ruleIndex);
+				for (int i = 0; i < ctx.size(); i++) {
+					ATNState returnState = atn.states.get(ctx.getReturnState(i));
+					if (!closure(returnState, ctx.getParent(i), edges, busy, calledRuleStack)) {
+						return false;
+					}
+				}
+			}
+			finally {
+				if (removed) {
+					calledRuleStack.set(s.ruleIndex);
+				}
+			}
+
+			return true;
+		}
+
+		for (int i = 0; i < s.getNumberOfTransitions(); i++) {
+			Transition t = s.transition(i);
+			if (t instanceof RuleTransition) {
+				RuleTransition ruleTransition = (RuleTransition)t;
+				if (calledRuleStack.get(ruleTransition.ruleIndex)) {
+					return false;
+				}
+
+				PredictionContext newContext = ctx.getChild(ruleTransition.followState.stateNumber);
+				try {
+					calledRuleStack.set(ruleTransition.ruleIndex);
+					if (!closure(t.target, newContext, edges, busy, calledRuleStack)) {
+						return false;
+					}
+				}
+				finally {
+					calledRuleStack.clear(ruleTransition.ruleIndex);
+				}
+			}
+			else if (t instanceof AbstractPredicateTransition) {
+				return false;
+			}
+			else if (t.isEpsilon()) {
+				if (!closure(t.target, ctx, edges, busy, calledRuleStack)) {
+					return false;
+				}
+			}
+			else {
+				IntervalSet label;
+				if (t.getClass() == WildcardTransition.class) {
+					label = IntervalSet.of(Token.MIN_USER_TOKEN_TYPE, atn.maxTokenType);
+				}
+				else {
+					label = t.label();
+					if (label == null) {
+						return false;
+					}
+
+					if (t instanceof NotSetTransition) {
+						label = label.complement(IntervalSet.of(Token.MIN_USER_TOKEN_TYPE, atn.maxTokenType));
+					}
+				}
+
+				edges.add(new Edge(label, t.target, ctx));
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * The result of a successful two-token analysis of a decision.
+	 */
+	public static class DecisionLookahead {
+		/** The first token of each alt 1..n, indexed from 0. */
+		@NotNull
+		public final IntervalSet[] firstLook;
+		/**
+		 * For each first token which starts more than one alt, the second
+		 * token of each alt 1..n, indexed from 0. An element is {@code null}
+		 * if the corresponding alt does not start with the first token.
+		 */
+		@NotNull
+		public final SortedMap<Integer, IntervalSet[]> secondLook;
+
+		public DecisionLookahead(@NotNull IntervalSet[] firstLook, @NotNull SortedMap<Integer, IntervalSet[]> secondLook) {
+			this.firstLook = firstLook;
+			this.secondLook = secondLook;
+		}
+
+		/**
+		 * Gets the alt (1..n) predicted by a first token which starts exactly
+		 * one alt, or 0 if the token starts no alts or requires a second
+		 * token.
+		 */
+		public int getUniqueAlt(int t1) {
+			if (secondLook.containsKey(t1)) {
+				return 0;
+			}
+
+			for (int alt = 0; alt < firstLook.length; alt++) {
+				if (firstLook[alt].contains(t1)) {
+					return alt + 1;
+				}
+			}
+
+			return 0;
+		}
+	}
+
+	protected static class Edge {
+		@NotNull
+		public final IntervalSet label;
+		@NotNull
+		public final ATNState target;
+		@NotNull
+		public final PredictionContext context;
+
+		public Edge(@NotNull IntervalSet label, @NotNull ATNState target, @NotNull PredictionContext context) {
+			this.label = label;
+			this.target = target;
+			this.context = context;
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2013 Terence Parr
+ *  Copyright (c) 2013 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.antlr.v4.codegen.target;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.antlr.v4.codegen.Target;
+import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.tool.Grammar;
+
+/**
+ * The lookahead table of a choice predicted by a fixed two-token lookahead
+ * instead of {@code AdaptivePredict}. Each case matches a set of first tokens
+ * and either selects an alt directly or switches on the second token.
+ *
+ * @see LL2Analyzer
+ */
+public class LL2Decision {
+	public final List<LookaheadCase> cases = new ArrayList<LookaheadCase>();
+
+	public LL2Decision(Target target, Grammar g, LL2Analyzer.DecisionLookahead look) {
+		// group first tokens which lead to the same prediction
+		IntervalSet expecting = IntervalSet.or(look.firstLook);
+		Map<List<IntervalSet>, IntervalSet> secondGroups = new LinkedHashMap<List<IntervalSet>, IntervalSet>();
+		Map<Integer, IntervalSet> altGroups = new LinkedHashMap<Integer, IntervalSet>();
+		for (int t1 : expecting.toArray()) {
+			int alt = look.getUniqueAlt(t1);
+			if (alt != 0) {
+				IntervalSet group = altGroups.get(alt);
+				if (group == null) {
+					group = new IntervalSet();
+					altGroups.put(alt, group);
+				}
+
+				group.add(t1);
+			}
+			else {
+				List<IntervalSet> key = Arrays.asList(look.secondLook.get(t1));
+				IntervalSet group = secondGroups.get(key);
+				if (group == null) {
+					group = new IntervalSet();
+					secondGroups.put(key, group);
+				}
+
+				group.add(t1);
+			}
+		}
+
+		for (Map.Entry<Integer, IntervalSet> entry : altGroups.entrySet()) {
+			cases.add(new LookaheadCase(getTokenLabels(target, g, entry.getValue()), entry.getKey()));
+		}
+
+		for (Map.Entry<List<IntervalSet>, IntervalSet> entry : secondGroups.entrySet()) {
+			LookaheadCase c = new LookaheadCase(getTokenLabels(target, g, entry.getValue()), null);
+			List<IntervalSet> secondLook = entry.getKey();
+			for (int i = 0; i < secondLook.size(); i++) {
+				if (secondLook.get(i) != null) {
+					c.secondLook.add(getTokenLabels(target, g, secondLook.get(i)));
+					c.secondAlts.add(i + 1);
+				}
+			}
+
+			cases.add(c);
+		}
+	}
+
+	private static String[] getTokenLabels(Target target, Grammar g, IntervalSet set) {
+		return target.getTokenTypesAsTargetLabels(g, set.toArray());
+	}
+
+	public static class LookaheadCase {
+		/** Token names for the first token */
+		public final String[] look;
+		/** The predicted alt, or {@code null} if the second token is needed */
+		public final Integer alt;
+		/** Token names for the second token, parallel to {@link #secondAlts} */
+		public final List<String[]> secondLook = new ArrayList<String[]>();
+		public final List<Integer> secondAlts = new ArrayList<Integer>();
+
+		public LookaheadCase(String[] look, Integer alt) {
+			this.look = look;
+			this.alt = alt;
+		}
+	}
+}
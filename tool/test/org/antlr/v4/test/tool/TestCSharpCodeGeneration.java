@@ -0,0 +1,111 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2013 Terence Parr
+ *  Copyright (c) 2013 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.codegen.CodeGenerator;
+import org.antlr.v4.runtime.atn.DecisionState;
+import org.antlr.v4.tool.Grammar;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestCSharpCodeGeneration {
+	private static final String LL2_GRAMMAR =
+		"parser grammar T;\n" +
+		"options { language=CSharp_v4_5; }\n" +
+		"tokens { A, B, C, D }\n" +
+		"a : A B | A b | D ;\n" +
+		"b : C ;\n" +
+		"c : A B C | A B D ;\n";
+
+	@Test public void testLL2DecisionSwitch() throws Exception {
+		Grammar g = new Grammar(LL2_GRAMMAR);
+		String code = generateParser(g);
+
+		// the decision in a is predicted by LA(1), then LA(2) for A
+		String a = getRuleFunction(code, "a");
+		assertFalse(a.contains("AdaptivePredict"));
+		String expected =
+			"int _alt0; " +
+			"switch (_input.La(1)) { " +
+			"case D: _alt0 = 3; break; " +
+			"case A: switch (_input.La(2)) { " +
+			"case B: _alt0 = 1; break; " +
+			"case C: _alt0 = 2; break; " +
+			"default: throw new NoViableAltException(this); " +
+			"} break; " +
+			"default: throw new NoViableAltException(this); " +
+			"} " +
+			"switch (_alt0) { case 1:";
+		assertTrue(a, a.contains(expected));
+	}
+
+	@Test public void testNonLL2DecisionUsesAdaptivePredict() throws Exception {
+		Grammar g = new Grammar(LL2_GRAMMAR);
+		String code = generateParser(g);
+
+		// the decision in c needs LA(3)
+		String c = getRuleFunction(code, "c");
+		DecisionState decisionState = (DecisionState)g.atn.ruleToStartState[g.getRule("c").index].transition(0).target;
+		assertTrue(c, c.contains("switch ( Interpreter.AdaptivePredict(_input," + decisionState.decision + ",_ctx) ) {"));
+		assertFalse(c.contains("_input.La(2)"));
+	}
+
+	@Test public void testForceATNDisablesLL2Decisions() throws Exception {
+		Grammar g = new Grammar(LL2_GRAMMAR);
+		g.tool.force_atn = true;
+		String a = getRuleFunction(generateParser(g), "a");
+		assertTrue(a, a.contains("Interpreter.AdaptivePredict(_input,0,_ctx)"));
+		assertFalse(a.contains("_input.La(2)"));
+	}
+
+	private static String generateParser(Grammar g) {
+		assertEquals(0, g.tool.getNumErrors());
+		CodeGenerator gen = new CodeGenerator(g);
+		String code = gen.generateParser().render();
+		// template errors are reported as warnings
+		assertEquals(0, g.tool.errMgr.warnings);
+		return code;
+	}
+
+	/** Gets the generated method for a rule, with whitespace collapsed. */
+	private static String getRuleFunction(String code, String ruleName) {
+		int start = code.indexOf(" " + ruleName + "() {");
+		assertTrue("missing rule function " + ruleName, start >= 0);
+		int stop = code.indexOf("[RuleVersion(", start);
+		if (stop < 0) {
+			stop = code.length();
+		}
+
+		return code.substring(start, stop).replaceAll("\\s+", " ");
+	}
+}
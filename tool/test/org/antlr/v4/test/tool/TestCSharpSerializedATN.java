@@ -0,0 +1,199 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2013 Terence Parr
+ *  Copyright (c) 2013 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.antlr.v4.test.tool;
+
+import java.util.Arrays;
+import org.antlr.v4.codegen.CodeGenerator;
+import org.antlr.v4.codegen.target.CSharp_v4_5Target;
+import org.antlr.v4.runtime.atn.ATNSerializer;
+import org.antlr.v4.runtime.misc.IntegerList;
+import org.antlr.v4.tool.Grammar;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestCSharpSerializedATN {
+	private static final String SEGMENT_DECLARATION = "private const string _serializedATNSegment";
+
+	@Test public void testSingleSegment() throws Exception {
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"options { language=CSharp_v4_5; }\n" +
+			"tokens { A }\n" +
+			"a : A ;\n");
+		String code = generateParser(g);
+
+		assertEquals(getSerializedATN(g), getSegments(g, code, 1));
+		assertTrue(code.contains("public static readonly string _serializedATN = _serializedATNSegment0;"));
+		assertFalse(code.contains("string.Concat"));
+	}
+
+	@Test public void testSegmentedSerializedATN() throws Exception {
+		StringBuilder grammar = new StringBuilder();
+		grammar.append("parser grammar T;\n");
+		grammar.append("options { language=CSharp_v4_5; }\n");
+		grammar.append("tokens { A, B, C, D }\n");
+		for (int i = 0; i < 500; i++) {
+			grammar.append("r").append(i).append(" : A B C | D r").append(i + 1).append(" ;\n");
+		}
+
+		grammar.append("r500 : A ;\n");
+		Grammar g = new Grammar(grammar.toString());
+		String code = generateParser(g);
+
+		String expected = getSerializedATN(g);
+		int segmentLimit = getSegmentLimit(g);
+		assertTrue(expected.length() > segmentLimit);
+
+		int segmentCount = (expected.length() + segmentLimit - 1) / segmentLimit;
+		assertEquals(expected, getSegments(g, code, segmentCount));
+
+		StringBuilder concat = new StringBuilder();
+		for (int i = 0; i < segmentCount; i++) {
+			if (i > 0) {
+				concat.append(", ");
+			}
+
+			concat.append("_serializedATNSegment").append(i);
+		}
+
+		String normalized = code.replaceAll("\\s+", " ");
+		assertTrue(normalized.contains("public static readonly string _serializedATN = string.Concat( new string[] { " + concat + " });"));
+	}
+
+	private static String generateParser(Grammar g) {
+		assertEquals(0, g.tool.getNumErrors());
+		String code = new CodeGenerator(g).generateParser().render();
+		assertEquals(0, g.tool.errMgr.warnings);
+		return code;
+	}
+
+	private static int getSegmentLimit(Grammar g) {
+		return new CSharp_v4_5Target(new CodeGenerator(g)).getSerializedATNSegmentLimit();
+	}
+
+	/** Gets the serialized ATN of a grammar as the characters emitted by the code generator. */
+	private static String getSerializedATN(Grammar g) {
+		IntegerList data = ATNSerializer.getSerialized(g.atn, Arrays.asList(g.getRuleNames()));
+		StringBuilder result = new StringBuilder();
+		for (int c : data.toArray()) {
+			result.append((char)(c == -1 ? Character.MAX_VALUE : c));
+		}
+
+		return result.toString();
+	}
+
+	/**
+	 * Checks that the generated code declares {@code count} segments, numbered
+	 * in order, which are no longer than the segment limit, and returns their
+	 * concatenated values.
+	 */
+	private static String getSegments(Grammar g, String code, int count) {
+		StringBuilder result = new StringBuilder();
+		int segmentLimit = getSegmentLimit(g);
+		int index = 0;
+		for (int i = 0; i < count; i++) {
+			String declaration = SEGMENT_DECLARATION + i + " =";
+			index = code.indexOf(declaration, index);
+			assertTrue("missing segment " + i, index >= 0);
+			index += declaration.length();
+
+			// the value is a concatenation of string literals
+			StringBuilder segment = new StringBuilder();
+			while (true) {
+				char c = code.charAt(index);
+				if (Character.isWhitespace(c) || c == '+') {
+					index++;
+				}
+				else if (c == '"') {
+					int end = index + 1;
+					while (code.charAt(end) != '"') {
+						end += code.charAt(end) == '\\' ? 2 : 1;
+					}
+
+					segment.append(unescape(code.substring(index + 1, end)));
+					index = end + 1;
+				}
+				else {
+					assertEquals(';', c);
+					break;
+				}
+			}
+
+			assertTrue(segment.length() <= segmentLimit);
+			result.append(segment);
+		}
+
+		assertEquals(-1, code.indexOf(SEGMENT_DECLARATION + count + " ="));
+		return result.toString();
+	}
+
+	/** Decodes the escape sequences of a C# regular string literal. */
+	private static String unescape(String literal) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < literal.length(); i++) {
+			char c = literal.charAt(i);
+			if (c != '\\') {
+				result.append(c);
+				continue;
+			}
+
+			c = literal.charAt(++i);
+			switch (c) {
+			case '0': result.append('\0'); break;
+			case 'a': result.append('\u0007'); break;
+			case 'b': result.append('\b'); break;
+			case 'f': result.append('\f'); break;
+			case 'n': result.append('\n'); break;
+			case 'r': result.append('\r'); break;
+			case 't': result.append('\t'); break;
+			case 'v': result.append('\u000B'); break;
+			case 'x':
+				// one to four hex digits
+				int end = i + 1;
+				while (end < literal.length() && end < i + 5 && Character.digit(literal.charAt(end), 16) >= 0) {
+					end++;
+				}
+
+				result.append((char)Integer.parseInt(literal.substring(i + 1, end), 16));
+				i = end - 1;
+				break;
+			default:
+				// \\, \' and \"
+				result.append(c);
+				break;
+			}
+		}
+
+		return result.toString();
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * [The "BSD license"]
+ *  Copyright (c) 2013 Terence Parr
+ *  Copyright (c) 2013 Sam Harwell
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright
+ *     notice, this list of conditions and the following disclaimer.
+ *  2. Redistributions in binary form must reproduce the above copyright
+ *     notice, this list of conditions and the following disclaimer in the
+ *     documentation and/or other materials provided with the distribution.
+ *  3. The name of the author may not be used to endorse or promote products
+ *     derived from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ *  OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ *  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ *  NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ *  DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ *  THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ *  (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ *  THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.antlr.v4.test.tool;
+
+import java.util.Collections;
+import org.antlr.v4.codegen.target.LL2Analyzer;
+import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.tool.Grammar;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class TestLL2Analyzer {
+	@Test public void testLL2DecisionLookahead() throws Exception {
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"tokens { A, B, C, D }\n" +
+			"a : A B | A b | D ;\n" +
+			"b : C ;");
+		int A = g.getTokenType("A");
+		int B = g.getTokenType("B");
+		int C = g.getTokenType("C");
+		int D = g.getTokenType("D");
+		LL2Analyzer analyzer = new LL2Analyzer(g.atn);
+		LL2Analyzer.DecisionLookahead look = analyzer.getDecisionLookahead(g.atn.decisionToState.get(0));
+		assertNotNull(look);
+		assertEquals(3, look.getUniqueAlt(D));
+		assertEquals(0, look.getUniqueAlt(A));
+		assertEquals(Collections.singleton(A), look.secondLook.keySet());
+
+		IntervalSet[] second = look.secondLook.get(A);
+		assertEquals(IntervalSet.of(B), second[0]);
+		assertEquals(IntervalSet.of(C), second[1]);
+		assertNull(second[2]);
+	}
+
+	@Test public void testLL2DecisionLookaheadFails() throws Exception {
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"tokens { A, B, C }\n" +
+			"a : A B C | A B ;\n" + // needs LA(3)
+			"b : A | A ;\n" +       // reaches end of rule
+			"c : {p}? A B | A C ;"); // predicate before first token
+		LL2Analyzer analyzer = new LL2Analyzer(g.atn);
+		for (int decision = 0; decision < g.atn.getNumberOfDecisions(); decision++) {
+			assertNull(analyzer.getDecisionLookahead(g.atn.decisionToState.get(decision)));
+		}
+	}
+}